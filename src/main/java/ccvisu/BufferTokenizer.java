@@ -0,0 +1,285 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/*****************************************************************
+ * Tokenizer for line-oriented, whitespace-separated text
+ * (RSF, LAY) in a byte buffer (UTF-8, e.g., a memory-mapped file).
+ * Tokens are not copied: the current token is given by its start and
+ * end offset in the buffer, and only converted into a String
+ * or number on request. As with <code>ReaderData.readEntry</code>,
+ * a token that starts with a double quote extends to the next
+ * double quote that is followed by whitespace, and the quotes are
+ * not part of the token.
+ *****************************************************************/
+public class BufferTokenizer {
+
+  private static final Charset  UTF8       = Charset.forName("UTF-8");
+
+  /** Powers of ten that are exactly representable as double. */
+  private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+      1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  private final ByteBuffer      buf;
+  /** End of the input in the buffer. */
+  private final int             limit;
+  /** Current scan position. */
+  private int                   pos;
+  /** Start offset of the current token. */
+  private int                   tokenStart = 0;
+  /** End offset (exclusive) of the current token. */
+  private int                   tokenEnd   = 0;
+
+  /**
+   * @param pBuf    Buffer, read with absolute gets (its position is ignored).
+   * @param pStart  Offset of the first byte to read.
+   * @param pLimit  Offset after the last byte to read.
+   */
+  public BufferTokenizer(ByteBuffer pBuf, int pStart, int pLimit) {
+    buf = pBuf;
+    pos = pStart;
+    limit = pLimit;
+  }
+
+  /** Returns true if all input is consumed. */
+  public boolean atEnd() {
+    return pos >= limit;
+  }
+
+  /** Returns the current scan position. */
+  public int position() {
+    return pos;
+  }
+
+  /**
+   * Moves to the next token on the current line.
+   * @return False if the line has no more tokens
+   *         (the position then stays at the end of the line).
+   */
+  public boolean nextToken() {
+    while (pos < limit) {
+      byte lByte = buf.get(pos);
+      if (lByte == '\n') { return false; }
+      if (!isSpace(lByte)) {
+        break;
+      }
+      ++pos;
+    }
+    if (pos >= limit) { return false; }
+
+    if (buf.get(pos) == '"') {
+      // Quoted token: up to the next quote that ends a token.
+      int lStart = pos + 1;
+      for (int i = lStart; i < limit && buf.get(i) != '\n'; ++i) {
+        if (buf.get(i) == '"' && (i + 1 >= limit || isSpace(buf.get(i + 1))
+                                  || buf.get(i + 1) == '\n')) {
+          tokenStart = lStart;
+          tokenEnd = i;
+          pos = i + 1;
+          return true;
+        }
+      }
+      // No closing quote: take the token as it is.
+    }
+    tokenStart = pos;
+    while (pos < limit) {
+      byte lByte = buf.get(pos);
+      if (lByte == '\n' || isSpace(lByte)) {
+        break;
+      }
+      ++pos;
+    }
+    tokenEnd = pos;
+    return true;
+  }
+
+  /** Skips the rest of the current line, including the line break. */
+  public void nextLine() {
+    while (pos < limit && buf.get(pos) != '\n') {
+      ++pos;
+    }
+    if (pos < limit) {
+      ++pos;
+    }
+  }
+
+  /** Returns the first character of the current token (ASCII). */
+  public char firstChar() {
+    return (char) buf.get(tokenStart);
+  }
+
+  /** Returns the length of the current token in bytes. */
+  public int length() {
+    return tokenEnd - tokenStart;
+  }
+
+  /** Returns true if the current token equals the given ASCII string. */
+  public boolean equalsAscii(String pString) {
+    if (pString.length() != tokenEnd - tokenStart) { return false; }
+    for (int i = 0; i < pString.length(); ++i) {
+      if (buf.get(tokenStart + i) != pString.charAt(i)) { return false; }
+    }
+    return true;
+  }
+
+  /** Returns true if the current token consists of the given bytes. */
+  public boolean equalsBytes(byte[] pBytes) {
+    if (pBytes.length != tokenEnd - tokenStart) { return false; }
+    for (int i = 0; i < pBytes.length; ++i) {
+      if (buf.get(tokenStart + i) != pBytes[i]) { return false; }
+    }
+    return true;
+  }
+
+  /** Returns a hash code of the bytes of the current token. */
+  public int hash() {
+    int result = 0;
+    for (int i = tokenStart; i < tokenEnd; ++i) {
+      result = 31 * result + buf.get(i);
+    }
+    return result;
+  }
+
+  /** Returns a copy of the bytes of the current token. */
+  public byte[] bytes() {
+    byte[] result = new byte[tokenEnd - tokenStart];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = buf.get(tokenStart + i);
+    }
+    return result;
+  }
+
+  /** Returns the current token as String. */
+  public String string() {
+    return new String(bytes(), UTF8);
+  }
+
+  /**
+   * Returns the current token as float. Plain decimal numbers
+   * (with optional sign, fraction and exponent) are parsed directly,
+   * everything else is passed to <code>Float.parseFloat</code>.
+   * @throws NumberFormatException  If the token is not a float.
+   */
+  public float parseFloat() {
+    int i = tokenStart;
+    boolean lNegative = false;
+    if (i < tokenEnd && (buf.get(i) == '-' || buf.get(i) == '+')) {
+      lNegative = (buf.get(i) == '-');
+      ++i;
+    }
+    long lMantissa = 0;
+    int lDigits = 0;
+    int lExponent = 0;
+    boolean lAnyDigit = false;
+    for (; i < tokenEnd; ++i) {
+      int lDigit = buf.get(i) - '0';
+      if (lDigit < 0 || lDigit > 9) {
+        break;
+      }
+      lAnyDigit = true;
+      if (lMantissa != 0 || lDigit != 0) {
+        lMantissa = 10 * lMantissa + lDigit;
+        ++lDigits;
+      }
+    }
+    if (i < tokenEnd && buf.get(i) == '.') {
+      for (++i; i < tokenEnd; ++i) {
+        int lDigit = buf.get(i) - '0';
+        if (lDigit < 0 || lDigit > 9) {
+          break;
+        }
+        lAnyDigit = true;
+        if (lMantissa != 0 || lDigit != 0) {
+          lMantissa = 10 * lMantissa + lDigit;
+          ++lDigits;
+        }
+        --lExponent;
+      }
+    }
+    if (lAnyDigit && i < tokenEnd && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+      ++i;
+      boolean lNegExp = false;
+      if (i < tokenEnd && (buf.get(i) == '-' || buf.get(i) == '+')) {
+        lNegExp = (buf.get(i) == '-');
+        ++i;
+      }
+      int lExp = 0;
+      int lExpStart = i;
+      for (; i < tokenEnd && buf.get(i) >= '0' && buf.get(i) <= '9'; ++i) {
+        lExp = Math.min(10 * lExp + (buf.get(i) - '0'), 1000);
+      }
+      if (i == lExpStart) {
+        lAnyDigit = false;
+      }
+      lExponent += lNegExp ? -lExp : lExp;
+    }
+
+    if (!lAnyDigit || i != tokenEnd || lDigits > 15
+        || Math.abs(lExponent) > 22) {
+      // Not a plain decimal number, or not exact in double arithmetic.
+      return Float.parseFloat(string());
+    }
+    double result = lMantissa;
+    if (lExponent < 0) {
+      result /= POWERS_OF_TEN[-lExponent];
+    } else {
+      result *= POWERS_OF_TEN[lExponent];
+    }
+    return (float) (lNegative ? -result : result);
+  }
+
+  /**
+   * Returns the current token as int.
+   * @throws NumberFormatException  If the token is not an int.
+   */
+  public int parseInt() {
+    int i = tokenStart;
+    boolean lNegative = false;
+    if (i < tokenEnd && buf.get(i) == '-') {
+      lNegative = true;
+      ++i;
+    }
+    if (i == tokenEnd || tokenEnd - i > 9) { return Integer.parseInt(string()); }
+    int result = 0;
+    for (; i < tokenEnd; ++i) {
+      int lDigit = buf.get(i) - '0';
+      if (lDigit < 0 || lDigit > 9) { return Integer.parseInt(string()); }
+      result = 10 * result + lDigit;
+    }
+    return lNegative ? -result : result;
+  }
+
+  private static boolean isSpace(byte pByte) {
+    return pByte == ' ' || pByte == '\t' || pByte == '\r' || pByte == '\f';
+  }
+}
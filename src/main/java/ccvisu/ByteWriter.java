@@ -0,0 +1,238 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/*****************************************************************
+ * Buffered writer of text (UTF-8) to a byte channel, with number
+ * formatting that needs neither String objects nor a formatter:
+ * the text is assembled in one reusable byte buffer, which is
+ * written to the channel of the output stream whenever it is full
+ * (the file channel, for a file output stream).
+ *****************************************************************/
+public class ByteWriter {
+
+  private static final Charset  UTF8          = Charset.forName("UTF-8");
+
+  /** Powers of ten that are exactly representable as double. */
+  private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+      1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12 };
+
+  private final OutputStream        out;
+  private final WritableByteChannel channel;
+  private final ByteBuffer          buffer    = ByteBuffer.allocate(1 << 16);
+  private final byte[]              bytes     = buffer.array();
+  /** Scratch space for the digits of a number. */
+  private final byte[]              digits    = new byte[20];
+
+  /**
+   * @param pOut  Output stream; not closed by this writer.
+   */
+  public ByteWriter(OutputStream pOut) {
+    out = pOut;
+    if (pOut instanceof FileOutputStream) {
+      channel = ((FileOutputStream) pOut).getChannel();
+    } else {
+      channel = Channels.newChannel(pOut);
+    }
+  }
+
+  /** Writes the string, in UTF-8. */
+  public void write(String pString) throws IOException {
+    int lLength = pString.length();
+    if (buffer.remaining() < lLength) {
+      drain();
+    }
+    if (buffer.remaining() >= lLength) {
+      // ASCII fast path.
+      int lPos = buffer.position();
+      for (int i = 0; i < lLength; ++i) {
+        char lChar = pString.charAt(i);
+        if (lChar >= 0x80) {
+          // Not ASCII: encode the whole string.
+          buffer.position(lPos);
+          writeBytes(pString.getBytes(UTF8));
+          return;
+        }
+        bytes[lPos + i] = (byte) lChar;
+      }
+      buffer.position(lPos + lLength);
+    } else {
+      writeBytes(pString.getBytes(UTF8));
+    }
+  }
+
+  /** Writes an ASCII character. */
+  public void write(char pChar) throws IOException {
+    if (!buffer.hasRemaining()) {
+      drain();
+    }
+    buffer.put((byte) pChar);
+  }
+
+  /** Writes a line break. */
+  public void newLine() throws IOException {
+    write(CCVisu.endl);
+  }
+
+  /** Writes the decimal representation of pValue. */
+  public void write(int pValue) throws IOException {
+    writeLong(pValue);
+  }
+
+  /** Writes pValue as <code>Boolean.toString</code> does. */
+  public void write(boolean pValue) throws IOException {
+    write(pValue ? "true" : "false");
+  }
+
+  /*****************************************************************
+   * Writes pValue in the notation of <code>Float.toString</code>
+   * ('1.0', '0.25', '1.0E-5'), with the fewest significant digits
+   * (up to nine) that read back as the same float.
+   * Decimal notation for 10^-3 <= |pValue| < 10^7 is
+   * produced directly, other values go through Float.toString.
+   *****************************************************************/
+  public void write(float pValue) throws IOException {
+    float lAbs = Math.abs(pValue);
+    if (!(lAbs >= 1e-3f && lAbs < 1e7f)) {
+      // Zero, NaN, infinity, or scientific notation.
+      if (pValue == 0.0f) {
+        write((Float.floatToRawIntBits(pValue) < 0) ? "-0.0" : "0.0");
+      } else {
+        write(Float.toString(pValue));
+      }
+      return;
+    }
+    // Find the fewest fraction digits that give back the value,
+    //   by binary search (if f digits give back the value, then f+1 do).
+    //   Nine significant digits are always enough.
+    int lLow = 0;
+    int lHigh = (lAbs < 1e6f) ? 12 : 3;
+    if (!roundTrips(lAbs, lHigh)) {
+      write(Float.toString(pValue));
+      return;
+    }
+    while (lLow < lHigh) {
+      int lMid = (lLow + lHigh) >>> 1;
+      if (roundTrips(lAbs, lMid)) {
+        lHigh = lMid;
+      } else {
+        lLow = lMid + 1;
+      }
+    }
+    int lFraction = lHigh;
+    long lScaled = (long) Math.rint(lAbs * POWERS_OF_TEN[lFraction]);
+    if (pValue < 0) {
+      write('-');
+    }
+    long lPower = (long) POWERS_OF_TEN[lFraction];
+    writeLong(lScaled / lPower);
+    write('.');
+    if (lFraction == 0) {
+      write('0');
+      return;
+    }
+    // Fraction digits, with leading zeros.
+    long lRest = lScaled % lPower;
+    for (int i = lFraction - 1; i >= 0; --i) {
+      digits[i] = (byte) ('0' + lRest % 10);
+      lRest /= 10;
+    }
+    writeDigits(digits, lFraction);
+  }
+
+  /** Returns true if pValue rounded to pFraction fraction digits
+   *  reads back as pValue. */
+  private static boolean roundTrips(float pValue, int pFraction) {
+    double lPower = POWERS_OF_TEN[pFraction];
+    return (float) (Math.rint(pValue * lPower) / lPower) == pValue;
+  }
+
+  /** Writes the buffered bytes to the channel and flushes the stream. */
+  public void flush() throws IOException {
+    drain();
+    out.flush();
+  }
+
+  private void writeLong(long pValue) throws IOException {
+    long lValue = pValue;
+    if (lValue < 0) {
+      if (lValue == Long.MIN_VALUE) {
+        write(Long.toString(lValue));
+        return;
+      }
+      write('-');
+      lValue = -lValue;
+    }
+    int lPos = digits.length;
+    do {
+      digits[--lPos] = (byte) ('0' + lValue % 10);
+      lValue /= 10;
+    } while (lValue != 0);
+    if (buffer.remaining() < digits.length - lPos) {
+      drain();
+    }
+    buffer.put(digits, lPos, digits.length - lPos);
+  }
+
+  private void writeDigits(byte[] pDigits, int pLength) throws IOException {
+    if (buffer.remaining() < pLength) {
+      drain();
+    }
+    buffer.put(pDigits, 0, pLength);
+  }
+
+  private void writeBytes(byte[] pBytes) throws IOException {
+    int lOffset = 0;
+    while (lOffset < pBytes.length) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+      int lLength = Math.min(buffer.remaining(), pBytes.length - lOffset);
+      buffer.put(pBytes, lOffset, lLength);
+      lOffset += lLength;
+    }
+  }
+
+  /** Writes the buffer content to the channel. */
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -31,11 +31,14 @@ package ccvisu;
 import java.awt.Frame;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
 
 import ccvisu.Options.InFormat;
 import ccvisu.Options.Option;
@@ -131,15 +134,29 @@ public class CCVisu {
 
     // Setup of output writer.
     PrintWriter lOut = null;
+    // Binary output stream under lOut, for binary output formats.
+    OutputStream lOutStream = null;
     try {
-      if (options.outputName.equalsIgnoreCase("stdout")) {
-        lOut =
-               new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-                   System.out)));
+      if (options.outFormat == OutFormat.TILES) {
+        // The writer creates the files in the output directory.
+        if (options.outputName.equalsIgnoreCase("stdout")) {
+          System.err.println("Usage error: Output format TILES needs "
+                             + "an output directory (option -o).");
+          System.exit(1);
+        }
+        lOutStream = null;
+      } else if (options.outputName.equalsIgnoreCase("stdout")) {
+        lOutStream = System.out;
       } else {
+        lOutStream = new FileOutputStream(options.outputName);
+      }
+      if (options.gzip && lOutStream != null) {
+        lOutStream = new GZIPOutputStream(lOutStream, 1 << 16);
+      }
+      if (lOutStream != null) {
         lOut =
-               new PrintWriter(new BufferedWriter(new FileWriter(
-                   options.outputName)));
+               new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                   lOutStream)));
       }
     } catch (Exception e) {
       System.err.println("Exception while opening file '" + options.outputName
@@ -149,32 +166,21 @@ public class CCVisu {
 
     if (!options.initialLayStr.equalsIgnoreCase("")) {
       // Setup of optional initial layout.
-      BufferedReader initialLayoutStream = null;
+      File lInitialLayoutFile = new File(options.initialLayStr);
       options.initialLayout = new GraphData();
-      try {
-        initialLayoutStream =
-                              new BufferedReader(new FileReader(
-                                  options.initialLayStr));
-      } catch (Exception e) {
+      if (!lInitialLayoutFile.canRead()) {
         System.err.println("Exception while opening file '"
                            + options.initialLayStr + "' for reading.");
         System.exit(1);
       }
       // Read initial (pre-computed) layout from file.
-      (new ReaderDataLAY(initialLayoutStream, options.verbosity))
+      (new ReaderDataLAYMapped(lInitialLayoutFile, options.verbosity))
           .read(options.initialLayout);
       if (options.verbosity.isAtLeast(Verbosity.VERBOSE)) {
         System.err.println("" + options.initialLayout.vertices.size()
                            + " vertices read.");
         System.err.println("Initial layout reading finished.");
       }
-      // Close the input file.
-      try {
-        initialLayoutStream.close();
-      } catch (Exception e) {
-        System.err.println("Exception while closing input file: ");
-        System.err.println(e);
-      }
       // Reset vertex degrees, 
       // i.e., use the degrees from the graph and ignore the degree from read layout.
       for (GraphVertex itVertex : options.initialLayout.vertices) {
@@ -191,7 +197,14 @@ public class CCVisu {
                         options.timeWindow, options.sliding);
       break;
     case SVN: // SVN log format.
-      graphReader = new ReaderDataGraphSVN(lIn, options.verbosity);
+      if (!options.inputName.equalsIgnoreCase("stdin")) {
+        // Stream the file, which may be gzip-compressed.
+        graphReader =
+                      new ReaderDataGraphSVN(new File(options.inputName),
+                          options.verbosity);
+      } else {
+        graphReader = new ReaderDataGraphSVN(lIn, options.verbosity);
+      }
       break;
     case DOX: // Doxygen XML dump format.
       graphReader =
@@ -199,14 +212,37 @@ public class CCVisu {
                         options.inputName);
       break;
     case RSF:// Graph in RSF format.
-      graphReader = new ReaderDataGraphRSF(lIn, options.verbosity);
+      if (!options.inputName.equalsIgnoreCase("stdin")) {
+        // Scan the mapped file.
+        graphReader =
+                      new ReaderDataGraphRSFMapped(
+                          new File(options.inputName), options.verbosity);
+      } else {
+        graphReader = new ReaderDataGraphRSF(lIn, options.verbosity);
+      }
       break;
     case AUX:// Graph in AUX format.
       // Graph is set by calling client. -- Do nothing.
       graphReader = new ReaderDataGraphAUX(lIn, options.verbosity);
       break;
     case LAY:// Layout in text format LAY.
-      graphReader = new ReaderDataLAY(lIn, options.verbosity);
+      if (!options.inputName.equalsIgnoreCase("stdin")) {
+        // Scan the mapped file.
+        graphReader =
+                      new ReaderDataLAYMapped(new File(options.inputName),
+                          options.verbosity);
+      } else {
+        graphReader = new ReaderDataLAY(lIn, options.verbosity);
+      }
+      break;
+    case BIN:// Graph snapshot in binary format.
+      if (options.inputName.equalsIgnoreCase("stdin")) {
+        System.err.println("Usage error: Cannot read BIN input from stdin.");
+        System.exit(1);
+      }
+      graphReader =
+                    new ReaderDataBIN(new File(options.inputName),
+                        options.verbosity);
       break;
     default:
       System.err.println("Runtime error: Unexpected input format '"
@@ -238,6 +274,19 @@ public class CCVisu {
       }
     }
 
+    // Edge objects are only needed to draw the edges
+    //   (or to keep them in a snapshot for drawing later).
+    options.graph.storeEdges =
+                               (options.outFormat == OutFormat.DISP
+                                || options.outFormat == OutFormat.SVG
+                                || options.outFormat == OutFormat.VRML
+                                || options.outFormat == OutFormat.GLB
+                                || options.outFormat == OutFormat.TILES
+                                || options.outFormat == OutFormat.BIN);
+    options.graph.aggregateEdges = options.aggregateEdges;
+    // The raw tuples are only needed to write them out again.
+    options.graph.storeTuples = (options.outFormat == OutFormat.RSF);
+
     // Read the data using the reader (i.e., fill into existing graph structure).
     graphReader.read(options.graph);
     if (options.verbosity.isAtLeast(Verbosity.VERBOSE)) {
@@ -288,12 +337,21 @@ public class CCVisu {
     WriterData dataWriter = null;
 
     // Determine if we need to compute a layout.
-    if (options.inFormat != InFormat.LAY && options.outFormat != OutFormat.RSF) {
+    boolean lLayoutRead = (options.inFormat == InFormat.LAY);
+    if (graphReader instanceof ReaderDataBIN) {
+      // A snapshot that contains a layout is not laid out again.
+      lLayoutRead = ((ReaderDataBIN) graphReader).hasLayout();
+    }
+    if (!lLayoutRead && options.outFormat != OutFormat.RSF) {
       // Initialize layout.
       CCVisu.initializeLayout(options);
       // Set minimizer algorithm. 
-      // So far there is only one implemented in CCVisu.
-      Minimizer minimizer = new MinimizerBarnesHut(options);
+      Minimizer minimizer = null;
+      if (options.splitComponents) {
+        minimizer = new MinimizerComponents(options);
+      } else {
+        minimizer = new MinimizerBarnesHut(options);
+      }
       if (options.outFormat == OutFormat.DISP && Option.anim.getBool()) {
         // Display layout animation during minimization.
         dataWriter = new WriterDataGraphicsDISP(lOut, options.graph, options);
@@ -308,16 +366,27 @@ public class CCVisu {
     // Set output writer.
     switch (options.outFormat) {
     case RSF: // Co-change graph in RSF.
-      dataWriter = new WriterDataRSF(lOut, options.graph);
+      dataWriter = new WriterDataRSF(lOutStream, options.graph);
       break;
     case LAY: // Layout in text format LAY.
-      dataWriter = new WriterDataLAY(lOut, options.graph);
+      dataWriter = new WriterDataLAY(lOutStream, options.graph);
+      break;
+    case BIN: // Graph snapshot in binary format.
+      dataWriter = new WriterDataBIN(lOutStream, options.graph, true, 0);
       break;
     case VRML: // Layout in VRML format.
-      dataWriter = new WriterDataGraphicsVRML(lOut, options.graph, options);
+      dataWriter = new WriterDataGraphicsVRML(lOutStream, options.graph, options);
       break;
     case SVG: // Layout in SVG format.
-      dataWriter = new WriterDataGraphicsSVG(lOut, options.graph, options);
+      dataWriter = new WriterDataGraphicsSVG(lOutStream, options.graph, options);
+      break;
+    case GLB: // Layout in binary glTF format.
+      dataWriter = new WriterDataGLB(lOutStream, options.graph, options);
+      break;
+    case TILES: // Layout as PNG tile pyramid.
+      dataWriter =
+                   new WriterDataGraphicsTiles(new File(options.outputName),
+                       options.graph, options);
       break;
     case DISP: // Display layout on screen.
       if (dataWriter == null) {
@@ -335,13 +404,16 @@ public class CCVisu {
     dataWriter.write();
 
     // Close the output file.
-    lOut.flush();
-    lOut.close();
+    if (lOut != null) {
+      lOut.flush();
+      lOut.close();
+    }
   }
 
   /*****************************************************************
    * Compute randomized initial layout for a given graph 
-   * with the given number of dimensions.
+   * with the given number of dimensions, optionally improved
+   * by the initial placement strategy given in the options.
    *****************************************************************/
   public static void initializeLayout(Options options) {
     // Initialize with random positions.
@@ -361,6 +433,10 @@ public class CCVisu {
       }
     }
 
+    // Improve the random positions according to the graph structure,
+    //   if requested.
+    LayoutInitializer.place(options);
+
     // Copy positions and properties from the initial layout 
     //   that was read from file.
     if (options.initialLayout != null) {
@@ -377,8 +453,6 @@ public class CCVisu {
     }
 
     // Highlight certain vertices (according to Marker m) by marking.
-    for (GraphVertex curVertex : options.graph.vertices) {
-      CCVisu.marker.mark(curVertex);
-    }
+    CCVisu.marker.markAll(options.graph.vertices);
   }
 };
@@ -29,6 +29,8 @@
 package ccvisu;
 
 import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Colors for easy access by name. 
@@ -112,6 +114,29 @@ public enum Colors {
 
   private static boolean verbose = true;
 
+  /** Color objects by RGB value, shared by the readers. */
+  private static final ConcurrentMap<Integer, Color> rgbColors =
+                                                                  new ConcurrentHashMap<Integer, Color>();
+
+  /*****************************************************************
+   * Returns a shared Color object for a given RGB value,
+   * so that vertices of the same color do not each own a Color object.
+   * @param pRGB  RGB value (bits 24-31 are ignored).
+   * @return      Color object.
+   *****************************************************************/
+  public static Color get(int pRGB) {
+    Integer lKey = pRGB & 0x00FFFFFF;
+    Color result = rgbColors.get(lKey);
+    if (result == null) {
+      result = new Color(lKey);
+      Color lOld = rgbColors.putIfAbsent(lKey, result);
+      if (lOld != null) {
+        result = lOld;
+      }
+    }
+    return result;
+  }
+
   /*****************************************************************
    * Returns the Color object for a given name.
    * @param nameOfColor  String that represents a color name.
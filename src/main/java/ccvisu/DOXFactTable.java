@@ -0,0 +1,253 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Typed table of the facts extracted from a Doxygen XML dump
+ * (MEMBER, COMPOUND, LOCATEDAT, CONTAINEDIN, REFERSTO, BASEDON),
+ * for deriving the relations between names, classes, and files.
+ * Each Doxygen id is numbered once; kind, name, file, and container
+ * are stored in arrays indexed by that number, so that the joins
+ * of the derivation are array lookups. Names, kinds, and files are
+ * numbered as well, and derived tuples are deduplicated
+ * by their packed (source, target) numbers per relation.
+ *****************************************************************/
+public class DOXFactTable {
+
+  /** Fact types of the references, in input order. */
+  private static final byte REFERSTO    = 0;
+  private static final byte BASEDON     = 1;
+
+  private final Verbosity   verbosity;
+
+  /** Doxygen ids to entity numbers. */
+  private final SymbolTable ids         = new SymbolTable();
+  /** Kind, name, and file symbols, and the container entity,
+   *  per entity number (-1 if unknown). */
+  private int[]             kinds       = new int[0];
+  private int[]             names       = new int[0];
+  private int[]             files       = new int[0];
+  private int[]             containers  = new int[0];
+
+  private final SymbolTable kindSymbols = new SymbolTable();
+  /** Names and file names. */
+  private final SymbolTable strings     = new SymbolTable();
+  private final int         kindClass;
+
+  /** REFERSTO and BASEDON facts: type, source and target entity. */
+  private byte[]            refTypes    = new byte[16];
+  private int[]             refSources  = new int[16];
+  private int[]             refTargets  = new int[16];
+  private int               refNr       = 0;
+
+  public DOXFactTable(Verbosity pVerbosity) {
+    verbosity = pVerbosity;
+    kindClass = kindSymbols.intern("class");
+  }
+
+  /*****************************************************************
+   * Adds the facts of the given tuples.
+   * Later facts about an id override earlier ones.
+   *****************************************************************/
+  public void addFacts(List<List<String>> pTuples) {
+    for (List<String> lTuple : pTuples) {
+      assert (lTuple.size() > 1);
+      String lRelName = lTuple.get(0);
+      if (lRelName.equals("MEMBER") || lRelName.equals("COMPOUND")) {
+        assert (lTuple.size() == 4);
+        String lRelKind = lTuple.get(1);
+        int lId = entity(unquote(lTuple.get(2)));
+        String lName = unquote(lTuple.get(3));
+        if (lRelKind.equalsIgnoreCase("function")) {
+          lName += "()";
+        }
+        kinds[lId] = kindSymbols.intern(lRelKind);
+        int lPrev = names[lId];
+        names[lId] = strings.intern(lName);
+        // Check for duplicate entries: 
+        if (lPrev >= 0 && !strings.get(lPrev).equals(lTuple.get(3))
+            && verbosity.isAtLeast(Verbosity.WARNING)) {
+          System.err.println("Warning: Multiple names found for id '"
+                             + lTuple.get(2) + "':");
+          System.err.println("    " + strings.get(lPrev));
+          System.err.println("    " + lTuple.get(3));
+        }
+      } else if (lRelName.equals("LOCATEDAT")) {
+        assert (lTuple.size() == 4);
+        int lId = entity(lTuple.get(1));
+        int lPrev = files[lId];
+        // Skip the 'line-no'.
+        files[lId] = strings.intern(lTuple.get(2));
+        // Check for duplicate entries: 
+        if (lPrev >= 0 && !strings.get(lPrev).equals(lTuple.get(2))
+            && verbosity.isAtLeast(Verbosity.WARNING)) {
+          System.err.println("Warning: Multiple locations found for id '"
+                             + lTuple.get(1) + "':");
+          System.err.println("    " + strings.get(lPrev));
+          System.err.println("    " + lTuple.get(2));
+        }
+      } else if (lRelName.equals("CONTAINEDIN")) {
+        assert (lTuple.size() == 3);
+        int lId = entity(unquote(lTuple.get(1)));
+        int lContainer = entity(unquote(lTuple.get(2)));
+        int lPrev = containers[lId];
+        containers[lId] = lContainer;
+        // Check for duplicate entries: 
+        if (lPrev >= 0 && !ids.get(lPrev).equals(lTuple.get(2))
+            && verbosity.isAtLeast(Verbosity.WARNING)) {
+          System.err.println("Warning: Multiple names found for id '"
+                             + lTuple.get(1) + "':");
+          System.err.println("    " + ids.get(lPrev));
+          System.err.println("    " + lTuple.get(2));
+        }
+      } else if (lRelName.equals("REFERSTO")) {
+        addReference(REFERSTO, lTuple.get(1), lTuple.get(2));
+      } else if (lRelName.equals("BASEDON")
+                 && !lTuple.get(2).startsWith("UNKNOWN")) {
+        addReference(BASEDON, lTuple.get(1), lTuple.get(2));
+      }
+    }
+  }
+
+  /*****************************************************************
+   * Appends the derived relations to pRelations, in the order of the
+   * REFERSTO and BASEDON facts:
+   * REF&lt;kind&gt; and inheritClass between names, refClass between
+   * the names of the containing classes, and refFile between files.
+   * Reflexive and duplicate tuples are omitted, as well as tuples
+   * with an endpoint of unknown name.
+   *****************************************************************/
+  public void deriveTuples(Relation pRelations) {
+    // Per kind of the target: relation name and stored tuples.
+    String[] lRefRelNames = new String[kindSymbols.size()];
+    LongIntMap[] lRefStored = new LongIntMap[kindSymbols.size()];
+    LongIntMap lRefClassStored = new LongIntMap();
+    LongIntMap lRefFileStored = new LongIntMap();
+    LongIntMap lInheritStored = new LongIntMap();
+
+    for (int k = 0; k < refNr; ++k) {
+      int lSource = refSources[k];
+      int lTarget = refTargets[k];
+      if (refTypes[k] == BASEDON) {
+        if (kinds[lSource] == kindClass && kinds[lTarget] == kindClass) {
+          addTuple(pRelations, "inheritClass", names[lSource],
+              names[lTarget], lInheritStored);
+        }
+        continue;
+      }
+      // REFERSTO.
+      int lKind = kinds[lTarget];
+      if (lKind >= 0) {
+        if (lRefRelNames[lKind] == null) {
+          lRefRelNames[lKind] = "REF" + kindSymbols.get(lKind);
+          lRefStored[lKind] = new LongIntMap();
+        }
+        addTuple(pRelations, lRefRelNames[lKind], names[lSource],
+            names[lTarget], lRefStored[lKind]);
+      }
+      int lSourceContainer = containers[lSource];
+      int lTargetContainer = containers[lTarget];
+      if (lSourceContainer >= 0 && lTargetContainer >= 0
+          && kinds[lSourceContainer] == kindClass
+          && kinds[lTargetContainer] == kindClass) {
+        addTuple(pRelations, "refClass", names[lSourceContainer],
+            names[lTargetContainer], lRefClassStored);
+      }
+      // We need some extra tolerance for file names.
+      if (files[lSource] < 0) {
+        System.err.println("Runtime warning: No file location found for "
+                           + "entry with id '" + ids.get(lSource) + "'.");
+      } else if (files[lTarget] >= 0) {
+        // Sometimes we don't get the file location for an id.
+        // This happens, e.g., for 'enumvalue'. --- We omit such tuples.
+        addTuple(pRelations, "refFile", files[lSource], files[lTarget],
+            lRefFileStored);
+      }
+    }
+  }
+
+  /** Appends (pRelName, pSource, pTarget) of the given string symbols,
+   *  unless it is reflexive, contained in pStored, or incomplete. */
+  private void addTuple(Relation pRelations, String pRelName, int pSource,
+                        int pTarget, LongIntMap pStored) {
+    // We don't need reflexive edges.
+    if (pSource < 0 || pTarget < 0 || pSource == pTarget) { return; }
+    if (pStored.putIfAbsent(LongIntMap.pack(pSource, pTarget), 0)
+        == LongIntMap.NOT_FOUND) {
+      List<String> lTuple = new ArrayList<String>(3);
+      lTuple.add(pRelName);
+      lTuple.add(strings.get(pSource));
+      lTuple.add(strings.get(pTarget));
+      pRelations.add(lTuple);
+    }
+  }
+
+  private void addReference(byte pType, String pSource, String pTarget) {
+    if (refNr == refTypes.length) {
+      int lNewLength = 2 * refNr;
+      refTypes = Arrays.copyOf(refTypes, lNewLength);
+      refSources = Arrays.copyOf(refSources, lNewLength);
+      refTargets = Arrays.copyOf(refTargets, lNewLength);
+    }
+    refTypes[refNr] = pType;
+    refSources[refNr] = entity(pSource);
+    refTargets[refNr] = entity(pTarget);
+    ++refNr;
+  }
+
+  /** Returns the number of the Doxygen id pId;
+   *  numbers a new id and grows the attribute arrays. */
+  private int entity(String pId) {
+    int result = ids.intern(pId);
+    if (result == kinds.length) {
+      int lNewLength = 2 * result + 16;
+      kinds = grow(kinds, lNewLength);
+      names = grow(names, lNewLength);
+      files = grow(files, lNewLength);
+      containers = grow(containers, lNewLength);
+    }
+    return result;
+  }
+
+  private static int[] grow(int[] pArray, int pLength) {
+    int[] result = Arrays.copyOf(pArray, pLength);
+    Arrays.fill(result, pArray.length, pLength, -1);
+    return result;
+  }
+
+  private static String unquote(String pString) {
+    return (pString.indexOf('"') < 0) ? pString : pString.replace("\"", "");
+  }
+}
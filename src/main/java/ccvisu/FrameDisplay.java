@@ -49,12 +49,12 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.util.Arrays;
 import java.util.Set;
@@ -110,6 +110,9 @@ public class FrameDisplay implements GraphEventListener {
   // Node id when MOUSE_PRESSED.
   private String           draggingVertex;
 
+  // Last mouse position while panning (right button), or null.
+  private Point            panPoint;
+
   enum LoadDirection {
     NEXT, PREV
   };
@@ -124,11 +127,16 @@ public class FrameDisplay implements GraphEventListener {
     private final Frame                  parent;
     private final WriterDataGraphicsDISP writer;
 
-    // image used for off-screen work
+    // Double buffer: the front image is shown on the screen,
+    //   the back image is drawn by the render worker;
+    //   the images and the size are guarded by the lock of the canvas.
     private BufferedImage                img;
-    // dimension of the image used
+    private BufferedImage                back;
+    // dimension of the image drawn last
     private Dimension                    size             = new Dimension(0, 0);
 
+    private final RenderWorker           renderer         = new RenderWorker();
+
     /**
      * Constructor.
      * @param parent The parent frame.
@@ -157,34 +165,23 @@ public class FrameDisplay implements GraphEventListener {
             rectBottomRight.setLocation(evt.getPoint());
             repaint();
           }
+          // Panning.
+          if (panPoint != null) {
+            writer.pan(evt.getX() - panPoint.x, evt.getY() - panPoint.y);
+            panPoint = evt.getPoint();
+            paintView();
+          }
           // Vertex dragging.
           if (draggingVertex != null) {
-            int size = Math.min(getSize().width, getSize().height);
-
-            Position minPos = Position.min(writer.getGraphData().vertices);
-            Position maxPos = Position.max(writer.getGraphData().vertices);
-            float lWidth = Position.width(maxPos, minPos);
-
-            // offset = -minPos + 0.05f * lWidth;
-            Position offset =
-                              Position.add(Position.mult(minPos, -1),
-                                  0.05f * lWidth);
-            Position scale = new Position(1, 1, 1);
-            scale.mult(0.9f * size / lWidth);
-            // Flip y-coordinate.
-            scale.y *= -1;
-
-            //int xPos = (int) ((graph.pos[index][0] + xOffset) * scale);
-            //int yPos = (int) ((graph.pos[index][1] + yOffset) * -scale + size);
-
-            float x = evt.getPoint().x / scale.x - offset.x;
-            float y = (evt.getPoint().y - size) / scale.y - offset.y;
+            Position lPos = writer.toLayout(evt.getPoint());
             GraphVertex lDraggingVertex =
                                           writer.getGraphData().nameToVertex
                                               .get(draggingVertex);
-            lDraggingVertex.pos.x = x;
-            lDraggingVertex.pos.y = y;
-            updateAndPaint();
+            if (lPos != null && lDraggingVertex != null) {
+              lDraggingVertex.pos.x = lPos.x;
+              lDraggingVertex.pos.y = lPos.y;
+              updateAndPaint();
+            }
           }
         }
       });
@@ -210,6 +207,8 @@ public class FrameDisplay implements GraphEventListener {
               // Vertex dragging.
               draggingVertex = tmp.iterator().next();
             }
+          } else if (evt.getButton() == MouseEvent.BUTTON3) {
+            panPoint = evt.getPoint();
           }
         }
 
@@ -232,8 +231,8 @@ public class FrameDisplay implements GraphEventListener {
                 rectTopLeft.setLocation(xTl, yTl);
                 rectBottomRight.setLocation(xBr, yBr);
 
-                writer.restrictShowedVertices(rectTopLeft, rectBottomRight);
-                updateAndPaint();
+                writer.zoomToRectangle(rectTopLeft, rectBottomRight);
+                paintView();
               }
             } else {
               rectShow = false;
@@ -246,10 +245,23 @@ public class FrameDisplay implements GraphEventListener {
               }
             }
 
+          } else if (evt.getButton() == MouseEvent.BUTTON3) {
+            panPoint = null;
           }
         }
       });
 
+      // Adds MouseWheelListener for mouse event ''Mouse wheel moved''.
+      // Zoom in or out at the mouse position.
+      addMouseWheelListener(new MouseWheelListener() {
+        public void mouseWheelMoved(MouseWheelEvent evt) {
+          writer.zoomAt(evt.getPoint(), (float) Math.pow(1.25, evt
+              .getWheelRotation()));
+          paintView();
+        }
+      });
+
+      renderer.start();
     }
 
     /*****************************************************************
@@ -270,7 +282,7 @@ public class FrameDisplay implements GraphEventListener {
     }
 
     /*****************************************************************
-     * Draws the layout on the screen.
+     * Draws the layout on the screen: the last frame of the render worker.
      * @param area  The graphics area for drawing.
      *****************************************************************/
     @Override
@@ -284,12 +296,19 @@ public class FrameDisplay implements GraphEventListener {
                   getSize().height - mFrame.getInsets().top
                       - mFrame.getInsets().bottom;
 
-      if (xSize != size.width || ySize != size.height || img == null) {
-        update();
+      BufferedImage lImg;
+      synchronized (this) {
+        if (xSize != size.width || ySize != size.height) {
+          size = new Dimension(xSize, ySize);
+          renderer.request();
+        }
+        lImg = img;
       }
 
       //draw img on area
-      area.drawImage(img, 0, 0, null);
+      if (lImg != null) {
+        area.drawImage(lImg, 0, 0, null);
+      }
 
       // Zooming rectangle.
       if (rectShow) {
@@ -310,28 +329,29 @@ public class FrameDisplay implements GraphEventListener {
     } // method paint
 
     /**
-     * update the image used to refresh the screen
+     * Draws a frame into the back image, swaps the images,
+     * and schedules painting the new front image.
+     * Called by the render worker.
+     * @param pWithEdges  False for drawing only the vertices.
+     * @return False if nothing was drawn (the canvas has no area).
      */
-    public void update() {
-      setSize(parent.getSize());
-      int xSize =
-                  getSize().width - mFrame.getInsets().left
-                      - mFrame.getInsets().right;
-      int ySize =
-                  getSize().height - mFrame.getInsets().top
-                      - mFrame.getInsets().bottom;
-
-      refresh();
-
-      if (xSize != size.width || ySize != size.height || img == null) {
-        size = new Dimension(xSize, ySize);
-        img =
-              new BufferedImage(size.width, size.height,
-                  BufferedImage.TYPE_INT_RGB);
+    private boolean render(boolean pWithEdges) {
+      Dimension lSize;
+      BufferedImage lImg;
+      synchronized (this) {
+        lSize = size;
+        if (lSize.width <= 0 || lSize.height <= 0) { return false; }
+        if (back == null || back.getWidth() != lSize.width
+            || back.getHeight() != lSize.height) {
+          back =
+                 new BufferedImage(lSize.width, lSize.height,
+                     BufferedImage.TYPE_INT_RGB);
+        }
+        lImg = back;
       }
 
       //WARNING GCJ: Graphics2D needs  gcc 4
-      Graphics2D lGraphics = (Graphics2D) img.getGraphics();
+      Graphics2D lGraphics = lImg.createGraphics();
 
       //set some rendering preferences
       lGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
@@ -345,32 +365,119 @@ public class FrameDisplay implements GraphEventListener {
 
       //fill background
       lGraphics.setColor(this.getBackground());
-      lGraphics.fillRect(0, 0, size.width, size.height);
+      lGraphics.fillRect(0, 0, lSize.width, lSize.height);
       lGraphics.setColor(Color.BLACK);
 
-      writer.writeDISP(Math.min(xSize, ySize), lGraphics, size.width,
-          size.height, mFrame.getInsets().left, mFrame.getInsets().bottom);
+      writer.writeDISP(Math.min(lSize.width, lSize.height), lGraphics,
+          lSize.width, lSize.height, mFrame.getInsets().left,
+          mFrame.getInsets().bottom, pWithEdges);
 
       //free some resources
       lGraphics.dispose();
-    }//method update
+
+      synchronized (this) {
+        back = img;
+        img = lImg;
+      }
+      // Paint the new front image (in the event dispatch thread).
+      super.repaint();
+      return true;
+    }
 
     /**
      * to use when changes are done and you want to display them
+     * (the frame is drawn by the render worker; does not wait)
      */
     public void updateAndPaint() {
-      // write "Refreshing..." in the center of the canvas
-      Graphics g = this.getGraphics();
-      g.setFont(new Font("SansSerif", Font.ITALIC, 30));
-      //computing position
-      int x = this.getWidth() / 2 - 70;
-      int y = this.getHeight() / 2;
-      //drawing
-      g.setColor(canvas.writer.getWriteColor());
-      g.drawString("Refreshing...", x, y);
-
-      this.update();
-      this.paint(g);
+      refresh();
+      writer.layoutChanged();
+      renderer.request();
+    }
+
+    /**
+     * to use when only the camera changed (zoom, pan):
+     * the layout and its index are unchanged
+     */
+    public void paintView() {
+      renderer.request();
+    }
+
+    /**
+     * Stops the render worker.
+     */
+    private void stopRendering() {
+      renderer.interrupt();
+    }
+
+    /*****************************************************************
+     * Thread that draws the frames requested by
+     * <code>updateAndPaint</code>, so that neither the event dispatch
+     * thread nor the minimizer waits for the drawing.
+     * Requests that arrive while a frame is drawn are merged
+     * into one next frame (stale frames are dropped).
+     * With edges, the first frame is drawn progressively: first
+     * the vertices, then the whole layout, unless a newer frame
+     * is requested in the meantime. Once a frame with edges
+     * is on the screen, it stays there until the next whole frame
+     * is ready (no flicker of the edges during an animation).
+     *****************************************************************/
+    private class RenderWorker extends Thread {
+
+      /** Number of the last requested frame. */
+      private long    requested = 0;
+      /** Number of the last frame that was started. */
+      private long    started   = 0;
+      /** True if the front image is a whole frame with edges
+       *  (accessed only by the worker thread). */
+      private boolean fullFrame = false;
+
+      private RenderWorker() {
+        super("CCVisu display");
+        setDaemon(true);
+      }
+
+      private synchronized void request() {
+        ++requested;
+        notifyAll();
+      }
+
+      /** Waits for a request and returns its number. */
+      private synchronized long next() throws InterruptedException {
+        while (requested == started) {
+          wait();
+        }
+        started = requested;
+        return started;
+      }
+
+      private synchronized boolean isStale(long pFrame) {
+        return requested != pFrame;
+      }
+
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            long lFrame = next();
+            try {
+              boolean lWithEdges = Option.showEdges.getBool();
+              if (lWithEdges && !fullFrame) {
+                render(false);
+                if (isStale(lFrame)) {
+                  continue;
+                }
+              }
+              fullFrame = render(true) && lWithEdges;
+            } catch (RuntimeException e) {
+              System.err.println("Runtime error: Exception while drawing "
+                                 + "the layout:");
+              System.err.println(e);
+            }
+          }
+        } catch (InterruptedException e) {
+          // Display closed.
+        }
+      }
     }
 
   }; // class MyCanvas
@@ -925,6 +1032,7 @@ public class FrameDisplay implements GraphEventListener {
       public void windowClosing(WindowEvent evt) {
         // Close the control dialog as well.
         controlPanelDialog.dispose();
+        canvas.stopRendering();
         // Close this frame.
         mFrame.dispose();
 
@@ -991,26 +1099,12 @@ public class FrameDisplay implements GraphEventListener {
 
   private void loadFile(WriterDataGraphicsDISP pWriter, String pFileName) {
     mFrame.setTitle("Visualization " + pFileName);
-    BufferedReader lIn = null;
     GraphData layout = new GraphData();
-    try {
-      lIn = new BufferedReader(new FileReader(pFileName));
-    } catch (Exception e) {
-      System.err.println("Exception while opening file '" + pFileName
-                         + "' for reading: ");
-      System.err.println(e);
-    }
     // Read layout from file.
-    (new ReaderDataLAY(lIn, canvas.writer.options.verbosity)).read(layout);
+    (new ReaderDataLAYMapped(new File(pFileName),
+        canvas.writer.options.verbosity)).read(layout);
     pWriter.setGraphData(layout);
     canvas.updateAndPaint();
-    // Close the input file.
-    try {
-      lIn.close();
-    } catch (Exception e) {
-      System.err.println("Exception while closing input file: ");
-      System.err.println(e);
-    }
   }
 
   /**
@@ -166,6 +166,7 @@ public class FrameGUI extends JFrame {
             break;
           case SVG:
           case VRML:
+          case GLB:
             enableSVGOptions(true);
             outFile.setEnabled(true);
             saveOutFile.setEnabled(true);
@@ -49,6 +49,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -90,6 +91,8 @@ public class FrameGroup extends JFrame {
 
   // nodes list from a specific cluster
   private List                   cltNodes;
+  // nodes of the cluster shown in cltNodes, in the same order
+  private java.util.List<GraphVertex> shownNodes;
   // list from all nodes in the graph
   private List                   allNodes;
 
@@ -520,10 +523,31 @@ public class FrameGroup extends JFrame {
    * refresh the list that contains the nodes of the current cluster
    */
   private void refreshCltNodes() {
-    cltNodes.removeAll();
-    for (GraphVertex lCurrVertex : curClt) {
-      cltNodes.add(lCurrVertex.name);
+    java.util.List<GraphVertex> lNodes = curClt.getNodes();
+    if (lNodes == shownNodes) { return; }
+    // Both lists are ordered by vertex id: remove the nodes that left
+    //   and insert the nodes that came (not the whole list).
+    int lPos = 0;
+    int lOld = 0;
+    int lNew = 0;
+    while (lOld < shownNodes.size() || lNew < lNodes.size()) {
+      if (lNew == lNodes.size()
+          || (lOld < shownNodes.size() && shownNodes.get(lOld).id < lNodes
+              .get(lNew).id)) {
+        cltNodes.remove(lPos);
+        ++lOld;
+      } else if (lOld == shownNodes.size()
+                 || lNodes.get(lNew).id < shownNodes.get(lOld).id) {
+        cltNodes.add(lNodes.get(lNew).name, lPos);
+        ++lPos;
+        ++lNew;
+      } else {
+        ++lPos;
+        ++lOld;
+        ++lNew;
+      }
     }
+    shownNodes = lNodes;
   }
 
   /**
@@ -534,6 +558,7 @@ public class FrameGroup extends JFrame {
     curClt = clt;
 
     cltNodes = new List(40);
+    shownNodes = new ArrayList<GraphVertex>();
     refreshCltNodes();
     cltNodes.setMultipleMode(true);
 
@@ -597,7 +622,7 @@ public class FrameGroup extends JFrame {
         int selected[] = cltNodes.getSelectedIndexes();
         GraphVertex vertex[] = new GraphVertex[selected.length];
         for (int i = 0; i < selected.length; ++i) {
-          vertex[i] = curClt.getNodes().get(selected[i]);
+          vertex[i] = shownNodes.get(selected[i]);
         }
         for (int i = 0; i < selected.length; ++i) {
           (parent.getCluster(0)).addNode(vertex[i]);
@@ -0,0 +1,203 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.Arrays;
+
+/*****************************************************************
+ * Symmetric adjacency of a graph in compressed sparse row (CSR) format:
+ * the neighbors of vertex i are
+ * <code>targets[offsets[i]]</code> ... <code>targets[offsets[i+1]-1]</code>,
+ * with the edge weights at the same indexes in <code>weights</code>.
+ * Each (non-reflexive) edge {x,y} occurs twice, once in the row of x
+ * and once in the row of y. Reflexive edges are not stored.
+ * Readers append edges with <code>addEdge</code>, in three flat arrays
+ * (no object per edge); <code>compress</code> converts them
+ * into the row format by a counting sort.
+ *****************************************************************/
+public class GraphAdjacency {
+
+  /** Row start indexes, dimension [nodeNr + 1]. */
+  public int[]   offsets      = new int[1];
+  /** Neighbor vertex ids. */
+  public int[]   targets      = new int[0];
+  /** Edge weights, parallel to <code>targets</code>. */
+  public float[] weights      = new float[0];
+
+  /** Edges added since the last compression (sources, targets, weights). */
+  private int[]  addedX       = new int[16];
+  private int[]  addedY       = new int[16];
+  private float[] addedW      = new float[16];
+  private int    addedNr      = 0;
+
+  /** Vertices with a reflexive edge (which is not stored in the rows). */
+  private int[]  reflexive    = new int[0];
+  private int    reflexiveNr  = 0;
+
+  /** Number of vertices of the compressed rows. */
+  private int    nodeNr       = 0;
+
+  /**
+   * Appends the edge {pX,pY} of weight pW.
+   * @return Index of the edge until the next compression 
+   *         (see <code>addWeight</code>), or -1 for a reflexive edge.
+   */
+  public int addEdge(int pX, int pY, float pW) {
+    if (pX == pY) {
+      if (reflexiveNr == reflexive.length) {
+        reflexive = Arrays.copyOf(reflexive, 2 * reflexiveNr + 4);
+      }
+      reflexive[reflexiveNr++] = pX;
+      return -1;
+    }
+    if (addedNr == addedX.length) {
+      int lNewLength = 2 * addedNr;
+      addedX = Arrays.copyOf(addedX, lNewLength);
+      addedY = Arrays.copyOf(addedY, lNewLength);
+      addedW = Arrays.copyOf(addedW, lNewLength);
+    }
+    addedX[addedNr] = pX;
+    addedY[addedNr] = pY;
+    addedW[addedNr] = pW;
+    return addedNr++;
+  }
+
+  /**
+   * Adds pW to the weight of an edge that was added since 
+   * the last compression (used to merge parallel edges).
+   * @param pIndex  Index returned by <code>addEdge</code>.
+   */
+  public void addWeight(int pIndex, float pW) {
+    assert (pIndex >= 0 && pIndex < addedNr);
+    addedW[pIndex] += pW;
+  }
+
+  /**
+   * Returns true if no edge was added.
+   */
+  public boolean isEmpty() {
+    return addedNr == 0 && targets.length == 0 && reflexiveNr == 0;
+  }
+
+  /**
+   * Builds the rows from all edges added so far (merging with existing rows),
+   * for a graph with pNodeNr vertices.
+   * Does nothing if the rows are up to date.
+   */
+  public void compress(int pNodeNr) {
+    if (addedNr == 0 && pNodeNr == nodeNr) { return; }
+    assert (pNodeNr >= nodeNr);
+
+    int[] lOffsets = new int[pNodeNr + 1];
+    // Existing rows.
+    for (int i = 0; i < nodeNr; ++i) {
+      lOffsets[i + 1] = offsets[i + 1] - offsets[i];
+    }
+    // New edges.
+    for (int k = 0; k < addedNr; ++k) {
+      ++lOffsets[addedX[k] + 1];
+      ++lOffsets[addedY[k] + 1];
+    }
+    for (int i = 0; i < pNodeNr; ++i) {
+      lOffsets[i + 1] += lOffsets[i];
+    }
+
+    int[] lTargets = new int[lOffsets[pNodeNr]];
+    float[] lWeights = new float[lOffsets[pNodeNr]];
+    int[] lFill = Arrays.copyOf(lOffsets, pNodeNr);
+    for (int i = 0; i < nodeNr; ++i) {
+      int lLength = offsets[i + 1] - offsets[i];
+      System.arraycopy(targets, offsets[i], lTargets, lFill[i], lLength);
+      System.arraycopy(weights, offsets[i], lWeights, lFill[i], lLength);
+      lFill[i] += lLength;
+    }
+    for (int k = 0; k < addedNr; ++k) {
+      int lX = addedX[k];
+      int lY = addedY[k];
+      lTargets[lFill[lX]] = lY;
+      lWeights[lFill[lX]++] = addedW[k];
+      lTargets[lFill[lY]] = lX;
+      lWeights[lFill[lY]++] = addedW[k];
+    }
+
+    offsets = lOffsets;
+    targets = lTargets;
+    weights = lWeights;
+    nodeNr = pNodeNr;
+    // Release the edge buffers.
+    addedX = new int[16];
+    addedY = new int[16];
+    addedW = new float[16];
+    addedNr = 0;
+  }
+
+  /**
+   * Replaces the adjacency by the given rows (e.g., read from a snapshot).
+   * @param pOffsets    Row start indexes, dimension [nodeNr + 1].
+   * @param pTargets    Neighbor vertex ids.
+   * @param pWeights    Edge weights, parallel to pTargets.
+   * @param pReflexive  Vertices with a reflexive edge.
+   */
+  public void setRows(int[] pOffsets, int[] pTargets, float[] pWeights,
+                      int[] pReflexive) {
+    assert (pTargets.length == pWeights.length);
+    offsets = pOffsets;
+    targets = pTargets;
+    weights = pWeights;
+    nodeNr = pOffsets.length - 1;
+    reflexive = pReflexive;
+    reflexiveNr = pReflexive.length;
+    addedX = new int[16];
+    addedY = new int[16];
+    addedW = new float[16];
+    addedNr = 0;
+  }
+
+  /**
+   * Returns the number of vertices of the compressed rows.
+   */
+  public int getNodeNr() {
+    return nodeNr;
+  }
+
+  /**
+   * Returns the number of neighbors of vertex pIndex (with multiplicity).
+   */
+  public int getDegree(int pIndex) {
+    return offsets[pIndex + 1] - offsets[pIndex];
+  }
+
+  /**
+   * Returns the ids of the vertices that have a reflexive edge
+   * (one entry per reflexive edge).
+   */
+  public int[] getReflexive() {
+    return Arrays.copyOf(reflexive, reflexiveNr);
+  }
+}
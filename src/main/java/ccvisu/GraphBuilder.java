@@ -0,0 +1,184 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Inserts vertices and edges into a <code>GraphData</code> object,
+ * one edge at a time: creates the vertices on first sight,
+ * maintains the degrees, the edge list (if stored),
+ * the adjacency, and the merging of parallel edges (if enabled).
+ *****************************************************************/
+public class GraphBuilder implements TupleConsumer {
+
+  private final GraphData       graph;
+  private final Verbosity       verbosity;
+
+  /** For edge aggregation: (source, target) to index in the adjacency. */
+  private final LongIntMap      edgeIndex;
+  /** For edge aggregation: index in the adjacency (minus the index
+   *  of the first edge) to edge object. */
+  private final List<GraphEdge> aggregatedEdges;
+  /** Index in the adjacency of the first edge inserted by this builder. */
+  private int                   firstIndex = -1;
+  /** Number of tuples received by <code>addTuple(List)</code>. */
+  private int                   tupleNr    = 0;
+
+  public GraphBuilder(GraphData pGraph, Verbosity pVerbosity) {
+    graph = pGraph;
+    verbosity = pVerbosity;
+    if (pGraph.aggregateEdges) {
+      edgeIndex = new LongIntMap();
+      aggregatedEdges = new ArrayList<GraphEdge>();
+    } else {
+      edgeIndex = null;
+      aggregatedEdges = null;
+    }
+  }
+
+  /*****************************************************************
+   * Adds an edge given as RSF tuple (numbered in the order received).
+   *****************************************************************/
+  @Override
+  public void addTuple(List<String> pTuple) {
+    ++tupleNr;
+    addTuple(pTuple, tupleNr);
+  }
+
+  /*****************************************************************
+   * Adds an edge given as RSF tuple
+   * '<rel-name> <source-name> <target-name> [<weight>]'.
+   * @param pTuple   The tuple.
+   * @param pLineNo  Position of the tuple in the input, for error messages.
+   *****************************************************************/
+  public void addTuple(List<String> pTuple, int pLineNo) {
+    if (pTuple.isEmpty() || pTuple.get(0).charAt(0) == '#') { return; }
+    if (pTuple.size() < 3) {
+      System.err.println("Runtime error: Exception while reading "
+                         + "a graph edge, at line " + pLineNo + ":");
+      System.err.println("Input graph file needs to follow the RSF format");
+      System.err.println("'<graph-name> <source-node> <target-node>'.");
+      return;
+    }
+    // Relation name.
+    String lEdgeRelName = pTuple.get(0);
+    // Edge weight.
+    float lWeight = 1.0f;
+    if (pTuple.size() > 3) {
+      lWeight = parseWeight(lEdgeRelName, pTuple.get(3), pLineNo);
+    }
+    addEdge(lEdgeRelName, getVertex(pTuple.get(1)), getVertex(pTuple.get(2)),
+        lWeight);
+  }
+
+  /*****************************************************************
+   * Parses an edge weight; returns 1.0 if it is not a float.
+   *****************************************************************/
+  public float parseWeight(String pRelName, String pWeight, int pLineNo) {
+    try {
+      return Math.abs(Float.parseFloat(pWeight));
+    } catch (Exception e) {
+      if (verbosity.isAtLeast(Verbosity.WARNING)) {
+        System.err.println("RSF warning: Float expected for relation '"
+                           + pRelName + "' at '" + pWeight + "', at line "
+                           + pLineNo + ".");
+      }
+      return 1.0f;
+    }
+  }
+
+  /*****************************************************************
+   * Returns the vertex with the given name;
+   * inserts a new vertex into the graph if there is none.
+   *****************************************************************/
+  public GraphVertex getVertex(String pName) {
+    GraphVertex result = graph.nameToVertex.get(pName);
+    if (result == null) {
+      result = new GraphVertex();
+      result.name = pName;
+      result.id = graph.vertices.size();
+      graph.vertices.add(result);
+      graph.nameToVertex.put(pName, result);
+    }
+    return result;
+  }
+
+  /*****************************************************************
+   * Inserts the edge (x,y) of weight pWeight,
+   * or adds the weight to a parallel edge if edge aggregation is enabled.
+   *****************************************************************/
+  public void addEdge(String pRelName, GraphVertex x, GraphVertex y,
+                      float pWeight) {
+    x.isSource = true;
+    y.isSource = false;
+
+    // Merge with a parallel edge, if aggregation is enabled.
+    int lParallel = LongIntMap.NOT_FOUND;
+    if (edgeIndex != null && x.id != y.id) {
+      lParallel = edgeIndex.get(LongIntMap.pack(x.id, y.id));
+    }
+    if (lParallel != LongIntMap.NOT_FOUND) {
+      graph.adjacency.addWeight(lParallel, pWeight);
+      if (graph.storeEdges) {
+        aggregatedEdges.get(lParallel - firstIndex).w += pWeight;
+      }
+    } else {
+      // Insert edge to graph.
+      // (Detection of reflexive edges is done by the minimizer.)
+      GraphEdge edge = null;
+      if (graph.storeEdges) {
+        edge = new GraphEdge();
+        edge.relName = pRelName;
+        edge.x = x.id;
+        edge.y = y.id;
+        edge.w = pWeight;
+        graph.edges.add(edge);
+      }
+      int lIndex = graph.adjacency.addEdge(x.id, y.id, pWeight);
+      if (edgeIndex != null && lIndex >= 0) {
+        if (firstIndex < 0) {
+          firstIndex = lIndex;
+        }
+        edgeIndex.put(LongIntMap.pack(x.id, y.id), lIndex);
+        aggregatedEdges.add(edge);
+      }
+    }
+    // Adjust degrees of the vertices.
+    x.degree += pWeight;
+    y.degree += pWeight;
+    if (x.degree < 0 || y.degree < 0) {
+      System.err.println("Invalid graph: edge {" + x.name + "," + y.name
+                         + "} " + "has weight: " + pWeight + ".");
+    }
+  }
+}
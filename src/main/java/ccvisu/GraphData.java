@@ -49,6 +49,35 @@ public class GraphData {
   /** Edges of type GraphEdgeInt. Only used if (inFormat < LAY).*/
   public List<GraphEdge>          edges        = new ArrayList<GraphEdge>();
 
+  /** Edges in compressed sparse row format, as needed by the minimizer.
+   *  Filled by the graph readers, see <code>getAdjacency()</code>. */
+  public GraphAdjacency           adjacency    = new GraphAdjacency();
+  /** If false, the graph readers store the edges only in 
+   *  <code>adjacency</code> and not as <code>GraphEdge</code> objects
+   *  in <code>edges</code> (enough for layout computation and LAY output). */
+  public boolean                  storeEdges   = true;
+  /** If true, the graph readers merge parallel edges (same source and
+   *  target vertex) into one edge, whose weight is the sum of the weights. */
+  public boolean                  aggregateEdges = false;
+
   /** Raw RSF data as extracted from input. */
   public Relation                 mTuples      = new Relation();
+  /** If false, the graph readers do not keep the raw tuples in
+   *  <code>mTuples</code> (only needed for RSF output). */
+  public boolean                  storeTuples  = true;
+
+  /*****************************************************************
+   * Returns the adjacency in compressed sparse row format. 
+   * If the graph was not filled by a graph reader (e.g., AUX input),
+   * the adjacency is built from <code>edges</code>.
+   *****************************************************************/
+  public GraphAdjacency getAdjacency() {
+    if (adjacency.isEmpty()) {
+      for (GraphEdge e : edges) {
+        adjacency.addEdge(e.x, e.y, e.w);
+      }
+    }
+    adjacency.compress(vertices.size());
+    return adjacency;
+  }
 };
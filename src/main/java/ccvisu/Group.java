@@ -28,9 +28,13 @@
 
 package ccvisu;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A class with a list of nodes that compute some informations on them
@@ -49,12 +53,18 @@ public class Group implements Iterable<GraphVertex> {
   /**used as mode for the method addPattern*/
   public static final int               ENDS     = 3;
 
-  /**contain the name of node's cluster*/
-  private static String[]               indexToCltName;
+  /**contain the cluster of each node (by vertex id)*/
+  private static Group[]                indexToClt;
+  /**index of the node names, for addPattern and filter (built on demand)*/
+  private static NameIndex              nameIndex;
   /**name of the cluster*/
   private String                        name;
-  /**list of int representing the index of nodes in the GraphData*/
-  private final List<GraphVertex>       nodes    = new Vector<GraphVertex>();
+  /**ids of the nodes of the cluster (in the GraphData);
+   * its lock guards the membership changes and the rebuild of nodes,
+   * as the display thread reads the nodes while the GUI changes them*/
+  private final BitSet                  members  = new BitSet();
+  /**list of the nodes in the order of their ids, or null if outdated*/
+  private volatile List<GraphVertex>    nodes    = null;
   /**color of the cluster*/
   private Colors                        color    = Colors.RED;
 
@@ -101,15 +111,8 @@ public class Group implements Iterable<GraphVertex> {
    * @param vertex
    */
   public void addNode(GraphVertex vertex) {
-    nodes.add(vertex);
+    addNode_WO_COLOR(vertex);
     vertex.color = color.get();
-    changed = true;
-
-    Group clt = Group.writer.getCluster(Group.indexToCltName[vertex.id]);
-    if (clt != null) {
-      clt.removeNode(vertex);
-    }
-    Group.indexToCltName[vertex.id] = name;
   }
 
   /**
@@ -119,14 +122,16 @@ public class Group implements Iterable<GraphVertex> {
    * @param vertex    vertex to process
    */
   public void addNode_WO_COLOR(GraphVertex vertex) {
-    nodes.add(vertex);
-    changed = true;
-
-    Group clt = Group.writer.getCluster(Group.indexToCltName[vertex.id]);
-    if (clt != null) {
+    Group clt = Group.indexToClt[vertex.id];
+    if (clt != null && clt != this) {
       clt.removeNode(vertex);
     }
-    Group.indexToCltName[vertex.id] = name;
+    synchronized (members) {
+      members.set(vertex.id);
+      nodes = null;
+    }
+    changed = true;
+    Group.indexToClt[vertex.id] = this;
   }
 
   /**
@@ -134,16 +139,20 @@ public class Group implements Iterable<GraphVertex> {
    * @param vertex
    */
   public void removeNode(GraphVertex vertex) {
-    nodes.remove(vertex);
+    synchronized (members) {
+      members.clear(vertex.id);
+      nodes = null;
+    }
     changed = true;
   }
 
   /**
    * return an iterator on the index of the cluster's nodes
+   * (on the nodes at the time of the call)
    * @return iterator
    */
   public Iterator<GraphVertex> iterator() {
-    return nodes.iterator();
+    return getNodes().iterator();
   }
 
   /**
@@ -152,67 +161,89 @@ public class Group implements Iterable<GraphVertex> {
    * @param mode the way of using the pattern.
    */
   public void addPattern(String pattern, int mode) {
-    for (GraphVertex curVertex : Group.graph.vertices) {
-      if (mode == Group.EQUALS) {
-        if (curVertex.name.equals(pattern)) {
-          addNode(curVertex);
-        }
-      } else if (mode == Group.CONTAINS) {
-        if (curVertex.name.matches(".*" + pattern + ".*")) {
-          addNode(curVertex);
-        }
-      } else if (mode == Group.STARTS) {
-        if (curVertex.name.startsWith(pattern)) {
-          addNode(curVertex);
-        }
-      } else if (mode == Group.ENDS) {
-        if (curVertex.name.endsWith(pattern)) {
-          addNode(curVertex);
-        }
-      }
+    BitSet match = Group.match(pattern, mode);
+    for (int i = match.nextSetBit(0); i >= 0; i = match.nextSetBit(i + 1)) {
+      addNode(Group.graph.vertices.get(i));
     }
   }
 
   public void filter(String pattern, int mode, boolean keep) {
-    int end = nodes.size();
-    boolean match[] = new boolean[end];
-    for (int i = 0; i < end; ++i) {
-      match[i] = !keep;
-      GraphVertex curVertex = nodes.get(i);
-      if (mode == Group.EQUALS) {
-        if (curVertex.name.equals(pattern)) {
-          match[i] = keep;
-        }
-      } else if (mode == Group.CONTAINS) {
-        if (curVertex.name.matches(".*" + pattern + ".*")) {
-          match[i] = keep;
-        }
-      } else if (mode == Group.STARTS) {
-        if (curVertex.name.startsWith(pattern)) {
-          match[i] = keep;
-        }
-      } else if (mode == Group.ENDS) {
-        if (curVertex.name.endsWith(pattern)) {
-          match[i] = keep;
-        }
+    BitSet match = Group.match(pattern, mode);
+    Group defaultClt = Group.writer.getCluster(0);
+    for (GraphVertex curVertex : getNodes()) {
+      if (match.get(curVertex.id) != keep) {
+        defaultClt.addNode(curVertex);
       }
     }
-    GraphVertex selected[] = new GraphVertex[end];
-    for (int i = 0; i < end; ++i) {
-      if (!match[i]) {
-        selected[i] = nodes.get(i);
+  }
+
+  /**
+   * compute the ids of the nodes whose names match the pattern
+   * @param pattern
+   * @param mode the way of using the pattern.
+   * @return the ids of the matching nodes
+   */
+  private static BitSet match(String pattern, int mode) {
+    BitSet result = new BitSet(Group.graph.vertices.size());
+    if (mode == Group.EQUALS) {
+      GraphVertex curVertex = Group.graph.nameToVertex.get(pattern);
+      if (curVertex != null) {
+        result.set(curVertex.id);
       }
+      return result;
     }
-    Group defaultClt = Group.writer.getCluster(0);
-    for (int i = 0; i < end; ++i) {
-      if (selected[i] != null) {
-        defaultClt.addNode(selected[i]);
+    if (Group.nameIndex == null
+        || Group.nameIndex.size() != Group.graph.vertices.size()) {
+      Group.nameIndex = new NameIndex(Group.graph.vertices);
+    }
+    if (mode == Group.STARTS) {
+      return Group.nameIndex.startsWith(pattern);
+    } else if (mode == Group.ENDS) {
+      return Group.nameIndex.endsWith(pattern);
+    } else if (mode == Group.CONTAINS) {
+      // The pattern is a regular expression; if it has no
+      //   special character, it is a plain substring.
+      if (!pattern.matches(".*[\\\\^$.|?*+()\\[\\]{}].*")) {
+        return Group.nameIndex.contains(pattern);
+      }
+      Pattern regEx;
+      try {
+        regEx = Pattern.compile(".*" + pattern + ".*");
+      } catch (PatternSyntaxException e) {
+        System.err.println("Invalid pattern '" + pattern + "': "
+                           + e.getDescription());
+        return result;
+      }
+      for (GraphVertex curVertex : Group.graph.vertices) {
+        if (regEx.matcher(curVertex.name).matches()) {
+          result.set(curVertex.id);
+        }
       }
     }
+    return result;
   }
 
+  /**
+   * @return the nodes of the cluster, in the order of their ids
+   *         (a list that does not change when nodes are added or removed).
+   */
   public List<GraphVertex> getNodes() {
-    return nodes;
+    List<GraphVertex> result = nodes;
+    if (result == null) {
+      synchronized (members) {
+        result = nodes;
+        if (result == null) {
+          result = new ArrayList<GraphVertex>(members.cardinality());
+          for (int i = members.nextSetBit(0); i >= 0;
+               i = members.nextSetBit(i + 1)) {
+            result.add(Group.graph.vertices.get(i));
+          }
+          result = Collections.unmodifiableList(result);
+          nodes = result;
+        }
+      }
+    }
+    return result;
   }
 
   /**
@@ -227,7 +258,7 @@ public class Group implements Iterable<GraphVertex> {
    */
   public void setColor(Colors color) {
     this.color = color;
-    for (GraphVertex curVertex : nodes) {
+    for (GraphVertex curVertex : getNodes()) {
       curVertex.color = color.get();
     }
   }
@@ -294,6 +325,7 @@ public class Group implements Iterable<GraphVertex> {
    * compute the informations provided by the cluster
    */
   private void compute() {
+    List<GraphVertex> nodes = getNodes();
     int nbr = nodes.size();
     //barycenter
     x = 0;
@@ -330,7 +362,18 @@ public class Group implements Iterable<GraphVertex> {
   public static void init(WriterDataGraphicsDISP writer, GraphData graph) {
     Group.writer = writer;
     Group.graph = graph;
-    Group.indexToCltName = new String[graph.vertices.size()];
+    Group.indexToClt = new Group[graph.vertices.size()];
+    Group.nameIndex = null;
+  }
+
+  /**
+   * return the cluster of the given vertex
+   * @param vertex
+   * @return the cluster, or null if the vertex is in none
+   */
+  public static Group getCluster(GraphVertex vertex) {
+    if (vertex.id >= Group.indexToClt.length) { return null; }
+    return Group.indexToClt[vertex.id];
   }
 
   /**
@@ -0,0 +1,227 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*****************************************************************
+ * State of a running minimization (vertex positions, iteration number
+ * and repulsion schedule), stored in a compact binary file such that
+ * a long layout computation can be resumed after an interruption.
+ * File format (big endian): magic number, format version,
+ * number of vertices, hash of the vertex names, number of edges,
+ * hash of the adjacency, number of dimensions, last completed iteration, final repulsion factor,
+ * and then the coordinates of each vertex (nrDim floats per vertex).
+ *****************************************************************/
+public class LayoutCheckpoint {
+
+  private static final int MAGIC   = 0x43435643; // 'CCVC'
+  private static final int VERSION = 2;
+
+  /** Last completed iteration of the minimizer. */
+  final int                step;
+  /** Repulsion factor that the repulsion schedule is based on. */
+  final float              repuFactor;
+  /** Hash of the vertex names, to detect checkpoints of other graphs. */
+  final int                nameHash;
+  /** Number of edges (adjacency entries) of the graph. */
+  final int                edgeNr;
+  /** Hash of the adjacency, to detect checkpoints of changed edges. */
+  final int                edgeHash;
+  /** Number of coordinates stored per vertex. */
+  final int                nrDim;
+  /** Coordinates, vertex after vertex. */
+  final float[]            coords;
+
+  private LayoutCheckpoint(int pStep, float pRepuFactor, int pNameHash,
+                           int pEdgeNr, int pEdgeHash, int pNrDim,
+                           float[] pCoords) {
+    step = pStep;
+    repuFactor = pRepuFactor;
+    nameHash = pNameHash;
+    edgeNr = pEdgeNr;
+    edgeHash = pEdgeHash;
+    nrDim = pNrDim;
+    coords = pCoords;
+  }
+
+  /**
+   * Copies the current positions of the graph.
+   * The copy is cheap compared to an iteration and can be written
+   * to disk while the minimizer continues to change the positions.
+   */
+  public static LayoutCheckpoint snapshot(GraphData pGraph, int pNrDim,
+                                          int pNameHash, int pEdgeHash,
+                                          int pStep, float pRepuFactor) {
+    int lNrDim = storedDim(pNrDim);
+    float[] lCoords = new float[pGraph.vertices.size() * lNrDim];
+    int k = 0;
+    for (GraphVertex lCurrVertex : pGraph.vertices) {
+      lCoords[k++] = lCurrVertex.pos.x;
+      if (lNrDim >= 2) {
+        lCoords[k++] = lCurrVertex.pos.y;
+      }
+      if (lNrDim == 3) {
+        lCoords[k++] = lCurrVertex.pos.z;
+      }
+    }
+    return new LayoutCheckpoint(pStep, pRepuFactor, pNameHash,
+        pGraph.getAdjacency().targets.length, pEdgeHash, lNrDim, lCoords);
+  }
+
+  /**
+   * Returns a hash of the vertex names (in vertex id order).
+   */
+  public static int nameHash(GraphData pGraph) {
+    int result = pGraph.vertices.size();
+    for (GraphVertex lCurrVertex : pGraph.vertices) {
+      result = 31 * result + lCurrVertex.name.hashCode();
+    }
+    return result;
+  }
+
+  /**
+   * Returns a hash of the adjacency (neighbors and weights of each vertex).
+   */
+  public static int edgeHash(GraphData pGraph) {
+    GraphAdjacency lAdjacency = pGraph.getAdjacency();
+    int result = Arrays.hashCode(lAdjacency.offsets);
+    result = 31 * result + Arrays.hashCode(lAdjacency.targets);
+    result = 31 * result + Arrays.hashCode(lAdjacency.weights);
+    return result;
+  }
+
+  /**
+   * Returns true if the checkpoint was written for the given graph
+   * and number of dimensions.
+   */
+  public boolean matches(GraphData pGraph, int pNrDim, int pNameHash,
+                         int pEdgeHash) {
+    return nrDim == storedDim(pNrDim)
+           && coords.length == pGraph.vertices.size() * nrDim
+           && nameHash == pNameHash
+           && edgeNr == pGraph.getAdjacency().targets.length
+           && edgeHash == pEdgeHash;
+  }
+
+  /** Returns the number of coordinates stored for pNrDim dimensions. */
+  private static int storedDim(int pNrDim) {
+    return Math.max(1, Math.min(3, pNrDim));
+  }
+
+  /**
+   * Sets the vertex positions to the stored positions.
+   */
+  public void apply(GraphData pGraph) {
+    int k = 0;
+    for (GraphVertex lCurrVertex : pGraph.vertices) {
+      lCurrVertex.pos.x = coords[k++];
+      lCurrVertex.pos.y = (nrDim >= 2) ? coords[k++] : 0.0f;
+      lCurrVertex.pos.z = (nrDim == 3) ? coords[k++] : 0.0f;
+    }
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file first and then
+   * renames it, such that an interruption never leaves
+   * a corrupt checkpoint behind.
+   */
+  public void write(File pFile) throws IOException {
+    File lTmpFile = new File(pFile.getPath() + ".tmp");
+    DataOutputStream lOut =
+                            new DataOutputStream(new BufferedOutputStream(
+                                new FileOutputStream(lTmpFile), 1 << 16));
+    try {
+      lOut.writeInt(MAGIC);
+      lOut.writeInt(VERSION);
+      lOut.writeInt(coords.length / nrDim);
+      lOut.writeInt(nameHash);
+      lOut.writeInt(edgeNr);
+      lOut.writeInt(edgeHash);
+      lOut.writeInt(nrDim);
+      lOut.writeInt(step);
+      lOut.writeFloat(repuFactor);
+      for (float lCoord : coords) {
+        lOut.writeFloat(lCoord);
+      }
+    } finally {
+      lOut.close();
+    }
+    if (!lTmpFile.renameTo(pFile)) {
+      // Some platforms do not rename onto an existing file.
+      pFile.delete();
+      if (!lTmpFile.renameTo(pFile)) {
+        throw new IOException("Cannot rename '" + lTmpFile + "' to '"
+                              + pFile + "'.");
+      }
+    }
+  }
+
+  /**
+   * Reads a checkpoint that was written by <code>write</code>.
+   */
+  public static LayoutCheckpoint read(File pFile) throws IOException {
+    DataInputStream lIn =
+                          new DataInputStream(new BufferedInputStream(
+                              new FileInputStream(pFile), 1 << 16));
+    try {
+      if (lIn.readInt() != MAGIC) {
+        throw new IOException("'" + pFile + "' is not a layout checkpoint.");
+      }
+      int lVersion = lIn.readInt();
+      if (lVersion != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + lVersion
+                              + ".");
+      }
+      int lNodeNr = lIn.readInt();
+      int lNameHash = lIn.readInt();
+      int lEdgeNr = lIn.readInt();
+      int lEdgeHash = lIn.readInt();
+      int lNrDim = lIn.readInt();
+      int lStep = lIn.readInt();
+      float lRepuFactor = lIn.readFloat();
+      float[] lCoords = new float[lNodeNr * lNrDim];
+      for (int i = 0; i < lCoords.length; ++i) {
+        lCoords[i] = lIn.readFloat();
+      }
+      return new LayoutCheckpoint(lStep, lRepuFactor, lNameHash, lEdgeNr,
+          lEdgeHash, lNrDim, lCoords);
+    } finally {
+      lIn.close();
+    }
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*****************************************************************
+ * Computes initial positions from the structure of the graph,
+ * as a better starting point for the minimizer than random positions.
+ * All strategies expect that the vertices already have (random)
+ * positions; vertices that a strategy cannot place keep them.
+ * The resulting positions are scaled to the cube [-1,1]^nrDim.
+ *****************************************************************/
+public class LayoutInitializer {
+
+  /** Number of power iterations for the spectral embedding. */
+  private static final int    SPECTRAL_ITERATIONS = 50;
+
+  /** Relative amount of noise added to separate coinciding vertices. */
+  private static final float  JITTER              = 0.01f;
+
+  /** Seeded, such that the initial placement is reproducible. */
+  private static final Random random              = new Random(0);
+
+  /*****************************************************************
+   * Applies the initial placement strategy given in the options.
+   * @param pOptions  Options, containing the graph and the strategy.
+   *****************************************************************/
+  public static void place(Options pOptions) {
+    GraphData lGraph = pOptions.graph;
+    if (lGraph.vertices.size() < 2) { return; }
+
+    switch (pOptions.initPlacement) {
+    case SPECTRAL:
+      placeSpectral(lGraph, pOptions.nrDim);
+      break;
+    case BFS:
+      placeBFS(lGraph, pOptions.nrDim);
+      break;
+    case BIPARTITE:
+      placeBipartite(lGraph, pOptions.nrDim);
+      break;
+    default:
+      // Random positions are already assigned.
+      break;
+    }
+  }
+
+  /*****************************************************************
+   * Spectral embedding: the coordinates are the generalized eigenvectors
+   * of the (weighted) adjacency matrix with the largest non-trivial
+   * eigenvalues, approximated by power iteration on the lazy random walk
+   * matrix (I + D^-1 A) / 2, with D-orthogonalization against
+   * the constant vector and the previous coordinates (see Koren,
+   * 'Drawing graphs by eigenvectors').
+   *****************************************************************/
+  private static void placeSpectral(GraphData pGraph, int pNrDim) {
+    Adjacency lAdj = new Adjacency(pGraph);
+    int lNodeNr = lAdj.nodeNr;
+
+    float[][] lCoords = new float[pNrDim][];
+    float[] lTmp = new float[lNodeNr];
+    for (int d = 0; d < pNrDim; ++d) {
+      float[] lVec = new float[lNodeNr];
+      for (int i = 0; i < lNodeNr; ++i) {
+        lVec[i] = getCoord(pGraph.vertices.get(i).pos, d);
+      }
+      for (int iter = 0; iter < SPECTRAL_ITERATIONS; ++iter) {
+        // D-orthogonalize against the constant vector and
+        //   against the coordinates that are already computed.
+        orthogonalize(lVec, null, lAdj.degree);
+        for (int k = 0; k < d; ++k) {
+          orthogonalize(lVec, lCoords[k], lAdj.degree);
+        }
+        // lTmp = (I + D^-1 A) / 2 * lVec.
+        for (int i = 0; i < lNodeNr; ++i) {
+          float lSum = 0.0f;
+          for (int k = lAdj.offsets[i]; k < lAdj.offsets[i + 1]; ++k) {
+            lSum += lAdj.weights[k] * lVec[lAdj.targets[k]];
+          }
+          if (lAdj.degree[i] > 0) {
+            lTmp[i] = 0.5f * (lVec[i] + lSum / lAdj.degree[i]);
+          } else {
+            lTmp[i] = lVec[i];
+          }
+        }
+        normalize(lTmp);
+        float[] lSwap = lVec;
+        lVec = lTmp;
+        lTmp = lSwap;
+      }
+      lCoords[d] = lVec;
+    }
+    setPositions(pGraph, lCoords);
+  }
+
+  /*****************************************************************
+   * BFS-distance placement: chooses pivot vertices by farthest-first
+   * traversal and uses the hop distance to the d-th pivot
+   * as d-th coordinate (a cheap approximation of classical scaling).
+   * Each connected component gets its own pivots; the components
+   * are then packed next to each other like the component layouts
+   * of <code>MinimizerComponents</code>.
+   *****************************************************************/
+  private static void placeBFS(GraphData pGraph, int pNrDim) {
+    List<GraphData> lComponents = MinimizerComponents.splitComponents(pGraph);
+    for (GraphData lComponent : lComponents) {
+      placeComponentBFS(lComponent, pNrDim);
+    }
+    MinimizerComponents.pack(lComponents, pNrDim);
+
+    // Scale the packed components together.
+    int lNodeNr = pGraph.vertices.size();
+    float[][] lCoords = new float[pNrDim][lNodeNr];
+    for (int i = 0; i < lNodeNr; ++i) {
+      for (int d = 0; d < pNrDim; ++d) {
+        lCoords[d][i] = getCoord(pGraph.vertices.get(i).pos, d);
+      }
+    }
+    setPositions(pGraph, lCoords);
+  }
+
+  /*****************************************************************
+   * Assigns the hop distances to the pivots of a connected component
+   * as (unscaled) coordinates of its vertices.
+   *****************************************************************/
+  private static void placeComponentBFS(GraphData pComponent, int pNrDim) {
+    Adjacency lAdj = new Adjacency(pComponent);
+    int lNodeNr = lAdj.nodeNr;
+
+    // Start from the vertex with the largest degree,
+    //   its farthest vertex is the first pivot.
+    int lStart = 0;
+    for (int i = 1; i < lNodeNr; ++i) {
+      if (lAdj.degree[i] > lAdj.degree[lStart]) {
+        lStart = i;
+      }
+    }
+    int[] lDist = lAdj.bfs(lStart);
+    int lPivot = farthest(lDist);
+
+    // Minimum distance to all pivots chosen so far.
+    int[] lMinDist = new int[lNodeNr];
+    Arrays.fill(lMinDist, Integer.MAX_VALUE);
+    for (int d = 0; d < pNrDim; ++d) {
+      lDist = lAdj.bfs(lPivot);
+      for (int i = 0; i < lNodeNr; ++i) {
+        setCoord(pComponent.vertices.get(i).pos, d, lDist[i]);
+        lMinDist[i] = Math.min(lMinDist[i], lDist[i]);
+      }
+      lPivot = farthest(lMinDist);
+    }
+  }
+
+  /*****************************************************************
+   * Bipartite placement: source vertices (e.g., products) are
+   * distributed evenly on the unit sphere (circle in 2D), and each
+   * target vertex (e.g., topic) is put at the barycenter of its
+   * source neighbors. Vertices without source neighbors keep
+   * their positions.
+   *****************************************************************/
+  private static void placeBipartite(GraphData pGraph, int pNrDim) {
+    Adjacency lAdj = new Adjacency(pGraph);
+    int lNodeNr = lAdj.nodeNr;
+
+    int lSourceNr = 0;
+    for (GraphVertex lCurrVertex : pGraph.vertices) {
+      if (lCurrVertex.isSource) {
+        ++lSourceNr;
+      }
+    }
+    if (lSourceNr == 0) { return; }
+
+    // Sources on a Fibonacci sphere (3D), on a circle (2D), or a line (1D).
+    int lSourceIdx = 0;
+    for (GraphVertex lCurrVertex : pGraph.vertices) {
+      if (lCurrVertex.isSource) {
+        float lT = (lSourceIdx + 0.5f) / lSourceNr;
+        Position lPos = lCurrVertex.pos;
+        if (pNrDim >= 3) {
+          float lZ = 1 - 2 * lT;
+          float lR = (float) Math.sqrt(1 - lZ * lZ);
+          double lPhi = Math.PI * (3 - Math.sqrt(5)) * lSourceIdx;
+          lPos.x = lR * (float) Math.cos(lPhi);
+          lPos.y = lR * (float) Math.sin(lPhi);
+          lPos.z = lZ;
+        } else if (pNrDim == 2) {
+          double lPhi = 2 * Math.PI * lT;
+          lPos.x = (float) Math.cos(lPhi);
+          lPos.y = (float) Math.sin(lPhi);
+        } else {
+          lPos.x = 2 * lT - 1;
+        }
+        ++lSourceIdx;
+      }
+    }
+
+    // Targets at the (weighted) barycenter of their sources.
+    float lJitter = JITTER / (float) Math.sqrt(lSourceNr);
+    for (int i = 0; i < lNodeNr; ++i) {
+      GraphVertex lCurrVertex = pGraph.vertices.get(i);
+      if (lCurrVertex.isSource) {
+        continue;
+      }
+      Position lBary = new Position();
+      float lWeightSum = 0.0f;
+      for (int k = lAdj.offsets[i]; k < lAdj.offsets[i + 1]; ++k) {
+        GraphVertex lNeighbor = pGraph.vertices.get(lAdj.targets[k]);
+        if (lNeighbor.isSource) {
+          lBary.add(Position.mult(lNeighbor.pos, lAdj.weights[k]));
+          lWeightSum += lAdj.weights[k];
+        }
+      }
+      if (lWeightSum > 0) {
+        lBary.div(lWeightSum);
+        for (int d = 0; d < pNrDim; ++d) {
+          setCoord(lBary, d, getCoord(lBary, d) + lJitter
+                             * (2 * random.nextFloat() - 1));
+        }
+        lCurrVertex.pos = lBary;
+      }
+    }
+  }
+
+  /*****************************************************************
+   * Scales the given coordinates to [-1,1] and assigns them
+   * to the vertices; adds some noise to separate vertices
+   * that got the same coordinates.
+   * @param pCoords  Coordinates [dimension][vertex].
+   *****************************************************************/
+  private static void setPositions(GraphData pGraph, float[][] pCoords) {
+    for (int d = 0; d < pCoords.length; ++d) {
+      float lMin = Float.MAX_VALUE;
+      float lMax = -Float.MAX_VALUE;
+      for (int i = 0; i < pCoords[d].length; ++i) {
+        lMin = Math.min(lMin, pCoords[d][i]);
+        lMax = Math.max(lMax, pCoords[d][i]);
+      }
+      float lWidth = lMax - lMin;
+      if (lWidth <= 0) {
+        // Degenerated dimension, keep the previous positions.
+        continue;
+      }
+      for (int i = 0; i < pCoords[d].length; ++i) {
+        float lValue = 2 * (pCoords[d][i] - lMin) / lWidth - 1;
+        lValue += JITTER * (2 * random.nextFloat() - 1);
+        setCoord(pGraph.vertices.get(i).pos, d, lValue);
+      }
+    }
+  }
+
+  /** D-orthogonalizes pVec against pBase (or the constant vector, if null). */
+  private static void orthogonalize(float[] pVec, float[] pBase,
+                                    float[] pDegree) {
+    double lNum = 0.0;
+    double lDenom = 0.0;
+    for (int i = 0; i < pVec.length; ++i) {
+      float lBase = (pBase == null) ? 1.0f : pBase[i];
+      lNum += pVec[i] * pDegree[i] * lBase;
+      lDenom += lBase * pDegree[i] * lBase;
+    }
+    if (lDenom == 0.0) { return; }
+    float lFactor = (float) (lNum / lDenom);
+    for (int i = 0; i < pVec.length; ++i) {
+      pVec[i] -= lFactor * ((pBase == null) ? 1.0f : pBase[i]);
+    }
+  }
+
+  /** Scales pVec to unit length (if it is not the zero vector). */
+  private static void normalize(float[] pVec) {
+    double lSum = 0.0;
+    for (float lValue : pVec) {
+      lSum += lValue * lValue;
+    }
+    if (lSum == 0.0) { return; }
+    float lFactor = (float) (1.0 / Math.sqrt(lSum));
+    for (int i = 0; i < pVec.length; ++i) {
+      pVec[i] *= lFactor;
+    }
+  }
+
+  /** Returns the index with the largest distance. */
+  private static int farthest(int[] pDist) {
+    int result = 0;
+    int lMax = -1;
+    for (int i = 0; i < pDist.length; ++i) {
+      if (pDist[i] > lMax && pDist[i] != Integer.MAX_VALUE) {
+        lMax = pDist[i];
+        result = i;
+      }
+    }
+    return result;
+  }
+
+  private static float getCoord(Position pPos, int pDim) {
+    switch (pDim) {
+    case 0:
+      return pPos.x;
+    case 1:
+      return pPos.y;
+    default:
+      return pPos.z;
+    }
+  }
+
+  private static void setCoord(Position pPos, int pDim, float pValue) {
+    switch (pDim) {
+    case 0:
+      pPos.x = pValue;
+      break;
+    case 1:
+      pPos.y = pValue;
+      break;
+    default:
+      pPos.z = pValue;
+    }
+  }
+
+  /**
+   * Adjacency of the graph (see <code>GraphAdjacency</code>),
+   * together with the weighted degree of each vertex.
+   */
+  private static class Adjacency {
+    private final int     nodeNr;
+    private final int[]   offsets;
+    private final int[]   targets;
+    private final float[] weights;
+    /** Weighted degree of each vertex. */
+    private final float[] degree;
+
+    private Adjacency(GraphData pGraph) {
+      GraphAdjacency lAdjacency = pGraph.getAdjacency();
+      nodeNr = pGraph.vertices.size();
+      offsets = lAdjacency.offsets;
+      targets = lAdjacency.targets;
+      weights = lAdjacency.weights;
+      degree = new float[nodeNr];
+      for (int i = 0; i < nodeNr; ++i) {
+        for (int k = offsets[i]; k < offsets[i + 1]; ++k) {
+          degree[i] += weights[k];
+        }
+      }
+    }
+
+    /** Returns the hop distances from pStart, -1 for unreachable vertices. */
+    private int[] bfs(int pStart) {
+      int[] lDist = new int[nodeNr];
+      Arrays.fill(lDist, -1);
+      int[] lQueue = new int[nodeNr];
+      int lHead = 0;
+      int lTail = 0;
+      lDist[pStart] = 0;
+      lQueue[lTail++] = pStart;
+      while (lHead < lTail) {
+        int lCurr = lQueue[lHead++];
+        for (int k = offsets[lCurr]; k < offsets[lCurr + 1]; ++k) {
+          if (lDist[targets[k]] < 0) {
+            lDist[targets[k]] = lDist[lCurr] + 1;
+            lQueue[lTail++] = targets[k];
+          }
+        }
+      }
+      return lDist;
+    }
+  }
+}
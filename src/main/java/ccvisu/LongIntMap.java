@@ -0,0 +1,151 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.Arrays;
+
+/*****************************************************************
+ * Hash map from long keys to non-negative int values,
+ * with open addressing (linear probing) in primitive arrays,
+ * i.e., without an object per entry.
+ * Typically used with a pair of vertex ids packed into one key,
+ * see <code>pack</code>.
+ *****************************************************************/
+public class LongIntMap {
+
+  /** Value returned by <code>get</code> for absent keys. */
+  public static final int NOT_FOUND = -1;
+
+  private long[]          keys;
+  /** Values; NOT_FOUND marks a free slot. */
+  private int[]           values;
+  private int             size    = 0;
+
+  public LongIntMap() {
+    this(16);
+  }
+
+  /**
+   * @param pExpectedSize  Number of entries that fit without rehashing.
+   */
+  public LongIntMap(int pExpectedSize) {
+    int lCapacity = 16;
+    while (lCapacity < 2 * pExpectedSize) {
+      lCapacity *= 2;
+    }
+    keys = new long[lCapacity];
+    values = new int[lCapacity];
+    Arrays.fill(values, NOT_FOUND);
+  }
+
+  /**
+   * Packs two ints (e.g., the source and target id of an edge)
+   * into one long key.
+   */
+  public static long pack(int pHigh, int pLow) {
+    return ((long) pHigh << 32) | (pLow & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the value for pKey, or NOT_FOUND.
+   */
+  public int get(long pKey) {
+    int lMask = keys.length - 1;
+    for (int i = slot(pKey, lMask);; i = (i + 1) & lMask) {
+      if (values[i] == NOT_FOUND) { return NOT_FOUND; }
+      if (keys[i] == pKey) { return values[i]; }
+    }
+  }
+
+  /**
+   * Maps pKey to pValue (pValue >= 0).
+   * @return The previous value for pKey, or NOT_FOUND.
+   */
+  public int put(long pKey, int pValue) {
+    assert (pValue >= 0);
+    if (2 * (size + 1) > keys.length) {
+      rehash(2 * keys.length);
+    }
+    int lMask = keys.length - 1;
+    for (int i = slot(pKey, lMask);; i = (i + 1) & lMask) {
+      if (values[i] == NOT_FOUND) {
+        keys[i] = pKey;
+        values[i] = pValue;
+        ++size;
+        return NOT_FOUND;
+      }
+      if (keys[i] == pKey) {
+        int lOld = values[i];
+        values[i] = pValue;
+        return lOld;
+      }
+    }
+  }
+
+  /**
+   * Maps pKey to pValue, unless pKey is already contained.
+   * @return The existing value for pKey, or NOT_FOUND if pKey was added.
+   */
+  public int putIfAbsent(long pKey, int pValue) {
+    int lOld = get(pKey);
+    if (lOld == NOT_FOUND) {
+      put(pKey, pValue);
+    }
+    return lOld;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void rehash(int pCapacity) {
+    long[] lOldKeys = keys;
+    int[] lOldValues = values;
+    keys = new long[pCapacity];
+    values = new int[pCapacity];
+    Arrays.fill(values, NOT_FOUND);
+    size = 0;
+    for (int i = 0; i < lOldKeys.length; ++i) {
+      if (lOldValues[i] != NOT_FOUND) {
+        put(lOldKeys[i], lOldValues[i]);
+      }
+    }
+  }
+
+  /** Spreads the bits of the key (murmur3 finalizer). */
+  private static int slot(long pKey, int pMask) {
+    long h = pKey;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h & pMask;
+  }
+}
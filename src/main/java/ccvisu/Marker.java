@@ -28,6 +28,8 @@
 
 package ccvisu;
 
+import java.util.List;
+
 /*****************************************************************
  * Marks a given vertex under certain conditions.
  * @version  $Revision: 1.5 $; $Date: 2007/12/15 01:20:50 $
@@ -44,4 +46,15 @@ public class Marker {
    *****************************************************************/
   public void mark(GraphVertex vertex) {
   }
+
+  /*****************************************************************
+   * Marks all given vertices, by calling <code>mark</code> for each vertex.
+   * Subclasses may override this method to mark the vertices in bulk.
+   * @param pVertices  Vertices of the graph representation.
+   *****************************************************************/
+  public void markAll(List<GraphVertex> pVertices) {
+    for (GraphVertex lVertex : pVertices) {
+      mark(lVertex);
+    }
+  }
 };
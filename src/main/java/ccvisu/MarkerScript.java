@@ -31,31 +31,70 @@ package ccvisu;
 import java.awt.Color;
 import java.io.BufferedReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import ccvisu.Options.Verbosity;
 
 /***************************************************************************
  * Parse group information from a file and mark the vertices accordingly.
+ * A vertex gets the color of the last pattern that matches its name.
+ * The patterns are compiled once, and indexed by their literal prefix
+ * in a trie: only the patterns whose prefix is a prefix of the name
+ * (and the patterns without literal prefix) are tried, from the last
+ * pattern to the first, up to the first match.
  * @author   Dirk Beyer
  **************************************************************************/
 public class MarkerScript extends Marker {
 
+  /** Minimal number of vertices for marking in parallel. */
+  private static final int   PARALLEL_MIN = 4096;
+  /** Number of vertices per chunk for marking in parallel. */
+  private static final int   CHUNK_SIZE   = 1024;
+  /** Characters that end the literal prefix of a pattern. */
+  private static final String META         = ".[]{}()?*+^$|";
+  /** Quantifiers that make the preceding character optional. */
+  private static final String OPTIONAL     = "?*{";
+
   /**
    * Group properties
    */
   private class GroupProperties {
-    private String mPattern;
-    private Color  mColor;
+    private Pattern mPattern;
+    private Color   mColor;
 
     /** Constructor */
-    public GroupProperties(String pPattern, Color pColor, String pName) {
+    public GroupProperties(Pattern pPattern, Color pColor, String pName) {
       mPattern = pPattern;
       mColor = pColor;
     }
   }
 
+  /**
+   * Node of the prefix trie: the patterns whose literal prefix
+   * is the string of the path from the root to this node.
+   */
+  private static class TrieNode {
+    private final Map<Character, TrieNode> children =
+        new HashMap<Character, TrieNode>();
+    private int[]                          patterns = new int[0];
+  }
+
   private ArrayList<GroupProperties> mPropList;
+  /** Root of the prefix trie (patterns without literal prefix). */
+  private final TrieNode             mRoot = new TrieNode();
+  /** Matching state for <code>mark</code>, created on demand. */
+  private Matching                   mMatching;
 
   /**
    * Constructor
@@ -69,6 +108,7 @@ public class MarkerScript extends Marker {
       if (pattern.size() < 3) {
         System.err.println("RSF reading problem. Follwing format is expected:");
         System.err.println("  GROUP <reg-exp-pattern> <color> [<name>]");
+        continue;
       }
       Color lColor = Colors.get(pattern.get(2));
       if (lColor == null) {
@@ -81,24 +121,192 @@ public class MarkerScript extends Marker {
       if (pattern.size() > 3) {
         lName = pattern.get(3);
       }
-      GroupProperties newProp =
-                                new GroupProperties(pattern.get(1), lColor,
-                                    lName);
+      Pattern lPattern;
+      try {
+        lPattern = Pattern.compile(pattern.get(1));
+      } catch (PatternSyntaxException e) {
+        System.err.println("Invalid regular expression in marker script: "
+                           + pattern.get(1));
+        System.err.println(e.getMessage());
+        continue;
+      }
+      GroupProperties newProp = new GroupProperties(lPattern, lColor, lName);
+      insert(literalPrefix(pattern.get(1)), mPropList.size());
       mPropList.add(newProp);
     }
 
   }
 
+  /*****************************************************************
+   * Returns a string that each string matched by the given pattern
+   * starts with: the literal characters at the beginning of the pattern,
+   * up to the first meta character (without a character
+   * that a quantifier makes optional). Returns the empty string
+   * for patterns with alternatives.
+   *****************************************************************/
+  private static String literalPrefix(String pPattern) {
+    if (pPattern.indexOf('|') >= 0) {
+      return "";
+    }
+    StringBuilder result = new StringBuilder();
+    int i = 0;
+    while (i < pPattern.length()) {
+      char lChar = pPattern.charAt(i);
+      int lNext = i + 1;
+      if (lChar == '\\') {
+        // Escaped punctuation is literal; other escapes are classes etc.
+        if (lNext >= pPattern.length()
+            || Character.isLetterOrDigit(pPattern.charAt(lNext))) {
+          break;
+        }
+        lChar = pPattern.charAt(lNext);
+        ++lNext;
+      } else if (META.indexOf(lChar) >= 0) {
+        break;
+      }
+      if (lNext < pPattern.length()
+          && OPTIONAL.indexOf(pPattern.charAt(lNext)) >= 0) {
+        break;
+      }
+      result.append(lChar);
+      if (lNext < pPattern.length() && pPattern.charAt(lNext) == '+') {
+        break;
+      }
+      i = lNext;
+    }
+    return result.toString();
+  }
+
+  /*****************************************************************
+   * Inserts pattern number pIndex with literal prefix pPrefix into the trie.
+   *****************************************************************/
+  private void insert(String pPrefix, int pIndex) {
+    TrieNode lNode = mRoot;
+    for (int i = 0; i < pPrefix.length(); ++i) {
+      Character lChar = Character.valueOf(pPrefix.charAt(i));
+      TrieNode lChild = lNode.children.get(lChar);
+      if (lChild == null) {
+        lChild = new TrieNode();
+        lNode.children.put(lChar, lChild);
+      }
+      lNode = lChild;
+    }
+    lNode.patterns = Arrays.copyOf(lNode.patterns, lNode.patterns.length + 1);
+    lNode.patterns[lNode.patterns.length - 1] = pIndex;
+  }
+
   /*****************************************************************
    * Special marking for certain vertices by setting attributes of the vertex
    * @param vertex  Vertex of the graph representation.
    *****************************************************************/
   @Override
   public void mark(GraphVertex vertex) {
-    for (GroupProperties prop : mPropList) {
-      if (vertex.name.matches(prop.mPattern)) {
-        vertex.color = prop.mColor;
+    if (mMatching == null) {
+      mMatching = new Matching();
+    }
+    mMatching.mark(vertex);
+  }
+
+  /*****************************************************************
+   * Marks all given vertices; in chunks by a pool of threads
+   * if there are enough vertices (and processors).
+   * @param pVertices  Vertices of the graph representation.
+   *****************************************************************/
+  @Override
+  public void markAll(List<GraphVertex> pVertices) {
+    int lThreadNr = Runtime.getRuntime().availableProcessors();
+    if (lThreadNr < 2 || pVertices.size() < PARALLEL_MIN) {
+      new ChunkMarker(pVertices, 0, pVertices.size()).call();
+      return;
+    }
+    ExecutorService lExecutor = Executors.newFixedThreadPool(lThreadNr);
+    List<Future<ChunkMarker>> lPending = new ArrayList<Future<ChunkMarker>>();
+    for (int lStart = 0; lStart < pVertices.size(); lStart += CHUNK_SIZE) {
+      int lEnd = Math.min(lStart + CHUNK_SIZE, pVertices.size());
+      lPending.add(lExecutor.submit(new ChunkMarker(pVertices, lStart, lEnd)));
+    }
+    try {
+      for (Future<ChunkMarker> lChunk : lPending) {
+        lChunk.get();
+      }
+    } catch (InterruptedException e) {
+      lExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException e) {
+      System.err.println("Runtime error: Exception while marking "
+                         + "the vertices:");
+      System.err.println(e.getCause());
+    }
+    lExecutor.shutdownNow();
+  }
+
+  /*****************************************************************
+   * Matching state of one thread: a matcher per pattern (created
+   * on demand) and a buffer for the candidate patterns of a name.
+   *****************************************************************/
+  private class Matching {
+
+    private final Matcher[] matchers   = new Matcher[mPropList.size()];
+    private final int[]     candidates = new int[mPropList.size()];
+
+    /** Sets the color of the last pattern that matches the vertex name. */
+    private void mark(GraphVertex pVertex) {
+      String lName = pVertex.name;
+      // Collect the patterns whose literal prefix is a prefix of the name.
+      int lCandidateNr = 0;
+      TrieNode lNode = mRoot;
+      int i = 0;
+      while (lNode != null) {
+        System.arraycopy(lNode.patterns, 0, candidates, lCandidateNr,
+            lNode.patterns.length);
+        lCandidateNr += lNode.patterns.length;
+        if (i == lName.length() || lNode.children.isEmpty()) {
+          break;
+        }
+        lNode = lNode.children.get(Character.valueOf(lName.charAt(i++)));
+      }
+      // The last matching pattern determines the color.
+      Arrays.sort(candidates, 0, lCandidateNr);
+      for (int k = lCandidateNr - 1; k >= 0; --k) {
+        int lIndex = candidates[k];
+        Matcher lMatcher = matchers[lIndex];
+        if (lMatcher == null) {
+          lMatcher = mPropList.get(lIndex).mPattern.matcher(lName);
+          matchers[lIndex] = lMatcher;
+        } else {
+          lMatcher.reset(lName);
+        }
+        if (lMatcher.matches()) {
+          pVertex.color = mPropList.get(lIndex).mColor;
+          return;
+        }
+      }
+    }
+  }
+
+  /*****************************************************************
+   * Marks the vertices [start, end) of a vertex list.
+   *****************************************************************/
+  private class ChunkMarker implements Callable<ChunkMarker> {
+
+    private final List<GraphVertex> vertices;
+    private final int               start;
+    private final int               end;
+
+    private ChunkMarker(List<GraphVertex> pVertices, int pStart, int pEnd) {
+      vertices = pVertices;
+      start = pStart;
+      end = pEnd;
+    }
+
+    @Override
+    public ChunkMarker call() {
+      Matching lMatching = new Matching();
+      for (int k = start; k < end; ++k) {
+        lMatching.mark(vertices.get(k));
       }
+      return this;
     }
   }
 }
@@ -30,6 +30,15 @@
 
 package ccvisu;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 import ccvisu.Options.Verbosity;
 
 /*****************************************************************
@@ -66,28 +75,33 @@ public class MinimizerBarnesHut extends Minimizer {
    *    is roughly 1. */
   private final GraphData      graph;
 
-  /** The following two must be symmetric. */
-
-  /** Node indexes of the similarity list for each node.
+  /** The following three form the similarity lists in compressed
+   *    sparse row format (see <code>GraphAdjacency</code>), 
+   *    they must be symmetric. */
+
+  /** Start index of the similarity list of each node.
+   *    The similarity list of node i is stored in 
+   *    attrIndexes[k] and attrValues[k] for
+   *    attrOffsets[i] <= k < attrOffsets[i+1].
+   *    Dimension [nodeNr + 1]. */
+  private final int            attrOffsets[];
+  /** Node indexes of the similarity lists.
    *    Is not copied and not modified by minimizeEnergy.
-   *    (attrIndexes[i][k] == j) represents the k-th edge 
+   *    (attrIndexes[attrOffsets[i] + k] == j) represents the k-th edge 
    *    of node i, namely (i,j).
    *    Omit edges with weight 0.0 (i.e. non-edges). 
    *    Preconditions:
-   *    (attrIndexes[i][k] != i) for all i,k (irreflexive);
-   *    (attrIndexes[i][k1] == j) iff (attrIndexes[j][k2] == i) 
-   *     for all i, j, exists k1, k2 (symmetric). */
-  private final int            attrIndexes[][];
-  /** Similarity values of the similarity lists for each node.
+   *    no reflexive edges (irreflexive);
+   *    edge (i,j) is in the list of i iff edge (j,i) is in the list of j
+   *    (symmetric). */
+  private final int            attrIndexes[];
+  /** Similarity values of the similarity lists.
    *    Is not copied and not modified by minimizeEnergy.
-   *    For each (attrIndexes[i][k] == j), (attrValues[i][k] == w)
-   *    represents the weight w of edge (i,j).
+   *    For each (attrIndexes[k] == j) in the list of node i, 
+   *    (attrValues[k] == w) represents the weight w of edge (i,j).
    *    For unweighted graphs use only 1.0f as edge weight. 
-   *    Preconditions:
-   *    exists k1: (attrIndexes[i][k1] == j) and (attrValues[i][k1] == w) iff
-   *    exists k2: (attrIndexes[j][k2] == i) and (attrValues[j][k2] == w) 
-   *    (symmetric). */
-  private final float          attrValues[][];
+   *    Preconditions: symmetric, as for attrIndexes. */
+  private final float          attrValues[];
 
   /** Repulsion vector (node weights).
    *    Is not copied and not modified by minimizeEnergy.
@@ -128,6 +142,17 @@ public class MinimizerBarnesHut extends Minimizer {
   /** Octtree for repulsion computation. */
   private OctTree              octTree           = null;
 
+  /** Background thread that writes the checkpoints, if checkpointing is on. */
+  private ExecutorService      checkpointWriter  = null;
+  /** Checkpoint that is currently being written. */
+  private Future<?>            pendingCheckpoint = null;
+  /** Iteration of the last checkpoint that was submitted for writing. */
+  private int                  checkpointStep    = -1;
+  /** Hash of the vertex names, stored in the checkpoints. */
+  private int                  nameHash          = 0;
+  /** Hash of the adjacency, stored in the checkpoints. */
+  private int                  edgeHash          = 0;
+
   /**
    * Sets the number of nodes, the similarity matrices (edge weights), 
    *   and the position matrix.
@@ -156,52 +181,21 @@ public class MinimizerBarnesHut extends Minimizer {
     }
 
     // Initialize attractions.
-    // Vertex indexes of the similarity lists. 
-    attrIndexes = new int[options.graph.vertices.size()][];
-    // Similarity values of the similarity lists.
-    attrValues = new float[options.graph.vertices.size()][];
-    {
-      // Compute length of row lists.
-      int[] attrCounter = new int[options.graph.vertices.size()];
-      for (GraphEdge e : options.graph.edges) {
-        if (e.x == e.y) {
-          GraphVertex curVertex = options.graph.vertices.get(e.x);
-          System.err.println("Layout warning: Reflexive edge for vertex '"
-                             + curVertex.name + "' found.");
-        } else {
-          ++attrCounter[e.x];
-          ++attrCounter[e.y];
-        }
-      }
-
-      // Allocate the rows.
-      for (int i = 0; i < options.graph.vertices.size(); i++) {
-        attrIndexes[i] = new int[attrCounter[i]];
-        attrValues[i] = new float[attrCounter[i]];
-      }
-
-      // Transfer the edges to the similarity lists.
-      attrCounter = new int[options.graph.vertices.size()];
-      for (GraphEdge e : options.graph.edges) {
-        // We must not add reflexive edges.
-        if (e.x != e.y) {
-          // Similarity list must be symmetric.
-          attrIndexes[e.x][attrCounter[e.x]] = e.y;
-          attrIndexes[e.y][attrCounter[e.y]] = e.x;
-          // Set similarities according to the energy model.
-          if (options.noWeight) {
-            attrValues[e.x][attrCounter[e.x]] = 1.0f;
-            attrValues[e.y][attrCounter[e.y]] = 1.0f;
-          } else {
-            attrValues[e.x][attrCounter[e.x]] = e.w;
-            attrValues[e.y][attrCounter[e.y]] = e.w;
-          }
-
-          ++attrCounter[e.x];
-          ++attrCounter[e.y];
-        }
-      }
-
+    // The graph reader has already built the similarity lists.
+    GraphAdjacency lAdjacency = options.graph.getAdjacency();
+    for (int lReflexive : lAdjacency.getReflexive()) {
+      GraphVertex curVertex = options.graph.vertices.get(lReflexive);
+      System.err.println("Layout warning: Reflexive edge for vertex '"
+                         + curVertex.name + "' found.");
+    }
+    attrOffsets = lAdjacency.offsets;
+    attrIndexes = lAdjacency.targets;
+    // Set similarities according to the energy model.
+    if (options.noWeight) {
+      attrValues = new float[attrIndexes.length];
+      Arrays.fill(attrValues, 1.0f);
+    } else {
+      attrValues = lAdjacency.weights;
     }
   }
 
@@ -225,7 +219,17 @@ public class MinimizerBarnesHut extends Minimizer {
 
     analyzeDistances();
 
-    final float finalRepuFactor = computeRepuFactor();
+    float lRepuFactor = computeRepuFactor();
+    int firstStep = 1;
+    if (options.resume) {
+      LayoutCheckpoint lCheckpoint = readCheckpoint();
+      if (lCheckpoint != null) {
+        lCheckpoint.apply(graph);
+        lRepuFactor = lCheckpoint.repuFactor;
+        firstStep = lCheckpoint.step + 1;
+      }
+    }
+    final float finalRepuFactor = lRepuFactor;
     repuFactor = finalRepuFactor;
 
     // compute initial energy
@@ -247,7 +251,7 @@ public class MinimizerBarnesHut extends Minimizer {
     }
 
     // minimize energy
-    for (int step = 1; step <= options.nrIterations; step++) {
+    for (int step = firstStep; step <= options.nrIterations; step++) {
 
       computeBaryCenter();
       buildOctTree();
@@ -336,11 +340,122 @@ public class MinimizerBarnesHut extends Minimizer {
 
       }
 
+      if (!options.checkpointFile.equals("")
+          && step % Math.max(1, options.checkpointInterval) == 0) {
+        writeCheckpoint(step, finalRepuFactor, false);
+      }
+    }
+    // Always save the last iteration, such that a resumed run
+    // starts where this run ended.
+    if (!options.checkpointFile.equals("")
+        && firstStep <= options.nrIterations
+        && checkpointStep != options.nrIterations) {
+      writeCheckpoint(options.nrIterations, finalRepuFactor, true);
     }
+    finishCheckpoints();
     analyzeDistances();
     //new JTreeFrame(octTree);
   }
 
+  /**
+   * Reads the checkpoint file given in the options.
+   * @return The checkpoint, or null if there is no usable checkpoint
+   *         for this graph (then the minimization starts from scratch).
+   */
+  private LayoutCheckpoint readCheckpoint() {
+    File lFile = new File(options.checkpointFile);
+    if (options.checkpointFile.equals("") || !lFile.exists()) {
+      System.err.println("Layout warning: No checkpoint to resume from, "
+                         + "starting from the initial layout.");
+      return null;
+    }
+    nameHash = LayoutCheckpoint.nameHash(graph);
+    edgeHash = LayoutCheckpoint.edgeHash(graph);
+    try {
+      LayoutCheckpoint lCheckpoint = LayoutCheckpoint.read(lFile);
+      if (!lCheckpoint.matches(graph, options.nrDim, nameHash,
+          edgeHash)) {
+        System.err.println("Layout warning: Checkpoint '" + lFile
+                           + "' belongs to a different graph, ignored.");
+        return null;
+      }
+      if (options.verbosity.isAtLeast(Verbosity.WARNING)) {
+        System.err.println("Resuming after iteration " + lCheckpoint.step
+                           + " from checkpoint '" + lFile + "'.");
+      }
+      return lCheckpoint;
+    } catch (IOException e) {
+      System.err.println("Exception while reading checkpoint '" + lFile
+                         + "': ");
+      System.err.println(e);
+      return null;
+    }
+  }
+
+  /**
+   * Takes a snapshot of the current state and writes it asynchronously,
+   * such that the iterations are not stalled by disk I/O.
+   * If the previous checkpoint is still being written, 
+   * this checkpoint is skipped, unless pForce is true
+   * (then it is written after the previous one).
+   */
+  private void writeCheckpoint(final int pStep, float pRepuFactor,
+                               boolean pForce) {
+    if (!pForce && pendingCheckpoint != null && !pendingCheckpoint.isDone()) {
+      return;
+    }
+    if (checkpointWriter == null) {
+      nameHash = LayoutCheckpoint.nameHash(graph);
+      edgeHash = LayoutCheckpoint.edgeHash(graph);
+      checkpointWriter =
+                         Executors
+                             .newSingleThreadExecutor(new ThreadFactory() {
+                               @Override
+                               public Thread newThread(Runnable pRunnable) {
+                                 Thread lThread =
+                                                  new Thread(pRunnable,
+                                                      "CCVisu checkpoint writer");
+                                 lThread.setDaemon(true);
+                                 return lThread;
+                               }
+                             });
+    }
+    final LayoutCheckpoint lCheckpoint =
+                                         LayoutCheckpoint.snapshot(graph,
+                                             options.nrDim, nameHash, edgeHash,
+                                             pStep, pRepuFactor);
+    final File lFile = new File(options.checkpointFile);
+    checkpointStep = pStep;
+    pendingCheckpoint = checkpointWriter.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          lCheckpoint.write(lFile);
+        } catch (IOException e) {
+          System.err.println("Exception while writing checkpoint '" + lFile
+                             + "' after iteration " + pStep + ": ");
+          System.err.println(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits until the last checkpoint is written.
+   */
+  private void finishCheckpoints() {
+    if (checkpointWriter == null) { return; }
+    checkpointWriter.shutdown();
+    try {
+      checkpointWriter.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkpointWriter = null;
+    pendingCheckpoint = null;
+    checkpointStep = -1;
+  }
+
   /**
    * Returns the Euclidean distance between the specified positions.
    * @return Euclidean distance between the specified positions.
@@ -392,16 +507,16 @@ public class MinimizerBarnesHut extends Minimizer {
     float energy = getRepulsionEnergy(index, octTree);
 
     // attraction energy
-    for (int i = 0; i < attrIndexes[index].length; i++) {
-      if (attrIndexes[index][i] != index) {
+    for (int i = attrOffsets[index]; i < attrOffsets[index + 1]; i++) {
+      if (attrIndexes[i] != index) {
         float dist =
-                     getDist(graph.vertices.get(attrIndexes[index][i]).pos,
+                     getDist(graph.vertices.get(attrIndexes[i]).pos,
                          lVertexIndexPos);
         if (attrExponent == 0.0f) {
-          energy += attrValues[index][i] * (float) Math.log(dist);
+          energy += attrValues[i] * (float) Math.log(dist);
         } else {
           energy +=
-                    attrValues[index][i] * (float) Math.pow(dist, attrExponent)
+                    attrValues[i] * (float) Math.pow(dist, attrExponent)
                         / attrExponent;
         }
       }
@@ -473,21 +588,21 @@ public class MinimizerBarnesHut extends Minimizer {
     float dir2 = addRepulsionDir(index, octTree, dir);
 
     // compute attraction force vector
-    for (int i = 0; i < attrIndexes[index].length; i++) {
-      if (attrIndexes[index][i] != index) {
+    for (int i = attrOffsets[index]; i < attrOffsets[index + 1]; i++) {
+      if (attrIndexes[i] != index) {
 
         float dist =
-                     getDist(graph.vertices.get(attrIndexes[index][i]).pos,
+                     getDist(graph.vertices.get(attrIndexes[i]).pos,
                          lVertexIndexPos);
         float tmp =
-                    attrValues[index][i]
+                    attrValues[i]
                         * (float) Math.pow(dist, attrExponent - 2);
         dir2 += tmp * Math.abs(attrExponent - 1);
 
-        // dir += (graph.vertices.get(attrIndexes[index][i]).pos - lVertexIndexPos)
+        // dir += (graph.vertices.get(attrIndexes[i]).pos - lVertexIndexPos)
         //         * tmp;
         dir.add(Position.mult(Position.subtract(graph.vertices
-            .get(attrIndexes[index][i]).pos, lVertexIndexPos), tmp));
+            .get(attrIndexes[i]).pos, lVertexIndexPos), tmp));
       }
     }
 
@@ -542,10 +657,8 @@ public class MinimizerBarnesHut extends Minimizer {
    */
   private float computeRepuFactor() {
     float attrSum = 0.0f;
-    for (int i = 1; i < nodeNr; i++) {
-      for (int j = 0; j < attrValues[i].length; j++) {
-        attrSum += attrValues[i][j];
-      }
+    for (int j = attrOffsets[1]; j < attrOffsets[nodeNr]; j++) {
+      attrSum += attrValues[j];
     }
 
     float repuSum = 0.0f;
@@ -584,14 +697,14 @@ public class MinimizerBarnesHut extends Minimizer {
 
     for (int i = 0; i < nodeNr; i++) {
       GraphVertex lVertexIndex = graph.vertices.get(i);
-      for (int j = 0; j < attrValues[i].length; j++) {
+      for (int j = attrOffsets[i]; j < attrOffsets[i + 1]; j++) {
         float dist =
                      getDist(lVertexIndex.pos, graph.vertices
-                         .get(attrIndexes[i][j]).pos);
+                         .get(attrIndexes[j]).pos);
         float distLog = (float) Math.log(dist);
-        edgeLengthSum += attrValues[i][j] * dist;
-        edgeLengthLogSum += attrValues[i][j] * distLog;
-        attrSum += attrValues[i][j];
+        edgeLengthSum += attrValues[j] * dist;
+        edgeLengthLogSum += attrValues[j] * distLog;
+        attrSum += attrValues[j];
       }
     }
     edgeLengthSum /= 2;
@@ -0,0 +1,318 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Minimizer that splits the graph into its connected components,
+ * computes the layout of each component independently and concurrently
+ * (using <code>MinimizerBarnesHut</code>), and packs the component
+ * layouts next to each other (shelf packing in the x-y plane).
+ * Components with at most two vertices are placed without minimization.
+ * The per-iteration events of the component minimizers are passed on
+ * to the listeners (one at a time, at most every
+ * <code>EVENT_INTERVAL</code>), such that an animation shows
+ * the progress; until the packing after the last iteration,
+ * the components are shown around their own origins.
+ * Falls back to one minimizer for the whole graph if some vertices
+ * have fixed positions or a checkpoint is requested.
+ *****************************************************************/
+public class MinimizerComponents extends Minimizer {
+
+  /** Gap between two packed components, relative to the edge length (~1). */
+  private static final float GAP            = 1.0f;
+  /** Minimal time between two passed-on events, in nanoseconds. */
+  private static final long  EVENT_INTERVAL = 40000000L;
+
+  /** Options for the minimizer. */
+  private final Options      options;
+
+  public MinimizerComponents(Options pOpt) {
+    this.options = pOpt;
+  }
+
+  /**
+   * Computes the layout for each component and packs the results.
+   */
+  @Override
+  public void minimizeEnergy() {
+    GraphData lGraph = options.graph;
+    List<GraphData> lComponents = splitComponents(lGraph);
+
+    boolean lHasFixed = false;
+    for (GraphVertex lCurrVertex : lGraph.vertices) {
+      lHasFixed |= lCurrVertex.fixedPos;
+    }
+    boolean lCheckpoint = !options.checkpointFile.equals("");
+    if (lCheckpoint && lComponents.size() > 1 && !lHasFixed
+        && options.verbosity.isAtLeast(Verbosity.WARNING)) {
+      System.err.println("Layout warning: Checkpoints are written for "
+                         + "the whole graph, the layout of the "
+                         + lComponents.size()
+                         + " connected components is not split.");
+    }
+    if (lComponents.size() <= 1 || lHasFixed || lCheckpoint) {
+      // Component positions must not be changed by packing.
+      Minimizer lMinimizer = new MinimizerBarnesHut(options);
+      for (GraphEventListener l : listeners) {
+        lMinimizer.addGraphEventListener(l);
+      }
+      lMinimizer.minimizeEnergy();
+      return;
+    }
+
+    if (options.verbosity.isAtLeast(Verbosity.WARNING)) {
+      System.err.println("Layout of " + lComponents.size()
+                         + " connected components.");
+    }
+
+    // Minimize the non-trivial components in parallel.
+    int lThreadNr = Runtime.getRuntime().availableProcessors();
+    ExecutorService lExecutor = Executors.newFixedThreadPool(lThreadNr);
+    final GraphEvent lEvent = new GraphEvent(this);
+    final GraphEventListener lRelay = new GraphEventListener() {
+      private long lastEvent = System.nanoTime();
+
+      @Override
+      public void onGraphEvent(GraphEvent pEvent) {
+        synchronized (listeners) {
+          long lNow = System.nanoTime();
+          if (pEvent != lEvent && lNow - lastEvent < EVENT_INTERVAL) {
+            return;
+          }
+          lastEvent = lNow;
+          for (GraphEventListener l : listeners) {
+            l.onGraphEvent(lEvent);
+          }
+        }
+      }
+    };
+    List<Future<?>> lResults = new ArrayList<Future<?>>();
+    for (GraphData lComponent : lComponents) {
+      if (lComponent.vertices.size() <= 2) {
+        placeTrivial(lComponent);
+      } else {
+        final Options lCompOptions = componentOptions(lComponent);
+        lResults.add(lExecutor.submit(new Runnable() {
+          @Override
+          public void run() {
+            Minimizer lMinimizer = new MinimizerBarnesHut(lCompOptions);
+            if (!listeners.isEmpty()) {
+              lMinimizer.addGraphEventListener(lRelay);
+            }
+            lMinimizer.minimizeEnergy();
+          }
+        }));
+      }
+    }
+    lExecutor.shutdown();
+    for (Future<?> lResult : lResults) {
+      try {
+        lResult.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        System.err.println("Runtime error: Exception while computing "
+                           + "the layout of a component:");
+        System.err.println(e.getCause());
+      }
+    }
+
+    pack(lComponents, options.nrDim);
+
+    //notify the listeners
+    lRelay.onGraphEvent(lEvent);
+  }
+
+  /**
+   * Splits the graph into its connected components (union-find).
+   * The vertices of the components are the vertex objects of the graph,
+   * the edges are given only as adjacency, with vertex ids local 
+   * to the component.
+   * Components are ordered by their smallest vertex id.
+   */
+  static List<GraphData> splitComponents(GraphData pGraph) {
+    int lNodeNr = pGraph.vertices.size();
+    int[] lParent = new int[lNodeNr];
+    for (int i = 0; i < lNodeNr; ++i) {
+      lParent[i] = i;
+    }
+    GraphAdjacency lAdjacency = pGraph.getAdjacency();
+    for (int i = 0; i < lNodeNr; ++i) {
+      for (int k = lAdjacency.offsets[i]; k < lAdjacency.offsets[i + 1]; ++k) {
+        int lRootX = find(lParent, i);
+        int lRootY = find(lParent, lAdjacency.targets[k]);
+        if (lRootX != lRootY) {
+          lParent[Math.max(lRootX, lRootY)] = Math.min(lRootX, lRootY);
+        }
+      }
+    }
+
+    // Map each vertex to its component and its local id.
+    int[] lCompOf = new int[lNodeNr];
+    int[] lLocalId = new int[lNodeNr];
+    List<GraphData> result = new ArrayList<GraphData>();
+    for (int i = 0; i < lNodeNr; ++i) {
+      int lRoot = find(lParent, i);
+      if (lRoot == i) {
+        lCompOf[i] = result.size();
+        result.add(new GraphData());
+      } else {
+        lCompOf[i] = lCompOf[lRoot];
+      }
+      GraphData lComponent = result.get(lCompOf[i]);
+      GraphVertex lCurrVertex = pGraph.vertices.get(i);
+      lLocalId[i] = lComponent.vertices.size();
+      lComponent.vertices.add(lCurrVertex);
+      lComponent.nameToVertex.put(lCurrVertex.name, lCurrVertex);
+    }
+    // Each edge is contained in the rows of both of its vertices.
+    for (int i = 0; i < lNodeNr; ++i) {
+      for (int k = lAdjacency.offsets[i]; k < lAdjacency.offsets[i + 1]; ++k) {
+        int j = lAdjacency.targets[k];
+        if (i < j) {
+          result.get(lCompOf[i]).adjacency.addEdge(lLocalId[i], lLocalId[j],
+              lAdjacency.weights[k]);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Returns the root of pIndex, with path halving. */
+  private static int find(int[] pParent, int pIndex) {
+    while (pParent[pIndex] != pIndex) {
+      pParent[pIndex] = pParent[pParent[pIndex]];
+      pIndex = pParent[pIndex];
+    }
+    return pIndex;
+  }
+
+  /**
+   * Places a component with one or two vertices:
+   * a single vertex at the origin, two vertices at distance 1,
+   * which is the edge length of the minimizer's normalization.
+   */
+  private void placeTrivial(GraphData pComponent) {
+    for (int i = 0; i < pComponent.vertices.size(); ++i) {
+      GraphVertex lCurrVertex = pComponent.vertices.get(i);
+      lCurrVertex.pos = new Position(i, 0, 0);
+    }
+  }
+
+  /** Returns the options for the minimization of one component. */
+  private Options componentOptions(GraphData pComponent) {
+    Options result = new Options();
+    result.graph = pComponent;
+    result.nrDim = options.nrDim;
+    result.nrIterations = options.nrIterations;
+    result.attrExponent = options.attrExponent;
+    result.repuExponent = options.repuExponent;
+    result.vertRepu = options.vertRepu;
+    result.noWeight = options.noWeight;
+    result.gravitation = options.gravitation;
+    result.verbosity = Verbosity.QUIET;
+    return result;
+  }
+
+  /**
+   * Translates the components such that their bounding boxes
+   * do not overlap: sorted by decreasing height, components are
+   * put into rows (shelves) of roughly square overall shape.
+   * The z-coordinates are centered but otherwise kept.
+   * Also used by <code>LayoutInitializer</code> for the BFS placement.
+   */
+  static void pack(List<GraphData> pComponents, int pNrDim) {
+    int lCompNr = pComponents.size();
+    final Position[] lMin = new Position[lCompNr];
+    final Position[] lMax = new Position[lCompNr];
+    float lAreaSum = 0.0f;
+    float lMaxWidth = 0.0f;
+    List<Integer> lOrder = new ArrayList<Integer>();
+    for (int c = 0; c < lCompNr; ++c) {
+      GraphData lComponent = pComponents.get(c);
+      lMin[c] = Position.min(lComponent.vertices);
+      lMax[c] = Position.max(lComponent.vertices);
+      float lWidth = lMax[c].x - lMin[c].x + GAP;
+      float lHeight = lMax[c].y - lMin[c].y + GAP;
+      lAreaSum += lWidth * lHeight;
+      lMaxWidth = Math.max(lMaxWidth, lWidth);
+      lOrder.add(c);
+    }
+    Collections.sort(lOrder, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer pComp1, Integer pComp2) {
+        float lHeight1 = lMax[pComp1].y - lMin[pComp1].y;
+        float lHeight2 = lMax[pComp2].y - lMin[pComp2].y;
+        return Float.compare(lHeight2, lHeight1);
+      }
+    });
+
+    float lRowWidth = Math.max(lMaxWidth, (float) Math.sqrt(lAreaSum));
+    if (pNrDim == 1) {
+      // One row only, to keep the layout one-dimensional.
+      lRowWidth = Float.MAX_VALUE;
+    }
+    float lX = 0.0f;
+    float lY = 0.0f;
+    float lShelfHeight = 0.0f;
+    for (int c : lOrder) {
+      float lWidth = lMax[c].x - lMin[c].x + GAP;
+      float lHeight = lMax[c].y - lMin[c].y + GAP;
+      if (lX > 0 && lX + lWidth > lRowWidth) {
+        // Start a new shelf.
+        lX = 0.0f;
+        lY += lShelfHeight;
+        lShelfHeight = 0.0f;
+      }
+      Position lOffset =
+                         new Position(lX - lMin[c].x, 0.0f,
+                             -(lMin[c].z + lMax[c].z) / 2);
+      if (pNrDim >= 2) {
+        lOffset.y = lY - lMin[c].y;
+      }
+      for (GraphVertex lCurrVertex : pComponents.get(c).vertices) {
+        lCurrVertex.pos.add(lOffset);
+      }
+      lX += lWidth;
+      lShelfHeight = Math.max(lShelfHeight, lHeight);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/*****************************************************************
+ * Index of the vertex names of a graph, for finding the vertices
+ * whose names start with, end with, or contain a given string
+ * without comparing the string with every name.
+ * Prefixes are found by binary search in the names in sorted order
+ * (equivalent to a trie), suffixes in the reversed names in sorted order,
+ * and substrings by the list of names that contain the rarest
+ * trigram (three consecutive characters) of the string.
+ *****************************************************************/
+public class NameIndex {
+
+  private final List<GraphVertex> vertices;
+  /** Vertex ids in the order of their names. */
+  private final int[]             byName;
+  /** Reversed names, and vertex ids in the order of the reversed names. */
+  private final String[]          reversed;
+  private final int[]             byReversed;
+  /** Trigram to the start of its list in <code>trigramIds</code>. */
+  private final LongIntMap        trigramIndex;
+  /** Lists of the vertex ids whose names contain a trigram
+   *  (compressed rows: list k is from trigramStart[k]
+   *  to trigramStart[k+1]-1). */
+  private final int[]             trigramStart;
+  private final int[]             trigramIds;
+
+  /**
+   * Builds the index of the names of the given vertices.
+   */
+  public NameIndex(List<GraphVertex> pVertices) {
+    vertices = pVertices;
+    int lNodeNr = pVertices.size();
+
+    // Sorted names.
+    byName = sortedIds(new Comparator<Integer>() {
+      public int compare(Integer pId1, Integer pId2) {
+        return vertices.get(pId1).name.compareTo(vertices.get(pId2).name);
+      }
+    });
+    reversed = new String[lNodeNr];
+    for (int i = 0; i < lNodeNr; ++i) {
+      reversed[i] = new StringBuilder(pVertices.get(i).name).reverse().toString();
+    }
+    byReversed = sortedIds(new Comparator<Integer>() {
+      public int compare(Integer pId1, Integer pId2) {
+        return reversed[pId1].compareTo(reversed[pId2]);
+      }
+    });
+
+    // Trigrams: count the names per trigram (each name once), then fill.
+    trigramIndex = new LongIntMap();
+    int lTrigramNr = 0;
+    int[] lCounts = new int[16];
+    // Last name counted per trigram.
+    int[] lLastIds = new int[16];
+    for (int i = 0; i < lNodeNr; ++i) {
+      String lName = pVertices.get(i).name;
+      for (int k = 0; k + 3 <= lName.length(); ++k) {
+        long lTrigram = trigram(lName, k);
+        int lIndex = trigramIndex.get(lTrigram);
+        if (lIndex == LongIntMap.NOT_FOUND) {
+          lIndex = lTrigramNr++;
+          trigramIndex.put(lTrigram, lIndex);
+          if (lIndex == lCounts.length) {
+            lCounts = Arrays.copyOf(lCounts, 2 * lIndex);
+            lLastIds = Arrays.copyOf(lLastIds, 2 * lIndex);
+          }
+          lLastIds[lIndex] = -1;
+        }
+        if (lLastIds[lIndex] != i) {
+          lLastIds[lIndex] = i;
+          ++lCounts[lIndex];
+        }
+      }
+    }
+    trigramStart = new int[lTrigramNr + 1];
+    for (int k = 0; k < lTrigramNr; ++k) {
+      trigramStart[k + 1] = trigramStart[k] + lCounts[k];
+    }
+    trigramIds = new int[trigramStart[lTrigramNr]];
+    int[] lFill = Arrays.copyOf(trigramStart, lTrigramNr);
+    for (int i = 0; i < lNodeNr; ++i) {
+      String lName = pVertices.get(i).name;
+      for (int k = 0; k + 3 <= lName.length(); ++k) {
+        int lIndex = trigramIndex.get(trigram(lName, k));
+        // Ids are filled in ascending order: skip repeated trigrams.
+        if (lFill[lIndex] == trigramStart[lIndex]
+            || trigramIds[lFill[lIndex] - 1] != i) {
+          trigramIds[lFill[lIndex]++] = i;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of vertices in the index.
+   */
+  public int size() {
+    return byName.length;
+  }
+
+  /**
+   * Returns the ids of the vertices whose names start with pPrefix.
+   */
+  public BitSet startsWith(String pPrefix) {
+    BitSet result = new BitSet(byName.length);
+    for (int k = lowerBound(byName, pPrefix, false); k < byName.length; ++k) {
+      int lId = byName[k];
+      if (!vertices.get(lId).name.startsWith(pPrefix)) {
+        break;
+      }
+      result.set(lId);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of the vertices whose names end with pSuffix.
+   */
+  public BitSet endsWith(String pSuffix) {
+    String lReversed = new StringBuilder(pSuffix).reverse().toString();
+    BitSet result = new BitSet(byName.length);
+    for (int k = lowerBound(byReversed, lReversed, true); k < byReversed.length; ++k) {
+      int lId = byReversed[k];
+      if (!reversed[lId].startsWith(lReversed)) {
+        break;
+      }
+      result.set(lId);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of the vertices whose names contain pString.
+   */
+  public BitSet contains(String pString) {
+    BitSet result = new BitSet(byName.length);
+    if (pString.length() < 3) {
+      // No trigram: test all names.
+      for (int i = 0; i < byName.length; ++i) {
+        if (vertices.get(i).name.contains(pString)) {
+          result.set(i);
+        }
+      }
+      return result;
+    }
+    // Candidates: the names that contain the rarest trigram of the string.
+    int lRarest = -1;
+    for (int k = 0; k + 3 <= pString.length(); ++k) {
+      int lIndex = trigramIndex.get(trigram(pString, k));
+      if (lIndex == LongIntMap.NOT_FOUND) { return result; }
+      if (lRarest < 0
+          || trigramStart[lIndex + 1] - trigramStart[lIndex] < trigramStart[lRarest + 1]
+                                                              - trigramStart[lRarest]) {
+        lRarest = lIndex;
+      }
+    }
+    for (int k = trigramStart[lRarest]; k < trigramStart[lRarest + 1]; ++k) {
+      int lId = trigramIds[k];
+      if (vertices.get(lId).name.contains(pString)) {
+        result.set(lId);
+      }
+    }
+    return result;
+  }
+
+  /** Returns the vertex ids 0 ... n-1 in the given order. */
+  private int[] sortedIds(Comparator<Integer> pOrder) {
+    Integer[] lIds = new Integer[vertices.size()];
+    for (int i = 0; i < lIds.length; ++i) {
+      lIds[i] = i;
+    }
+    Arrays.sort(lIds, pOrder);
+    int[] result = new int[lIds.length];
+    for (int i = 0; i < lIds.length; ++i) {
+      result[i] = lIds[i];
+    }
+    return result;
+  }
+
+  /** Returns the first position in pSorted whose (reversed) name
+   *  is not less than pKey (binary search). */
+  private int lowerBound(int[] pSorted, String pKey, boolean pReversed) {
+    int lLow = 0;
+    int lHigh = pSorted.length;
+    while (lLow < lHigh) {
+      int lMid = (lLow + lHigh) >>> 1;
+      String lName =
+          pReversed ? reversed[pSorted[lMid]] : vertices.get(pSorted[lMid]).name;
+      if (lName.compareTo(pKey) < 0) {
+        lLow = lMid + 1;
+      } else {
+        lHigh = lMid;
+      }
+    }
+    return lLow;
+  }
+
+  /** Returns the three characters of pString at pStart, packed. */
+  private static long trigram(String pString, int pStart) {
+    return ((long) pString.charAt(pStart) << 32)
+           | ((long) pString.charAt(pStart + 1) << 16) | pString.charAt(pStart + 2);
+  }
+}
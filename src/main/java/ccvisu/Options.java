@@ -66,7 +66,20 @@ public class Options {
     // Options for VRML writer.
     // Scale positions in the layout.
     scalePos("Float", "1.0f",
-             "scaling factor for the layout to adjust; VRML and SVG only"),
+             "scaling factor for the layout to adjust; VRML, SVG and GLB only"),
+
+    // Only for SVG writer.
+    /** Compact SVG: CSS classes for colors, one event handler for the document,
+        no per-vertex annotation definitions, and no vertices and edges
+        that would be hidden by an equal one drawn before. */
+    compactSVG("Boolean", "false",
+               "compact SVG output for large graphs (shared styles, one"
+                   + CCVisu.endl + Options.helpOptionNameIndent("")
+                   + "event handler, hidden vertices and edges omitted)"),
+
+    // Only for TILES writer.
+    tileLevels("Integer", "5",
+               "number of zoom levels of the tile pyramid; TILES only"),
 
     // Only for DISP writer.
     /** If true, the layout is already displayed while the minimizer is still improving it,
@@ -74,6 +87,14 @@ public class Options {
         If false, the layout is displayed only after minimization is completed. */
     anim("Boolean", "true", ""),
 
+    /** Level of detail for large graphs: size of the squares (in pixels)
+        for bundling the edges whose end points are in the same squares;
+        0 draws each edge. */
+    edgeLOD("Integer", "0",
+            "draw edges with end points in the same squares of the given"
+                + CCVisu.endl + Options.helpOptionNameIndent("")
+                + "size (pixels) as one line; 0: each edge; DISP only"),
+
     // For all writers.
     annotAll("Boolean", "false", "annotate each vertex with its name"),
 
@@ -212,7 +233,9 @@ public class Options {
     /** Graph is passed as data structure from a third-party client. */
     AUX("AUX", "Auxiliary Graph Format"),
     /** Graph layout in textual format. */
-    LAY("lay", "Layout Files");
+    LAY("lay", "Layout Files"),
+    /** Graph snapshot in binary format. */
+    BIN("bin", "Binary Graph Snapshots");
 
     private String mFileExtension = "";
     private String mDescription   = "";
@@ -238,16 +261,22 @@ public class Options {
 
   }
 
-  // Output formats: RSF, LAY, VRML, SVG, DISP
+  // Output formats: RSF, LAY, BIN, VRML, SVG, GLB, TILES, DISP
   public enum OutFormat {
     /** Graph (relation) in relational standard format. */
     RSF("rsf", "Relational Standard Files"),
     /** Graph layout in textual format. */
     LAY("lay", "Layout Files"),
+    /** Graph snapshot (with layout) in binary format. */
+    BIN("bin", "Binary Graph Snapshots"),
     /** Graph layout in VRML format (only output). */
     VRML("wrl", "VRML Files"),
     /** Graph layout in SVG format (only output). */
     SVG("svg", "SVG Files"),
+    /** Graph layout as 3D scene in binary glTF format (only output). */
+    GLB("glb", "Binary glTF Files"),
+    /** Graph layout as pyramid of PNG tiles in a directory (only output). */
+    TILES("png", "PNG Tile Pyramids"),
     /** Display graph layout on screen (only output). */
     DISP("not", "No Files, but Screen Output");
 
@@ -274,6 +303,19 @@ public class Options {
     }
   }
 
+  // Initial placement strategies for the layout.
+  public enum InitPlacement {
+    /** Random positions in the unit cube (default). */
+    RANDOM,
+    /** Spectral embedding, computed by power iteration on the adjacency. */
+    SPECTRAL,
+    /** Graph-theoretic (BFS) distances to a few pivot vertices. */
+    BFS,
+    /** Source vertices on a sphere, targets at the barycenter of their sources
+     *  (e.g., the bipartite product-to-topic graph of PressGang). */
+    BIPARTITE;
+  }
+
   // Verbosity levels.
   public enum Verbosity {
     /** Don't say much, only report errors. */
@@ -304,6 +346,8 @@ public class Options {
   // Output format.
   OutFormat          outFormat     = OutFormat.DISP;
   String             outputName    = "stdout";
+  // Compress the output with gzip.
+  boolean            gzip          = false;
 
   // Filter (whitelist) for relations to be selected for visualization.
   Collection<String> relSelection  = new ArrayList<String>();
@@ -317,9 +361,19 @@ public class Options {
   /* Number of iterations of the minimizer.
    * Choose appropriate values by observing the convergence of energy. */
   public int         nrIterations  = 100;
+  /* Strategy for computing the initial positions of the minimizer. */
+  public InitPlacement initPlacement = InitPlacement.RANDOM;
   String             initialLayStr = "";
   public GraphData   initialLayout = null;
   public boolean            fixedInitPos  = false;
+  /* File for periodic checkpoints of the minimizer state (empty: none). */
+  public String      checkpointFile     = "";
+  /* Number of iterations between two checkpoints. */
+  public int         checkpointInterval = 10;
+  /* Continue the minimization from the state in the checkpoint file. */
+  public boolean     resume             = false;
+  /* Compute the layout of each connected component separately. */
+  public boolean     splitComponents    = false;
 
   // For energy model.
   /* Exponent of the Euclidian distance in the attraction 
@@ -334,6 +388,9 @@ public class Options {
   /* Use unweighted model by ignoring the edge weights,
    *   true for unweighted, false for weighted (default: weighted). */
   boolean            noWeight      = false;
+  /* Merge parallel edges into one edge, whose weight is the sum
+   *   of the weights (default: keep parallel edges). */
+  public boolean     aggregateEdges = false;
   /* Gravitation factor for the Barnes-Hut-procedure,
    *   attraction to the barycenter (default: 0.001). */
   float              gravitation   = 0.001f;
@@ -423,6 +480,10 @@ public class Options {
         arg = Options.getNext(it);
         outFormat = Options.getOutFormat(arg);
       }
+      // Output compression.
+      else if (arg.equalsIgnoreCase("-gzip")) {
+        gzip = true;
+      }
 
       // Options for DOX reader.
       // Relations that should be used for computing layout.
@@ -454,6 +515,11 @@ public class Options {
         arg = Options.getNext(it);
         nrIterations = Integer.parseInt(arg);
       }
+      // Strategy for the initial placement.
+      else if (arg.equalsIgnoreCase("-initPlacement")) {
+        arg = Options.getNext(it);
+        initPlacement = Options.getInitPlacement(arg);
+      }
       // Initial layout.
       else if (arg.equalsIgnoreCase("-initLayout")) {
         arg = Options.getNext(it);
@@ -464,6 +530,26 @@ public class Options {
         fixedInitPos = true;
       }
 
+      // Checkpoint file for the minimizer state.
+      else if (arg.equalsIgnoreCase("-checkpoint")) {
+        arg = Options.getNext(it);
+        checkpointFile = arg;
+      }
+      // Number of iterations between two checkpoints.
+      else if (arg.equalsIgnoreCase("-checkpointIter")) {
+        arg = Options.getNext(it);
+        checkpointInterval = Integer.parseInt(arg);
+      }
+      // Resume minimization from the checkpoint file.
+      else if (arg.equalsIgnoreCase("-resume")) {
+        resume = true;
+      }
+
+      // Layout of connected components separately.
+      else if (arg.equalsIgnoreCase("-components")) {
+        splitComponents = true;
+      }
+
       // Energy model.
       // Attraction exponent.
       else if (arg.equalsIgnoreCase("-attrExp")) {
@@ -483,6 +569,10 @@ public class Options {
       else if (arg.equalsIgnoreCase("-noWeight")) {
         noWeight = true;
       }
+      // Merge parallel edges.
+      else if (arg.equalsIgnoreCase("-aggregateEdges")) {
+        aggregateEdges = true;
+      }
       // Gravitation factor.
       else if (arg.equalsIgnoreCase("-grav")) {
         arg = Options.getNext(it);
@@ -639,6 +729,8 @@ public class Options {
                + CCVisu.endl
                + "   -outFormat FORMAT write output data in format FORMAT (default: DISP, see below). "
                + CCVisu.endl
+               + "   -gzip             compress the output data with gzip (default: uncompressed). "
+               + CCVisu.endl
                + "   "
                + CCVisu.endl
                + "Layouting options: "
@@ -651,6 +743,22 @@ public class Options {
                + CCVisu.endl
                + "                     (default: random layout). "
                + CCVisu.endl
+               + "   -initPlacement P  strategy for the initial placement: RANDOM, SPECTRAL, "
+               + CCVisu.endl
+               + "                     BFS, or BIPARTITE (default: RANDOM). "
+               + CCVisu.endl
+               + "   -checkpoint <file>  periodically save the minimizer state to file. "
+               + CCVisu.endl
+               + "   -checkpointIter <int>  iterations between two checkpoints (default: 10). "
+               + CCVisu.endl
+               + "   -resume           continue the minimization from the checkpoint file. "
+               + CCVisu.endl
+               + "   -components       compute the layouts of the connected components "
+               + CCVisu.endl
+               + "                     in parallel and pack them (default: whole graph). "
+               + CCVisu.endl
+               + "                     Not combined with -checkpoint (then whole graph). "
+               + CCVisu.endl
                + "   "
                + CCVisu.endl
                + "Energy model options: "
@@ -669,6 +777,10 @@ public class Options {
                + CCVisu.endl
                + "   -noWeight         use unweighted model (default: weighted). "
                + CCVisu.endl
+               + "   -aggregateEdges   merge parallel edges into one edge with the summed "
+               + CCVisu.endl
+               + "                     weight (default: keep parallel edges). "
+               + CCVisu.endl
                + "   -grav <float>     gravitation factor for the Barnes-Hut-procedure "
                + CCVisu.endl
                + "                     (default: 0.001). "
@@ -710,6 +822,9 @@ public class Options {
                + CCVisu.endl
                + Options.helpForOption(Option.showEdges)
                + Options.helpForOption(Option.scalePos)
+               + Options.helpForOption(Option.compactSVG)
+               + Options.helpForOption(Option.tileLevels)
+               + Options.helpForOption(Option.edgeLOD)
                + "   -noAnim           layout not shown while minimizer is still improving it "
                + CCVisu.endl
                + "                     (default: show). "
@@ -733,7 +848,7 @@ public class Options {
                + CCVisu.endl
                + "   CVS               CVS log format (for input only; produce with 'cvs log -Nb')."
                + CCVisu.endl
-               + "   SVN               SVN log format (for input only; produce with 'svn log -v --xml')."
+               + "   SVN               SVN log format (for input only; produce with 'svn log -v --xml'; may be gzipped)."
                + CCVisu.endl
                + "   DOX               Doxygen XML format (for input only; produce with 'doxygen')."
                + CCVisu.endl
@@ -741,10 +856,22 @@ public class Options {
                + CCVisu.endl
                + "   LAY               graph layout in textual format."
                + CCVisu.endl
+               + "   BIN               graph snapshot with layout in binary format "
+               + CCVisu.endl
+               + "                     (input must be a file; the layout is reused)."
+               + CCVisu.endl
                + "   VRML              graph layout in VRML format (for output only)."
                + CCVisu.endl
                + "   SVG               graph layout in SVG format (for output only)."
                + CCVisu.endl
+               + "   GLB               graph layout as 3D scene in binary glTF format "
+               + CCVisu.endl
+               + "                     (for output only)."
+               + CCVisu.endl
+               + "   TILES             graph layout as zoomable PNG tiles with a JSON index "
+               + CCVisu.endl
+               + "                     (for output only; -o names the directory, required)."
+               + CCVisu.endl
                + "   DISP              display gaph layout on screen (only output)."
                + CCVisu.endl + "   " + CCVisu.endl
                + "http://www.cs.sfu.ca/~dbeyer/CCVisu/ " + CCVisu.endl + "   "
@@ -810,6 +937,23 @@ public class Options {
     return result;
   }
 
+  /*****************************************************************
+   * Transforms the placement strategy given as a string into the enum.
+   * @param pStrategyStr  Placement strategy string to be converted to enum.
+   * @return              Placement strategy identifier.
+   *****************************************************************/
+  private static InitPlacement getInitPlacement(String pStrategyStr) {
+    InitPlacement result = InitPlacement.RANDOM;
+    try {
+      result = InitPlacement.valueOf(pStrategyStr.toUpperCase());
+    } catch (Exception e) {
+      System.err.println("Usage error: '" + pStrategyStr
+                         + "' is not a valid initial placement.");
+      System.exit(1);
+    }
+    return result;
+  }
+
   /*****************************************************************
    * Handles exceptions of format conversions.
    * @param formatStr    input/output format as string
@@ -0,0 +1,279 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Reader for graph snapshots in binary format BIN,
+ * as written by <code>WriterDataBIN</code>.
+ * The file is memory-mapped and the sections are read with bulk
+ * transfers; the adjacency is taken over as it is stored,
+ * without re-parsing or re-building anything.
+ *
+ * Format (big-endian; all sections follow each other without gaps,
+ * byte sections are padded to a multiple of four bytes):
+ * <pre>
+ *   header:    int MAGIC, int VERSION, int flags, long sourceHash,
+ *              int nodeNr, int adjLength, int reflexiveNr,
+ *              int relNameNr, int edgeNr
+ *   names:     int[nodeNr + 1] offsets, int byteNr, byte[byteNr] UTF-8
+ *   vertices:  float[nodeNr] x, y, z, degree; int[nodeNr] rgb color;
+ *              byte[nodeNr] vertex flags
+ *   adjacency: int[nodeNr + 1] offsets, int[adjLength] targets,
+ *              float[adjLength] weights, int[reflexiveNr] reflexive
+ *   relations: int[relNameNr + 1] offsets, int byteNr, byte[byteNr] UTF-8
+ *   edges:     int[edgeNr] relation, source, target; float[edgeNr] weight
+ * </pre>
+ *****************************************************************/
+public class ReaderDataBIN extends ReaderData {
+
+  /** File magic: 'CCVG'. */
+  public static final int      MAGIC            = 0x43435647;
+  public static final int      VERSION          = 1;
+
+  /** Flag: the positions are a computed layout. */
+  public static final int      FLAG_LAYOUT      = 1;
+
+  /** Vertex flags. */
+  static final int             VERTEX_SOURCE    = 1;
+  static final int             VERTEX_SHOWNAME  = 2;
+  static final int             VERTEX_SHOW      = 4;
+  static final int             VERTEX_AUXILIARY = 8;
+  static final int             VERTEX_FIXEDPOS  = 16;
+  static final int             VERTEX_SELFLOOP  = 32;
+
+  static final Charset         UTF8             = Charset.forName("UTF-8");
+
+  /** Input file. */
+  private final File           mFile;
+  /** Header flags of the file read. */
+  private int                  mFlags           = 0;
+  /** Hash of the source data the snapshot was made from (0 if unknown). */
+  private long                 mSourceHash      = 0;
+
+  /**
+   * Constructor.
+   * @param pFile  Input file.
+   */
+  public ReaderDataBIN(File pFile, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = pFile;
+  }
+
+  /** Returns true if the snapshot read contains a computed layout. */
+  public boolean hasLayout() {
+    return (mFlags & FLAG_LAYOUT) != 0;
+  }
+
+  /** Returns the hash of the source data of the snapshot read. */
+  public long getSourceHash() {
+    return mSourceHash;
+  }
+
+  /*****************************************************************
+   * Reads the graph snapshot from the input file.
+   * @param pGraph  <code>GraphData</code> object to store the graph data in.
+   *****************************************************************/
+  @Override
+  public void read(GraphData pGraph) {
+    RandomAccessFile lIn = null;
+    try {
+      lIn = new RandomAccessFile(mFile, "r");
+      FileChannel lChannel = lIn.getChannel();
+      if (lChannel.size() > Integer.MAX_VALUE) {
+        System.err.println("Runtime error: Graph snapshot '" + mFile
+                           + "' is too large.");
+        return;
+      }
+      ByteBuffer lBuf =
+                        lChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            lChannel.size());
+      read(lBuf, pGraph);
+    } catch (IOException e) {
+      System.err.println("Runtime error: Input Exception while reading '"
+                         + mFile + "':");
+      System.err.println(e);
+    } catch (RuntimeException e) {
+      // Buffer underflow or inconsistent sections.
+      System.err.println("Runtime error: Graph snapshot '" + mFile
+                         + "' is corrupt.");
+      System.err.println(e);
+    } finally {
+      try {
+        if (lIn != null) {
+          lIn.close();
+        }
+      } catch (IOException e) {
+        System.err.println("Exception while closing input file: ");
+        System.err.println(e);
+      }
+    }
+  }
+
+  private void read(ByteBuffer pBuf, GraphData pGraph) {
+    if (pBuf.getInt() != MAGIC) {
+      System.err.println("Runtime error: '" + mFile
+                         + "' is not a graph snapshot.");
+      return;
+    }
+    int lVersion = pBuf.getInt();
+    if (lVersion != VERSION) {
+      System.err.println("Runtime error: Graph snapshot '" + mFile
+                         + "' has version " + lVersion + ", expected "
+                         + VERSION + ".");
+      return;
+    }
+    mFlags = pBuf.getInt();
+    mSourceHash = pBuf.getLong();
+    int lNodeNr = pBuf.getInt();
+    int lAdjLength = pBuf.getInt();
+    int lReflexiveNr = pBuf.getInt();
+    int lRelNameNr = pBuf.getInt();
+    int lEdgeNr = pBuf.getInt();
+
+    // Vertices.
+    String[] lNames = getStrings(pBuf, lNodeNr);
+    float[] lX = getFloats(pBuf, lNodeNr);
+    float[] lY = getFloats(pBuf, lNodeNr);
+    float[] lZ = getFloats(pBuf, lNodeNr);
+    float[] lDegrees = getFloats(pBuf, lNodeNr);
+    int[] lColors = getInts(pBuf, lNodeNr);
+    byte[] lVertexFlags = getBytes(pBuf, lNodeNr);
+    int lFirstId = pGraph.vertices.size();
+    for (int i = 0; i < lNodeNr; ++i) {
+      GraphVertex lVertex = new GraphVertex();
+      lVertex.name = lNames[i];
+      lVertex.id = lFirstId + i;
+      lVertex.pos.x = lX[i];
+      lVertex.pos.y = lY[i];
+      lVertex.pos.z = lZ[i];
+      lVertex.degree = lDegrees[i];
+      lVertex.color = Colors.get(lColors[i]);
+      int lFlags = lVertexFlags[i];
+      lVertex.isSource = (lFlags & VERTEX_SOURCE) != 0;
+      lVertex.showName = (lFlags & VERTEX_SHOWNAME) != 0;
+      lVertex.showVertex = (lFlags & VERTEX_SHOW) != 0;
+      lVertex.auxiliary = (lFlags & VERTEX_AUXILIARY) != 0;
+      lVertex.fixedPos = (lFlags & VERTEX_FIXEDPOS) != 0;
+      lVertex.hasSelfLoop = (lFlags & VERTEX_SELFLOOP) != 0;
+      if (pGraph.nameToVertex.containsKey(lVertex.name)) {
+        System.err.println("Input error: Vertex '" + lVertex.name
+                           + "' exists twice in graph snapshot.");
+      }
+      pGraph.vertices.add(lVertex);
+      pGraph.nameToVertex.put(lVertex.name, lVertex);
+    }
+    if (hasLayout()) {
+      CCVisu.marker.markAll(pGraph.vertices.subList(lFirstId,
+          pGraph.vertices.size()));
+    }
+
+    // Adjacency.
+    int[] lOffsets = getInts(pBuf, lNodeNr + 1);
+    int[] lTargets = getInts(pBuf, lAdjLength);
+    float[] lWeights = getFloats(pBuf, lAdjLength);
+    int[] lReflexive = getInts(pBuf, lReflexiveNr);
+    if (lFirstId == 0) {
+      pGraph.adjacency.setRows(lOffsets, lTargets, lWeights, lReflexive);
+    } else if (mVerbosity.isAtLeast(Verbosity.WARNING)) {
+      System.err.println("Graph snapshot warning: Graph is not empty, "
+                         + "adjacency of '" + mFile + "' ignored.");
+    }
+
+    // Edges.
+    String[] lRelNames = getStrings(pBuf, lRelNameNr);
+    int[] lRels = getInts(pBuf, lEdgeNr);
+    int[] lSources = getInts(pBuf, lEdgeNr);
+    int[] lEdgeTargets = getInts(pBuf, lEdgeNr);
+    float[] lEdgeWeights = getFloats(pBuf, lEdgeNr);
+    for (int k = 0; k < lEdgeNr; ++k) {
+      if (pGraph.storeEdges) {
+        GraphEdge lEdge = new GraphEdge();
+        lEdge.relName = lRelNames[lRels[k]];
+        lEdge.x = lFirstId + lSources[k];
+        lEdge.y = lFirstId + lEdgeTargets[k];
+        lEdge.w = lEdgeWeights[k];
+        pGraph.edges.add(lEdge);
+      }
+      if (pGraph.storeTuples) {
+        List<String> lTuple = new ArrayList<String>(4);
+        lTuple.add(lRelNames[lRels[k]]);
+        lTuple.add(lNames[lSources[k]]);
+        lTuple.add(lNames[lEdgeTargets[k]]);
+        lTuple.add(Float.toString(lEdgeWeights[k]));
+        pGraph.mTuples.add(lTuple);
+      }
+    }
+  }
+
+  private static int[] getInts(ByteBuffer pBuf, int pLength) {
+    int[] result = new int[pLength];
+    pBuf.asIntBuffer().get(result);
+    pBuf.position(pBuf.position() + 4 * pLength);
+    return result;
+  }
+
+  private static float[] getFloats(ByteBuffer pBuf, int pLength) {
+    float[] result = new float[pLength];
+    pBuf.asFloatBuffer().get(result);
+    pBuf.position(pBuf.position() + 4 * pLength);
+    return result;
+  }
+
+  /** Reads pLength bytes and skips the padding. */
+  private static byte[] getBytes(ByteBuffer pBuf, int pLength) {
+    byte[] result = new byte[pLength];
+    pBuf.get(result);
+    pBuf.position(pBuf.position() + WriterDataBIN.padding(pLength));
+    return result;
+  }
+
+  /** Reads a string table (offsets, byte number, bytes). */
+  private static String[] getStrings(ByteBuffer pBuf, int pNr) {
+    int[] lOffsets = getInts(pBuf, pNr + 1);
+    byte[] lBytes = getBytes(pBuf, pBuf.getInt());
+    String[] result = new String[pNr];
+    for (int i = 0; i < pNr; ++i) {
+      result[i] =
+                  new String(lBytes, lOffsets[i], lOffsets[i + 1]
+                                                  - lOffsets[i], UTF8);
+    }
+    return result;
+  }
+}
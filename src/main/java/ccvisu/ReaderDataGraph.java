@@ -58,95 +58,40 @@ public abstract class ReaderDataGraph extends ReaderData {
 
   /*****************************************************************
    * Reads the graph data from stream reader <code>in</code>.
+   * The tuples are inserted into the graph as they are read,
+   * and only kept in <code>mTuples</code> if the graph stores tuples.
    * @param pGraph  <code>GraphData</code> object to store the graph data in.
    *****************************************************************/
   @Override
   public void read(GraphData pGraph) {
-    pGraph.mTuples = readTuples();
-    // Initialize graph representation.
-    initializeGraph(pGraph);
+    // Initialize graph representation while reading.
+    final GraphBuilder lBuilder = new GraphBuilder(pGraph, mVerbosity);
+    if (!pGraph.storeTuples) {
+      readTuples(lBuilder);
+      return;
+    }
+    final Relation lTuples = new Relation();
+    readTuples(new TupleConsumer() {
+      @Override
+      public void addTuple(List<String> pTuple) {
+        lTuples.add(pTuple);
+        lBuilder.addTuple(pTuple);
+      }
+    });
+    pGraph.mTuples = lTuples;
   }
 
   /*****************************************************************
-   * Reads the graph data from list of string edges (see class comment).
+   * Reads the edges of a graph from stream reader <code>in</code>
+   * and passes them, one by one, to the given consumer.
+   * Readers that can produce tuples one at a time override this method;
+   * the default implementation passes the result of <code>readTuples()</code>.
+   * @param pConsumer  Receiver of the tuples.
    *****************************************************************/
-  private void initializeGraph(GraphData pGraph) {
-    int lLineNo = 0;
-    for (List<String> itTuple : pGraph.mTuples) {
-      ++lLineNo;
-      if (!itTuple.isEmpty() && itTuple.get(0).charAt(0) != '#') {
-        if (itTuple.size() < 3) {
-          System.err.println("Runtime error: Exception while reading "
-                             + "a graph edge, at line " + lLineNo + ":");
-          System.err.println("Input graph file needs to follow the RSF format");
-          System.err.println("'<graph-name> <source-node> <target-node>'.");
-        }
-        // Relation name.
-        String lEdgeRelName = itTuple.get(0);
-        // Source vertex.
-        String lEdgeSourceVertex = itTuple.get(1);
-        // Target vertex.
-        String lEdgeTargetVertex = itTuple.get(2);
-        // Edge weight.
-        String lEdgeWeight = "1.0";
-        if (itTuple.size() > 3) {
-          lEdgeWeight = itTuple.get(3);
-        }
-
-        // Source vertex.
-        GraphVertex x = new GraphVertex();
-        x.name = lEdgeSourceVertex;
-        // Target vertex.
-        GraphVertex y = new GraphVertex();
-        y.name = lEdgeTargetVertex;
-
-        // Insert x-vertex to graph.
-        if (!pGraph.nameToVertex.containsKey(x.name)) {
-          x.id = pGraph.vertices.size();
-          pGraph.vertices.add(x);
-          pGraph.nameToVertex.put(x.name, x);
-        }
-        // Use existing vertex, if not the same (id field).
-        x = pGraph.nameToVertex.get(x.name);
-        x.isSource = true;
-
-        // Insert y-vertex to graph.
-        if (!pGraph.nameToVertex.containsKey(y.name)) {
-          y.id = pGraph.vertices.size();
-          pGraph.vertices.add(y);
-          pGraph.nameToVertex.put(y.name, y);
-        }
-        // Use existing vertex, if not the same (id field).
-        y = pGraph.nameToVertex.get(y.name);
-        y.isSource = false;
-
-        // Insert edge to graph.
-        GraphEdge edge = new GraphEdge();
-        edge.relName = lEdgeRelName;
-        edge.x = x.id;
-        edge.y = y.id;
-        // (Detection of reflexive edges is done by CCVisu.computeLayout().)
-        try {
-          edge.w = Math.abs(Float.parseFloat(lEdgeWeight));
-        } catch (Exception e) {
-          if (mVerbosity.isAtLeast(Verbosity.WARNING)) {
-            System.err.println("RSF warning: Float expected for relation '"
-                               + lEdgeRelName + "' at '" + lEdgeWeight
-                               + "', at line " + lLineNo + ".");
-          }
-          edge.w = 1.0f;
-        }
-        pGraph.edges.add(edge);
-        // Adjust degrees of the vertices.
-        x.degree += edge.w;
-        y.degree += edge.w;
-        if (x.degree < 0 || y.degree < 0) {
-          System.err.println("Invalid graph: edge {" + x.name + "," + y.name
-                             + "} " + "has weight: " + edge.w + ".");
-        }
-      }
+  public void readTuples(TupleConsumer pConsumer) {
+    for (List<String> itTuple : readTuples()) {
+      pConsumer.addTuple(itTuple);
     }
-    return;
   }
 
   /*****************************************************************
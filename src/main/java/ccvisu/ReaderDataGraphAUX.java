@@ -43,4 +43,9 @@ public class ReaderDataGraphAUX extends ReaderDataGraph {
     return new Relation();
   }
 
+  @Override
+  public void readTuples(TupleConsumer pConsumer) {
+    // Graph is set by calling client.
+  }
+
 }
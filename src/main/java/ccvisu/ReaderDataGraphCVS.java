@@ -31,15 +31,7 @@ package ccvisu;
 import java.io.BufferedReader;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import ccvisu.Options.Verbosity;
 
@@ -70,55 +62,6 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
     this.sliding = sliding;
   }
 
-  /** 
-   * Represents a CVS revision entry (an abstraction of it).
-   * @author Dirk Beyer
-   */
-  private class Revision implements Comparable<Revision> {
-    String relName;
-    String filename;
-    Long   time;
-    String user;
-    String logmsg;
-    /** The internal number (id) of the change transaction.*/
-    int    transaction;
-
-    /*****************************************************************
-     * Compares this revision with the specified object for order.  
-     * Returns a negative integer, zero, or a positive integer as this object 
-     * is less than, equal to, or greater than the specified object.<p>
-     *
-     * @param   rev revision to be compared for order with this revision.
-     * @return  a negative integer, zero, or a positive integer as this object
-     *              is less than, equal to, or greater than the specified object.
-     *****************************************************************/
-    public int compareTo(Revision rev) {
-      if (this.time.compareTo(rev.time) == 0) {
-        return this.hashCode() - rev.hashCode();
-      } else {
-        return this.time.compareTo(rev.time);
-      }
-    }
-
-    /*****************************************************************
-     * Compares the specified object with this revision for equality.
-     * Returns <tt>true</tt> if the specified object is identical with this object. 
-     * The method is based on <tt>compareTo</tt> to make the ordering 
-     * <i>consistent with equals</i>.<p>
-     * 
-     * @param o  Object to be compared for equality with this revision.
-     * @return <tt>true</tt> if the specified Object is equal to this revision.
-     *****************************************************************/
-    @Override
-    public boolean equals(Object o) {
-      Revision rev = (Revision) o;
-      if (rev == null) { // Either o is null or o is not of class Revision.
-        return false;
-      }
-      return (this.compareTo(rev) == 0);
-    }
-  };
-
   /*****************************************************************
    * Reads the edges of a graph in CVS log format
    * from stream reader <code>in</code>, 
@@ -128,36 +71,42 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
   @Override
   public Relation readTuples() {
     Relation result = new Relation();
+    readTuples(result);
+    return result;
+  }
 
-    List<Revision> revisionList = readRevisionList();
-    SortedMap<Long, Collection<SortedSet<Revision>>> transMap =
-                                                                recoverTransactions(revisionList);
-
-    Set<Long> timeSet = transMap.keySet();
-    for (Long time : timeSet) {
-      Collection<SortedSet<Revision>> transColl = transMap.get(time);
-      for (SortedSet<Revision> revSet : transColl) {
-        for (Revision revision : revSet) {
-          List<String> newTuple = new ArrayList<String>();
-          newTuple.add(revision.relName);
-          newTuple.add(Integer.toString(revision.transaction));
-          newTuple.add(revision.filename);
-          result.add(newTuple);
+  /*****************************************************************
+   * Reads the revisions, recovers the transactions, and passes
+   * one tuple (CO-CHANGE transaction file) per revision to pConsumer,
+   * ordered by transaction.
+   * @param pConsumer  Receiver of the tuples.
+   *****************************************************************/
+  @Override
+  public void readTuples(TupleConsumer pConsumer) {
+    TransactionRecovery lRecovery =
+                                    new TransactionRecovery(timeWindow,
+                                        sliding, mVerbosity);
+    readRevisionList(lRecovery);
+    lRecovery.recover();
 
-          // Print revision entry with timestamp and user of the changes to stdout.
-          if (mVerbosity.isAtLeast(Verbosity.WARNING)) {
-            Calendar cal = Calendar.getInstance();
-            cal.setTimeInMillis(revision.time.longValue());
-            System.out.println("REV  \t"
-                               + Integer.toString(revision.transaction) + "\t"
-                               + "\"" + cal.getTime() + "\"" + "\t"
-                               + revision.user + "\t" + revision.filename
-                               + "\t" + revision.relName);
-          }
-        }
+    Calendar cal = Calendar.getInstance();
+    for (int k = 0; k < lRecovery.size(); ++k) {
+      String lTransaction = Integer.toString(lRecovery.getTransaction(k));
+      List<String> newTuple = new ArrayList<String>(3);
+      newTuple.add("CO-CHANGE");
+      newTuple.add(lTransaction);
+      newTuple.add(lRecovery.getFile(k));
+      pConsumer.addTuple(newTuple);
+
+      // Print revision entry with timestamp and user of the changes to stdout.
+      if (mVerbosity.isAtLeast(Verbosity.WARNING)) {
+        cal.setTimeInMillis(lRecovery.getTime(k));
+        System.out.println("REV  \t" + lTransaction + "\t" + "\""
+                           + cal.getTime() + "\"" + "\t"
+                           + lRecovery.getUser(k) + "\t"
+                           + lRecovery.getFile(k) + "\t" + "CO-CHANGE");
       }
     }
-    return result;
   }
 
   /*****************************************************************
@@ -206,18 +155,15 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
   }
 
   /*****************************************************************
-   * Parses the CVS log data and extracts revisions.
-   * @return  List of revisions.
+   * Parses the CVS log data and passes the revisions
+   * to the transaction recovery.
    *****************************************************************/
-  private List<Revision> readRevisionList() {
-    List<Revision> result = new ArrayList<Revision>();
-
+  private void readRevisionList(TransactionRecovery pRecovery) {
     String lLine = "";
-    //String relName = "CO-CHANGE";
     String filename = null;
     Long time;
     String user;
-    String logmsg;
+    StringBuilder logmsg = new StringBuilder();
 
     int lineno = 1;
     try {
@@ -226,7 +172,8 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
         if (lLine.startsWith("Working file: ")) {
           // Set name of the current working file, 
           //   for which we pasre the revisions.
-          filename = lLine.substring(14);
+          // Replace blanks by underline.
+          filename = lLine.substring(14).replace(' ', '_');
         }
 
         // New revision.
@@ -247,30 +194,20 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
           user = lLine.substring(posBegin, posEnd);
 
           // Parse logmsg. Start on next line the date/author line.
-          logmsg = "";
+          logmsg.setLength(0);
           ++lineno;
           while (((lLine = mIn.readLine()) != null)
                  && !lLine.startsWith("----") && !lLine.startsWith("====")) {
             if (!lLine.startsWith("branches: ")) {
-              logmsg += lLine + ReaderDataGraph.endl;
+              logmsg.append(lLine).append(ReaderDataGraph.endl);
             }
             ++lineno;
           }
 
-          // Create revision and add revision to resulting list.
-          Revision revision = new Revision();
-          //revision.relName = relName.replace(' ', '_');  // Replace blanks by underline.
-          revision.filename = filename.replace(' ', '_'); // Replace blanks by underline.
-          revision.time = time;
-          revision.user = user;
-          revision.logmsg = logmsg;
-          result.add(revision);
-
-          //System.out.print("Relation: "+ relName +
-          //                 " File: " + filename +
-          //                 " Time: " + time.toString() +
-          //                 " User: " + user + " LogMsg: " + logmsg);
-
+          // Add revision (the recovery interns the strings).
+          if (time != null) {
+            pRecovery.addRevision(user, logmsg.toString(), time, filename);
+          }
         }
         ++lineno;
       } // while
@@ -281,131 +218,6 @@ public class ReaderDataGraphCVS extends ReaderDataGraph {
       System.err.print("Read line: ");
       System.err.println(lLine);
     }
-    return result;
   }
 
-  /*****************************************************************
-   * Recovers the change transactions for the co-change graph 
-   *   from the revision information, i.e., it assigns
-   *   the transaction ids for the revisions.
-   * @param   revisionList is a list of revisions.
-   * @return  Sorted map that maps timestamps to collections of transactions,
-   *          where transactions are sets of revisions.
-   *****************************************************************/
-  private SortedMap<Long, Collection<SortedSet<Revision>>> recoverTransactions(
-                                                                               List<Revision> revisionList) {
-
-    // Step 1: Transform the list of revisions to a sorted data structure.
-
-    // A map user -> msg-entry.
-    Map<String, Map<String, SortedMap<Long, SortedSet<String>>>> userMap =
-                                                                           new HashMap<String, Map<String, SortedMap<Long, SortedSet<String>>>>();
-    // A map logmsg -> time-entry.
-    Map<String, SortedMap<Long, SortedSet<String>>> msgMap;
-    // A map time -> file.
-    SortedMap<Long, SortedSet<String>> timeMap;
-    // A set of files.
-    SortedSet<String> fileSet;
-
-    for (Revision revision : revisionList) {
-      // A map logmsg -> time-entry.
-      msgMap = userMap.get(revision.user);
-      if (msgMap == null) {
-        msgMap = new HashMap<String, SortedMap<Long, SortedSet<String>>>();
-        userMap.put(revision.user, msgMap);
-      }
-
-      // A map time -> file.
-      timeMap = msgMap.get(revision.logmsg);
-      if (timeMap == null) {
-        timeMap = new TreeMap<Long, SortedSet<String>>();
-        msgMap.put(revision.logmsg, timeMap);
-      }
-
-      // A set of files.
-      fileSet = timeMap.get(revision.time);
-      if (fileSet == null) {
-        fileSet = new TreeSet<String>();
-        timeMap.put(revision.time, fileSet);
-      }
-
-      // Add file to set.
-      fileSet.add(revision.filename);
-    }
-
-    // Step 2: Create the result, which is
-    // a map timestamp -> set of transactions (Long -> SortedSet), 
-    // where one transaction is a set of revisions.
-    SortedMap<Long, Collection<SortedSet<Revision>>> result =
-                                                              new TreeMap<Long, Collection<SortedSet<Revision>>>();
-
-    int transaction = 0;
-    Set<String> userSet = userMap.keySet();
-    for (String user : userSet) {
-      msgMap = userMap.get(user);
-
-      Set<String> msgSet = msgMap.keySet();
-      for (String logmsg : msgSet) {
-        timeMap = msgMap.get(logmsg);
-
-        Set<Long> timeSet = timeMap.keySet();
-
-        long firstTime = 0;
-        Set<String> tmpFilesSeen = new TreeSet<String>(); // Detect a time window that is too long.
-        Collection<SortedSet<Revision>> transColl; // Collection of transactions.
-        SortedSet<Revision> revSet = null; // Transaction, i.e., set of revisions.
-        for (Long time : timeSet) {
-          if (time.longValue() - firstTime > timeWindow) {
-            // Start new transaction.
-            ++transaction;
-            firstTime = time.longValue();
-            tmpFilesSeen.clear();
-            // Retrieve (or create new) set of transactions for the timestamp.
-            transColl = result.get(time);
-            if (transColl == null) {
-              transColl = new ArrayList<SortedSet<Revision>>();
-              result.put(time, transColl);
-            }
-            // New transaction (set of revisions).
-            revSet = new TreeSet<Revision>();
-            transColl.add(revSet);
-          } else if (sliding) {
-            // The time window 'slides' with the files.
-            firstTime = time.longValue();
-          }
-
-          fileSet = timeMap.get(time);
-          for (String filename : fileSet) {
-            // Detect a time window that is too long.
-            if (mVerbosity.isAtLeast(Verbosity.WARNING)
-                && tmpFilesSeen.contains(filename)) {
-              System.err
-                  .println("Transaction-recovery warning: Time window might be to wide "
-                           + ReaderDataGraph.endl
-                           + "(currently '"
-                           + timeWindow
-                           + "' milli-seconds). "
-                           + ReaderDataGraph.endl
-                           + "File '"
-                           + filename
-                           + "' already contained in current transaction.");
-            }
-            tmpFilesSeen.add(filename);
-
-            // Create revision and add revision to resulting list.
-            Revision revision = new Revision();
-            revision.relName = "CO-CHANGE";
-            revision.filename = filename;
-            revision.time = time;
-            revision.user = user;
-            revision.logmsg = logmsg;
-            revision.transaction = transaction;
-            revSet.add(revision);
-          }
-        }
-      }
-      //    }
-    }
-    return result;
-  }
 };
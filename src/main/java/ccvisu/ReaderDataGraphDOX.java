@@ -30,14 +30,16 @@ package ccvisu;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -50,10 +52,15 @@ import ccvisu.Options.Verbosity;
  * Extracts relations in RSF format from a given XML input.
  * BASEDON, COMPOUND, CONTAINEDIN, LOCATEDAT, MEMBER, REFERSTO
  * supported so far.
+ * The compound XML files listed in the index are parsed concurrently,
+ * each thread with its own SAX parser.
  */
 public class ReaderDataGraphDOX extends ReaderDataGraph {
 
-  private String mInputName;
+  /** Minimum number of XML files for a parallel parse. */
+  private static final int PARALLEL_MIN = 64;
+
+  private String           mInputName;
 
   /**
    * Constructor.
@@ -73,13 +80,10 @@ public class ReaderDataGraphDOX extends ReaderDataGraph {
     // This is where we store the relations.
     Relation lRelations = new Relation();
 
-    XMLReader xmlReader = null;
     DOXIndexFileHandler indexFileHandler = null;
     try {
       // initialize xmlReader
-      xmlReader = XMLReaderFactory.createXMLReader();
-      // SAXParser saxParser =
-      // SAXParserFactory.newInstance().newSAXParser();
+      XMLReader xmlReader = XMLReaderFactory.createXMLReader();
 
       // update xmlReader for index-file parsing
       indexFileHandler = new DOXIndexFileHandler(lRelations);
@@ -88,44 +92,27 @@ public class ReaderDataGraphDOX extends ReaderDataGraph {
 
       // parse index file
       xmlReader.parse(new InputSource(mIn));
-      // saxParser.parse(new File(filePath + "/" + fileName),
-      // filenamesDetector);
     } catch (SAXException e) {
       System.err.println("Runtime error: A SAX-error occured.");
       System.err.println(e.getMessage());
     } catch (IOException e) {
       System.err.println("Runtime error: Error while opening a file.");
       System.err.println(e.getMessage());
-      System.exit(1);
     }
-
-    // update xmlReader for xml-file parsing
-    DOXXmlFileHandler xmlFileHandler = new DOXXmlFileHandler(lRelations);
-    xmlReader.setContentHandler(xmlFileHandler);
-    xmlReader.setErrorHandler(xmlFileHandler);
+    if (indexFileHandler == null) { return lRelations; }
 
     // parse detected XML files
     List<String> xmlFilenames = indexFileHandler.getXmlFileIds();
     String lPath =
                    mInputName.substring(0, mInputName
                        .lastIndexOf(File.separator));
-    for (String lItFileName : xmlFilenames) {
-      try {
-        xmlReader
-            .parse(new InputSource(new FileReader(lPath + File.separator
-                                                  + lItFileName + ".xml")));
-        // saxParser.parse(new File(filePath + "/" + xmlFilenames.pop()
-        // + ".xml"), fileParser);
-        // Exception handling
-      } catch (SAXException e) {
-        System.err.println("Runtime error: A SAX-error occured.");
-        System.err.println("  While parsing file '" + lItFileName + "'.");
-        System.err.println("  " + e.getMessage());
-      } catch (IOException e) {
-        System.err.println("Runtime error: Error while opening a file.");
-        System.err.println(e.getMessage());
-        System.exit(1);
-      }
+    int lThreadNr = Runtime.getRuntime().availableProcessors();
+    if (lThreadNr > 1 && xmlFilenames.size() >= PARALLEL_MIN) {
+      readXmlFilesParallel(lPath, xmlFilenames, lThreadNr, lRelations);
+    } else {
+      XmlFileParser lParser = new XmlFileParser(lPath, xmlFilenames);
+      lParser.call();
+      mergeXmlFiles(lParser, lRelations);
     }
 
     addExtraTuples(lRelations);
@@ -134,114 +121,120 @@ public class ReaderDataGraphDOX extends ReaderDataGraph {
   }
 
   /**
-   * @param pRelations
+   * Parses the XML files in contiguous chunks concurrently,
+   * and appends their tuples to pRelations in the order of the file list
+   * (the result is the same as for a sequential parse).
    */
-  private void addExtraTuples(Relation pRelations) {
-    // Construct mappings id-to-name, -kind, -container name, and -file.
-    Map<String, String> lIdToName = new HashMap<String, String>();
-    Map<String, String> lIdToKind = new HashMap<String, String>();
-    Map<String, String> lIdToContainerId = new HashMap<String, String>();
-    Map<String, String> lIdToFile = new HashMap<String, String>();
-    for (List<String> itTuple : pRelations) {
-      assert (itTuple.size() > 1);
-      Iterator<String> it = itTuple.iterator();
-      String lRelName = it.next();
-      if (lRelName.equals("MEMBER") || lRelName.equals("COMPOUND")) {
-        assert (itTuple.size() == 4);
-        String lRelKind = it.next();
-        String lId = it.next().replace("\"", "");
-        String lName = it.next().replace("\"", "");
-        if (lRelKind.equalsIgnoreCase("function")) {
-          lName += "()";
-        }
-        lIdToKind.put(lId, lRelKind);
-        String lPrev = lIdToName.put(lId, lName);
-        // Check for duplicate entries: 
-        if (lPrev != null && !lPrev.equals(itTuple.get(3))
-            && mVerbosity.isAtLeast(Verbosity.WARNING)) {
-          System.err.println("Warning: Multiple names found for id '"
-                             + itTuple.get(2) + "':");
-          System.err.println("    " + lPrev);
-          System.err.println("    " + itTuple.get(3));
-        }
-      }
-      if (lRelName.equals("LOCATEDAT")) {
-        assert (itTuple.size() == 4);
-        String lPrev = lIdToFile.put(it.next(), it.next());
-        // Skip the 'line-no'.
-        // Check for duplicate entries: 
-        if (lPrev != null && !lPrev.equals(itTuple.get(2))
-            && mVerbosity.isAtLeast(Verbosity.WARNING)) {
-          System.err.println("Warning: Multiple locations found for id '"
-                             + itTuple.get(1) + "':");
-          System.err.println("    " + lPrev);
-          System.err.println("    " + itTuple.get(2));
-        }
+  private void readXmlFilesParallel(String pPath, List<String> pFileIds,
+                                    int pThreadNr, Relation pRelations) {
+    // Four chunks per thread, to balance the load.
+    int lChunkNr = 4 * pThreadNr;
+    ExecutorService lExecutor = Executors.newFixedThreadPool(pThreadNr);
+    List<Future<XmlFileParser>> lResults =
+                                           new ArrayList<Future<XmlFileParser>>();
+    int lChunkStart = 0;
+    for (int k = 1; k <= lChunkNr; ++k) {
+      int lChunkEnd = (int) ((long) pFileIds.size() * k / lChunkNr);
+      if (lChunkEnd > lChunkStart) {
+        lResults.add(lExecutor.submit(new XmlFileParser(pPath, pFileIds
+            .subList(lChunkStart, lChunkEnd))));
       }
+      lChunkStart = lChunkEnd;
     }
-    // We must do a second loop over the tuples list, since we have to know all of the classes' names beforehand
-    for (List<String> itTuple : pRelations) {
-      assert (itTuple.size() > 1);
-      Iterator<String> it = itTuple.iterator();
-      String lRelName = it.next();
-      if (lRelName.equals("CONTAINEDIN")) {
-        assert (itTuple.size() == 3);
-        String lId = it.next().replace("\"", "");
-        String lName = it.next().replace("\"", "");
-
-        String lPrev = lIdToContainerId.put(lId, lName);
-        // Check for duplicate entries: 
-        if (lPrev != null && !lPrev.equals(itTuple.get(2))
-            && mVerbosity.isAtLeast(Verbosity.WARNING)) {
-          System.err.println("Warning: Multiple names found for id '"
-                             + itTuple.get(1) + "':");
-          System.err.println("    " + lPrev);
-          System.err.println("    " + itTuple.get(2));
-        }
+    lExecutor.shutdown();
+    for (Future<XmlFileParser> lResult : lResults) {
+      try {
+        mergeXmlFiles(lResult.get(), pRelations);
+      } catch (InterruptedException e) {
+        lExecutor.shutdownNow();
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        System.err.println("Runtime error: Exception while parsing "
+                           + "the XML files.");
+        System.err.println(e.getCause());
       }
     }
+  }
 
-    // Appending derived relations to pRelations.
-    // A set for tracking which tuples we already added.
-    Set<String> lStoredTuples = new HashSet<String>();
-    for (List<String> itTuple : new Relation(pRelations)) {
-      assert (itTuple.size() > 1);
-      Iterator<String> it = itTuple.iterator();
-      String lRelName = it.next();
-      if (lRelName.equals("REFERSTO")) {
-        String source = it.next();
-        String target = it.next();
-        pRelations.addTuple("REF" + lIdToKind.get(target), source, target,
-            lIdToName, lStoredTuples);
-        String sourceContainer = lIdToContainerId.get(source);
-        String targetContainer = lIdToContainerId.get(target);
-        if (lIdToKind.get(sourceContainer).equals("class")
-            && lIdToKind.get(targetContainer).equals("class")) {
-          pRelations.addTuple("refClass", sourceContainer, targetContainer,
-              lIdToName, lStoredTuples);
-        }
-        // We need some extra tolerance for file names.
-        if (lIdToFile.get(source) == null) {
-          System.err.println("Runtime warning: No file location found for "
-                             + "entry with id '" + source + "'.");
-        } else if (lIdToFile.get(target) != null) {
-          // Sometimes we don't get the file location for an id.
-          // This happens, e.g., for 'enumvalue'. --- We omit such tuples.
-          pRelations.addTuple("refFile", source, target, lIdToFile,
-              lStoredTuples);
-        }
+  /**
+   * Reports the errors of a parsed chunk of XML files,
+   * and appends its tuples to pRelations.
+   */
+  private void mergeXmlFiles(XmlFileParser pParser, Relation pRelations) {
+    for (String lError : pParser.errors) {
+      System.err.println(lError);
+    }
+    pRelations.addAll(pParser.relations);
+  }
+
+  /**
+   * Parses a list of compound XML files with its own SAX parser,
+   * into its own relation. A file that cannot be read or parsed
+   * is skipped; the error messages are collected in <code>errors</code>.
+   */
+  private static class XmlFileParser implements Callable<XmlFileParser> {
+    private final String       path;
+    private final List<String> fileIds;
+    private final Relation     relations = new Relation();
+    private final List<String> errors    = new ArrayList<String>();
+
+    private XmlFileParser(String pPath, List<String> pFileIds) {
+      path = pPath;
+      fileIds = pFileIds;
+    }
+
+    @Override
+    public XmlFileParser call() {
+      XMLReader xmlReader;
+      try {
+        xmlReader = XMLReaderFactory.createXMLReader();
+      } catch (SAXException e) {
+        errors.add("Runtime error: A SAX-error occured.");
+        errors.add("  " + e.getMessage());
+        return this;
       }
-      if (lRelName.equals("BASEDON")) {
-        String source = it.next();
-        String target = it.next();
-        if (!target.startsWith("UNKNOWN")
-            && lIdToKind.get(source).equals("class")
-            && lIdToKind.get(target).equals("class")) {
-          pRelations.addTuple("inheritClass", source, target, lIdToName,
-              lStoredTuples);
+      for (String lItFileName : fileIds) {
+        // A fresh handler per file: its state does not survive
+        // a file that was parsed only partially.
+        DOXXmlFileHandler xmlFileHandler = new DOXXmlFileHandler(relations);
+        xmlReader.setContentHandler(xmlFileHandler);
+        xmlReader.setErrorHandler(xmlFileHandler);
+        InputStream lIn = null;
+        try {
+          lIn = new FileInputStream(path + File.separator + lItFileName
+                                    + ".xml");
+          xmlReader.parse(new InputSource(lIn));
+        } catch (SAXException e) {
+          errors.add("Runtime error: A SAX-error occured.");
+          errors.add("  While parsing file '" + lItFileName + "'.");
+          errors.add("  " + e.getMessage());
+        } catch (IOException e) {
+          errors.add("Runtime error: Error while opening a file.");
+          errors.add("  While parsing file '" + lItFileName + "'.");
+          errors.add("  " + e.getMessage());
+        } finally {
+          if (lIn != null) {
+            try {
+              lIn.close();
+            } catch (IOException e) {
+              // Nothing left to read.
+            }
+          }
         }
       }
+      return this;
     }
   }
 
+  /**
+   * Appends the relations derived from the extracted facts
+   * to pRelations (see <code>DOXFactTable</code>).
+   */
+  private void addExtraTuples(Relation pRelations) {
+    DOXFactTable lFacts = new DOXFactTable(mVerbosity);
+    lFacts.addFacts(pRelations);
+    lFacts.deriveTuples(pRelations);
+  }
+
 }
\ No newline at end of file
@@ -56,16 +56,21 @@ public class ReaderDataGraphFilter extends ReaderDataGraph {
 
   @Override
   public Relation readTuples() {
-    Relation lBaseTuples = base.readTuples();
-
     Relation lNewTuples = new Relation();
-    for (List<String> itTuple : lBaseTuples) {
-      if (itTuple.size() > 0 && whitelist.contains(itTuple.get(0))) {
-        lNewTuples.add(itTuple);
-      }
-    }
-
+    readTuples(lNewTuples);
     return lNewTuples;
+  }
+
+  @Override
+  public void readTuples(final TupleConsumer pConsumer) {
+    base.readTuples(new TupleConsumer() {
+      @Override
+      public void addTuple(List<String> pTuple) {
+        if (pTuple.size() > 0 && whitelist.contains(pTuple.get(0))) {
+          pConsumer.addTuple(pTuple);
+        }
+      }
+    });
 
     /* This has bad time complexity if the list is an ArrayList:
       for (ListIterator<List<String>> it = result.listIterator(); it.hasNext();) {
@@ -59,6 +59,18 @@ public class ReaderDataGraphRSF extends ReaderDataGraph {
   @Override
   public Relation readTuples() {
     Relation result = new Relation();
+    readTuples(result);
+    return result;
+  }
+
+  /*****************************************************************
+   * Reads the edges of a graph in RSF (relational standard format)
+   * from stream reader <code>in</code>, 
+   * and passes them to the given consumer as soon as they are read.
+   * @param pConsumer  Receiver of the tuples.
+   *****************************************************************/
+  @Override
+  public void readTuples(TupleConsumer pConsumer) {
     int lineno = 1;
     String lLine = "";
     try {
@@ -69,7 +81,7 @@ public class ReaderDataGraphRSF extends ReaderDataGraph {
           while (st.hasMoreTokens()) {
             newTuple.add(readEntry(st));
           }
-          result.add(newTuple);
+          pConsumer.addTuple(newTuple);
           /*
           int conf = Integer.parseInt(st.nextToken());
           if (conf >300) {
@@ -85,8 +97,6 @@ public class ReaderDataGraphRSF extends ReaderDataGraph {
       System.err.println(lLine);
       System.err.println(e);
     }
-
-    return result;
   }
 
 };
@@ -0,0 +1,513 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu.
+ *
+ * Copyright (C) 2005-2010  Dirk Beyer
+ *
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ *
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Reader for graphs in RSF format that scans the raw bytes of the input
+ * (a memory-mapped file, or a given buffer) instead of reading lines
+ * and tokenizing strings. The fields of a tuple are only offsets into
+ * the buffer; a vertex name is converted into a String only the first
+ * time it occurs, and the edges are inserted into the graph directly,
+ * without the intermediate list of tuples.
+ * Files larger than the mapping window are mapped window by window.
+ * Large inputs are split into chunks at line breaks, which are
+ * parsed concurrently; the edges of the chunks are then inserted
+ * in file order, so that the vertex ids are the same as for
+ * sequential reading.
+ *****************************************************************/
+public class ReaderDataGraphRSFMapped extends ReaderDataGraph {
+
+  /** Maximal size of one mapped region of the file. */
+  private static final int WINDOW = 1 << 28;
+  /** Minimal size of the input for parsing in parallel. */
+  private static final int PARALLEL_MIN = 1 << 22;
+
+  /** Input file, or null if the input is given as buffer. */
+  private final File       mFile;
+  /** Input buffer, or null if the input is given as file. */
+  private final ByteBuffer mBuffer;
+
+  /**
+   * Constructor for reading a file.
+   * @param pFile  Input file.
+   */
+  public ReaderDataGraphRSFMapped(File pFile, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = pFile;
+    mBuffer = null;
+  }
+
+  /**
+   * Constructor for reading from a buffer (between position and limit).
+   * @param pBuffer  Input data in UTF-8.
+   */
+  public ReaderDataGraphRSFMapped(ByteBuffer pBuffer, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = null;
+    mBuffer = pBuffer;
+  }
+
+  /*****************************************************************
+   * Reads the graph directly into the graph representation,
+   * unless the graph keeps the list of tuples <code>mTuples</code>.
+   * @param pGraph  <code>GraphData</code> object to store the graph data in.
+   *****************************************************************/
+  @Override
+  public void read(GraphData pGraph) {
+    if (pGraph.storeTuples) {
+      super.read(pGraph);
+      return;
+    }
+    scan(new TupleScanner(pGraph, null));
+  }
+
+  @Override
+  public Relation readTuples() {
+    Relation result = new Relation();
+    readTuples(result);
+    return result;
+  }
+
+  /*****************************************************************
+   * Reads the tuples of the input, for clients that need the strings
+   * (e.g., filters and RSF output).
+   * @param pConsumer  Receiver of the tuples.
+   *****************************************************************/
+  @Override
+  public void readTuples(TupleConsumer pConsumer) {
+    scan(new TupleScanner(null, pConsumer));
+  }
+
+  /**
+   * Feeds the input, window by window, to the given scanner.
+   */
+  private void scan(TupleScanner pScanner) {
+    if (mBuffer != null) {
+      pScanner.scan(mBuffer, mBuffer.position(), mBuffer.limit(), true);
+      return;
+    }
+    FileInputStream lIn = null;
+    try {
+      lIn = new FileInputStream(mFile);
+      FileChannel lChannel = lIn.getChannel();
+      long lSize = lChannel.size();
+      long lOffset = 0;
+      while (lOffset < lSize) {
+        int lLength = (int) Math.min(WINDOW, lSize - lOffset);
+        ByteBuffer lWindow =
+                             lChannel.map(FileChannel.MapMode.READ_ONLY,
+                                 lOffset, lLength);
+        boolean lLast = (lOffset + lLength == lSize);
+        int lConsumed = pScanner.scan(lWindow, 0, lLength, lLast);
+        if (lConsumed == 0) {
+          System.err.println("Runtime error: Line longer than " + WINDOW
+                             + " bytes in '" + mFile + "'.");
+          return;
+        }
+        lOffset += lConsumed;
+      }
+    } catch (IOException e) {
+      System.err.println("Runtime error: Input Exception while reading '"
+                         + mFile + "':");
+      System.err.println(e);
+    } finally {
+      try {
+        if (lIn != null) {
+          lIn.close();
+        }
+      } catch (IOException e) {
+        System.err.println("Exception while closing input file: ");
+        System.err.println(e);
+      }
+    }
+  }
+
+  /**
+   * Scans tuples and either inserts them into the graph
+   * or passes them as strings to a consumer (if no graph is given).
+   */
+  private class TupleScanner {
+    private final GraphData               graph;
+    private final GraphBuilder            builder;
+    /** Receiver of the tuples, if no graph is given. */
+    private final TupleConsumer           consumer;
+    /** Vertex names seen so far. */
+    private final NameTable<GraphVertex>  vertices = new NameTable<GraphVertex>();
+    /** Relation names seen so far. */
+    private final NameTable<String>       relNames = new NameTable<String>();
+    /** Relation names of parsed chunks, to share one String per name. */
+    private final Map<String, String>     chunkRelNames =
+                                                          new HashMap<String, String>();
+    private int                           lineNo   = 0;
+
+    private TupleScanner(GraphData pGraph, TupleConsumer pConsumer) {
+      graph = pGraph;
+      consumer = pConsumer;
+      builder = (pGraph == null) ? null : new GraphBuilder(pGraph, mVerbosity);
+    }
+
+    /**
+     * Scans the complete lines in pBuf[pStart, pLimit);
+     * the last line may be incomplete only if pLast.
+     * @return Number of bytes consumed.
+     */
+    private int scan(ByteBuffer pBuf, int pStart, int pLimit, boolean pLast) {
+      int lLimit = pLimit;
+      if (!pLast) {
+        // Only complete lines.
+        while (lLimit > pStart && pBuf.get(lLimit - 1) != '\n') {
+          --lLimit;
+        }
+      }
+      int lThreadNr = Runtime.getRuntime().availableProcessors();
+      if (graph != null && lThreadNr > 1 && lLimit - pStart >= PARALLEL_MIN) {
+        scanParallel(pBuf, pStart, lLimit, lThreadNr);
+        return lLimit - pStart;
+      }
+      BufferTokenizer lTok = new BufferTokenizer(pBuf, pStart, lLimit);
+      while (!lTok.atEnd()) {
+        ++lineNo;
+        if (lTok.nextToken() && lTok.firstChar() != '#') {
+          if (graph == null) {
+            collectTuple(lTok);
+          } else {
+            insertTuple(lTok);
+          }
+        }
+        lTok.nextLine();
+      }
+      return lLimit - pStart;
+    }
+
+    /**
+     * Splits pBuf[pStart, pLimit) into chunks at line breaks,
+     * parses the chunks concurrently, and inserts their edges in order.
+     */
+    private void scanParallel(ByteBuffer pBuf, int pStart, int pLimit,
+                              int pThreadNr) {
+      // Two chunks per thread, to balance the load.
+      int lChunkNr = 2 * pThreadNr;
+      ExecutorService lExecutor = Executors.newFixedThreadPool(pThreadNr);
+      List<Future<ChunkParser>> lResults = new ArrayList<Future<ChunkParser>>();
+      int lChunkStart = pStart;
+      for (int k = 1; k <= lChunkNr && lChunkStart < pLimit; ++k) {
+        int lChunkEnd = pStart + (int) ((long) (pLimit - pStart) * k / lChunkNr);
+        while (lChunkEnd < pLimit && pBuf.get(lChunkEnd - 1) != '\n') {
+          ++lChunkEnd;
+        }
+        if (lChunkEnd > lChunkStart) {
+          lResults.add(lExecutor.submit(new ChunkParser(pBuf, lChunkStart,
+              lChunkEnd)));
+        }
+        lChunkStart = lChunkEnd;
+      }
+      lExecutor.shutdown();
+      for (Future<ChunkParser> lResult : lResults) {
+        try {
+          insertChunk(lResult.get());
+        } catch (InterruptedException e) {
+          lExecutor.shutdownNow();
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException e) {
+          System.err.println("Runtime error: Exception while reading "
+                             + "a graph chunk after line " + lineNo + ":");
+          System.err.println(e.getCause());
+        }
+      }
+    }
+
+    /** Inserts the edges of a parsed chunk into the graph. */
+    private void insertChunk(ChunkParser pChunk) {
+      for (int lLine : pChunk.errorLines) {
+        System.err.println("Runtime error: Exception while reading "
+                           + "a graph edge, at line " + (lineNo + lLine) + ":");
+        System.err.println("Input graph file needs to follow the RSF format");
+        System.err.println("'<graph-name> <source-node> <target-node>'.");
+      }
+      // Local ids of the chunk to global objects, in order of appearance.
+      GraphVertex[] lVertices = new GraphVertex[pChunk.names.size()];
+      for (int i = 0; i < lVertices.length; ++i) {
+        lVertices[i] = builder.getVertex(pChunk.names.value(i));
+      }
+      String[] lRelNames = new String[pChunk.relNames.size()];
+      for (int i = 0; i < lRelNames.length; ++i) {
+        String lName = pChunk.relNames.value(i);
+        lRelNames[i] = chunkRelNames.get(lName);
+        if (lRelNames[i] == null) {
+          lRelNames[i] = lName;
+          chunkRelNames.put(lName, lName);
+        }
+      }
+      int lBadWeight = 0;
+      for (int k = 0; k < pChunk.edgeNr; ++k) {
+        String lRelName = lRelNames[pChunk.rels[k]];
+        float lWeight = pChunk.weights[k];
+        if (Float.isNaN(lWeight)) {
+          lWeight =
+                    builder.parseWeight(lRelName,
+                        pChunk.badWeights.get(lBadWeight),
+                        lineNo + pChunk.badWeightLines.get(lBadWeight));
+          ++lBadWeight;
+        }
+        builder.addEdge(lRelName, lVertices[pChunk.sources[k]],
+            lVertices[pChunk.targets[k]], lWeight);
+      }
+      lineNo += pChunk.lineNr;
+    }
+
+    /** Inserts the tuple at the current position into the graph. */
+    private void insertTuple(BufferTokenizer pTok) {
+      String lRelName = relNames.get(pTok);
+      if (lRelName == null) {
+        lRelName = pTok.string();
+        relNames.put(pTok, lRelName);
+      }
+      GraphVertex x = pTok.nextToken() ? vertex(pTok) : null;
+      GraphVertex y = pTok.nextToken() ? vertex(pTok) : null;
+      if (y == null) {
+        System.err.println("Runtime error: Exception while reading "
+                           + "a graph edge, at line " + lineNo + ":");
+        System.err.println("Input graph file needs to follow the RSF format");
+        System.err.println("'<graph-name> <source-node> <target-node>'.");
+        return;
+      }
+      float lWeight = 1.0f;
+      if (pTok.nextToken()) {
+        try {
+          lWeight = Math.abs(pTok.parseFloat());
+        } catch (NumberFormatException e) {
+          lWeight = builder.parseWeight(lRelName, pTok.string(), lineNo);
+        }
+      }
+      builder.addEdge(lRelName, x, y, lWeight);
+    }
+
+    /** Returns the vertex for the current token, creates it on first sight. */
+    private GraphVertex vertex(BufferTokenizer pTok) {
+      GraphVertex result = vertices.get(pTok);
+      if (result == null) {
+        result = builder.getVertex(pTok.string());
+        vertices.put(pTok, result);
+      }
+      return result;
+    }
+
+    /** Passes the tuple at the current position to the consumer. */
+    private void collectTuple(BufferTokenizer pTok) {
+      List<String> lTuple = new ArrayList<String>();
+      do {
+        lTuple.add(pTok.string());
+      } while (pTok.nextToken());
+      consumer.addTuple(lTuple);
+    }
+  }
+
+  /**
+   * Parses a chunk of complete lines into edge arrays,
+   * with vertex and relation names numbered locally
+   * in order of their first appearance in the chunk.
+   */
+  private static class ChunkParser implements Callable<ChunkParser> {
+    private final ByteBuffer        buf;
+    private final int               start;
+    private final int               limit;
+
+    /** Vertex names of the chunk, with their Strings. */
+    private final NameTable<String> names          = new NameTable<String>();
+    private final NameTable<String> relNames       = new NameTable<String>();
+    /** Edges: local relation, source and target ids, and weights
+     *  (NaN if the weight is not a plain float, see badWeights). */
+    private int[]                   rels           = new int[1024];
+    private int[]                   sources        = new int[1024];
+    private int[]                   targets        = new int[1024];
+    private float[]                 weights        = new float[1024];
+    private int                     edgeNr         = 0;
+    /** Number of lines of the chunk. */
+    private int                     lineNr         = 0;
+    /** Lines (relative to the chunk) with less than three fields. */
+    private final List<Integer>     errorLines     = new ArrayList<Integer>();
+    /** Weights that were not parsed, with their lines. */
+    private final List<String>      badWeights     = new ArrayList<String>();
+    private final List<Integer>     badWeightLines = new ArrayList<Integer>();
+
+    private ChunkParser(ByteBuffer pBuf, int pStart, int pLimit) {
+      buf = pBuf;
+      start = pStart;
+      limit = pLimit;
+    }
+
+    @Override
+    public ChunkParser call() {
+      BufferTokenizer lTok = new BufferTokenizer(buf, start, limit);
+      while (!lTok.atEnd()) {
+        ++lineNr;
+        if (lTok.nextToken() && lTok.firstChar() != '#') {
+          parseTuple(lTok);
+        }
+        lTok.nextLine();
+      }
+      return this;
+    }
+
+    private void parseTuple(BufferTokenizer pTok) {
+      int lRel = id(relNames, pTok);
+      int x = pTok.nextToken() ? id(names, pTok) : -1;
+      int y = pTok.nextToken() ? id(names, pTok) : -1;
+      if (y < 0) {
+        errorLines.add(lineNr);
+        return;
+      }
+      float lWeight = 1.0f;
+      if (pTok.nextToken()) {
+        try {
+          lWeight = Math.abs(pTok.parseFloat());
+        } catch (NumberFormatException e) {
+          lWeight = Float.NaN;
+          badWeights.add(pTok.string());
+          badWeightLines.add(lineNr);
+        }
+      }
+      if (edgeNr == rels.length) {
+        int lNewLength = 2 * edgeNr;
+        rels = Arrays.copyOf(rels, lNewLength);
+        sources = Arrays.copyOf(sources, lNewLength);
+        targets = Arrays.copyOf(targets, lNewLength);
+        weights = Arrays.copyOf(weights, lNewLength);
+      }
+      rels[edgeNr] = lRel;
+      sources[edgeNr] = x;
+      targets[edgeNr] = y;
+      weights[edgeNr] = lWeight;
+      ++edgeNr;
+    }
+
+    private static int id(NameTable<String> pTable, BufferTokenizer pTok) {
+      int result = pTable.find(pTok);
+      if (result < 0) {
+        result = pTable.put(pTok, pTok.string());
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Hash table from names, given as current token of a tokenizer
+   * (i.e., as bytes in the input buffer), to values.
+   * Each name is copied once, when it is put into the table.
+   */
+  private static class NameTable<T> {
+    /** Entry index + 1, or 0 for free slots. */
+    private int[]          slots  = new int[1024];
+    private int[]          hashes = new int[512];
+    private byte[][]       names  = new byte[512][];
+    private List<T>        values = new ArrayList<T>();
+
+    private T get(BufferTokenizer pTok) {
+      int lEntry = find(pTok);
+      return (lEntry < 0) ? null : values.get(lEntry);
+    }
+
+    /** Returns the index of the current token (in order of insertion),
+     *  or -1 if it is not contained. */
+    private int find(BufferTokenizer pTok) {
+      int lHash = pTok.hash();
+      int lMask = slots.length - 1;
+      for (int i = spread(lHash) & lMask; slots[i] != 0; i = (i + 1) & lMask) {
+        int lEntry = slots[i] - 1;
+        if (hashes[lEntry] == lHash && pTok.equalsBytes(names[lEntry])) {
+          return lEntry;
+        }
+      }
+      return -1;
+    }
+
+    private int size() {
+      return values.size();
+    }
+
+    private T value(int pIndex) {
+      return values.get(pIndex);
+    }
+
+    /** Adds the current token; it must not be contained yet.
+     *  @return Index of the new entry. */
+    private int put(BufferTokenizer pTok, T pValue) {
+      int lEntry = values.size();
+      if (lEntry == hashes.length) {
+        hashes = Arrays.copyOf(hashes, 2 * lEntry);
+        names = Arrays.copyOf(names, 2 * lEntry);
+      }
+      hashes[lEntry] = pTok.hash();
+      names[lEntry] = pTok.bytes();
+      values.add(pValue);
+      if (2 * values.size() > slots.length) {
+        slots = new int[2 * slots.length];
+        for (int k = 0; k < values.size(); ++k) {
+          insert(k);
+        }
+      } else {
+        insert(lEntry);
+      }
+      return lEntry;
+    }
+
+    private void insert(int pEntry) {
+      int lMask = slots.length - 1;
+      int i = spread(hashes[pEntry]) & lMask;
+      while (slots[i] != 0) {
+        i = (i + 1) & lMask;
+      }
+      slots[i] = pEntry + 1;
+    }
+
+    private static int spread(int pHash) {
+      int h = pHash * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
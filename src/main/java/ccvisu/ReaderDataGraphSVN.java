@@ -28,80 +28,44 @@
 
 package ccvisu;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import ccvisu.Options.Verbosity;
 
 /*****************************************************************
- * Reader for SVN log files. 
- * Extracts the co-change graph from the SVN log info.
+ * Reader for SVN log files (<code>svn log -v --xml</code>),
+ * optionally gzip-compressed.
+ * Extracts the co-change graph from the SVN log info:
+ * one CO-CHANGE tuple (revision, path) per changed path.
+ * The log is read with a streaming (StAX) parser; the tuples are
+ * inserted into the graph while reading, so the memory
+ * does not grow with the length of the log, only with the number
+ * of revisions and paths.
  * @version  $Revision: 1.1 $
  * @author   Dirk Beyer
  *****************************************************************/
 public class ReaderDataGraphSVN extends ReaderDataGraph {
 
-  public class SVNXmlFileHandler extends DefaultHandler {
+  /** Name of the relation between revisions and paths. */
+  private static final String REL_NAME = "CO-CHANGE";
 
-    private String   mCurrentRevision = "";
-    private String   mCurrentPath     = "";
-    private Relation mRelations;
-
-    public SVNXmlFileHandler(Relation pRelations) {
-      super();
-      mRelations = pRelations;
-    }
-
-    @Override
-    public void startElement(String uri, String localName, String qName,
-                             Attributes attrs) throws SAXException {
-      // LOGENTRY
-      if (qName.toLowerCase().equals("logentry")) {
-        assert (attrs != null);
-        mCurrentRevision = attrs.getValue("revision");
-        assert (mCurrentRevision != null);
-      }
-      // PATH
-      else if (qName.toLowerCase().equals("path")) {
-        // Reset path.
-        mCurrentPath = "";
-      }
-    }
-
-    @Override
-    public void endElement(String uri, String localName, String qName)
-                                                                      throws SAXException {
-      if (qName.toLowerCase().equals("path")) {
-        if (mCurrentRevision.equals("")) {
-          System.err.println("Runtime Error: No path found for revision "
-                             + mCurrentRevision + ".");
-          return;
-        }
-        List<String> lTuple = new ArrayList<String>();
-        lTuple.add("CO-CHANGE");
-        lTuple.add(mCurrentRevision);
-        lTuple.add('"' + mCurrentPath + '"');
-        mRelations.add(lTuple);
-      }
-    }
-
-    @Override
-    public void characters(char[] ch, int start, int len) throws SAXException {
-      String lName = new String(ch, start, len);
-      if (lName.trim().equals("")) { return; }
-      // Concatenate the existing and the new string.
-      mCurrentPath += lName;
-    }
-  }
+  /** Input file, or null if the input is given as stream reader. */
+  private final File          mFile;
 
   /**
    * Constructor.
@@ -109,6 +73,30 @@ public class ReaderDataGraphSVN extends ReaderDataGraph {
    */
   public ReaderDataGraphSVN(BufferedReader in, Verbosity pVerbosity) {
     super(in, pVerbosity);
+    mFile = null;
+  }
+
+  /**
+   * Constructor for reading a file, which may be gzip-compressed.
+   * @param pFile  Input file.
+   */
+  public ReaderDataGraphSVN(File pFile, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = pFile;
+  }
+
+  /*****************************************************************
+   * Reads the graph directly into the graph representation,
+   * unless the graph keeps the list of tuples <code>mTuples</code>.
+   * @param pGraph  <code>GraphData</code> object to store the graph data in.
+   *****************************************************************/
+  @Override
+  public void read(GraphData pGraph) {
+    if (pGraph.storeTuples) {
+      super.read(pGraph);
+      return;
+    }
+    parse(new GraphBuilder(pGraph, mVerbosity), null);
   }
 
   /*****************************************************************
@@ -122,30 +110,119 @@ public class ReaderDataGraphSVN extends ReaderDataGraph {
   public Relation readTuples() {
     // This is where we store the relations.
     Relation lRelations = new Relation();
+    readTuples(lRelations);
+    return lRelations;
+  }
+
+  /*****************************************************************
+   * Reads the tuples of the input, for clients that need the strings
+   * (e.g., filters and RSF output).
+   * Equal paths share one String object.
+   * @param pConsumer  Receiver of the tuples.
+   *****************************************************************/
+  @Override
+  public void readTuples(TupleConsumer pConsumer) {
+    parse(null, pConsumer);
+  }
 
-    XMLReader xmlReader = null;
-    SVNXmlFileHandler svnFileHandler = null;
+  /**
+   * Parses the log, and either inserts the edges into the graph
+   * (if pBuilder is given) or passes them as tuples to pConsumer.
+   */
+  private void parse(GraphBuilder pBuilder, TupleConsumer pConsumer) {
+    InputStream lStream = null;
+    XMLStreamReader lReader = null;
     try {
-      // initialize xmlReader
-      xmlReader = XMLReaderFactory.createXMLReader();
-
-      // update xmlReader for SVN-file parsing
-      svnFileHandler = new SVNXmlFileHandler(lRelations);
-      xmlReader.setContentHandler(svnFileHandler);
-      xmlReader.setErrorHandler(svnFileHandler);
-
-      // parse SVN log file
-      xmlReader.parse(new InputSource(mIn));
-    } catch (SAXException e) {
-      System.err.println("Runtime error: A SAX-error occured.");
+      XMLInputFactory lFactory = XMLInputFactory.newInstance();
+      lFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+      lFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+      if (mFile != null) {
+        lStream = openFile(mFile);
+        lReader = lFactory.createXMLStreamReader(lStream);
+      } else {
+        lReader = lFactory.createXMLStreamReader(mIn);
+      }
+
+      // Paths to their (unique) String, for tuples.
+      Map<String, String> lPaths = new HashMap<String, String>();
+      String lRevision = "";
+      GraphVertex lRevisionVertex = null;
+      while (lReader.hasNext()) {
+        if (lReader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String lElement = lReader.getLocalName();
+        // LOGENTRY
+        if (lElement.equals("logentry")) {
+          lRevision = lReader.getAttributeValue(null, "revision");
+          assert (lRevision != null);
+          lRevisionVertex = null;
+        }
+        // PATH
+        else if (lElement.equals("path")) {
+          String lPath = lReader.getElementText();
+          if (lRevision.equals("")) {
+            System.err.println("Runtime Error: No revision found for path "
+                               + lPath + ".");
+            continue;
+          }
+          if (pBuilder != null) {
+            if (lRevisionVertex == null) {
+              lRevisionVertex = pBuilder.getVertex(lRevision);
+            }
+            pBuilder.addEdge(REL_NAME, lRevisionVertex, pBuilder
+                .getVertex(lPath), 1.0f);
+          } else {
+            String lShared = lPaths.get(lPath);
+            if (lShared == null) {
+              lPaths.put(lPath, lPath);
+              lShared = lPath;
+            }
+            List<String> lTuple = new ArrayList<String>(3);
+            lTuple.add(REL_NAME);
+            lTuple.add(lRevision);
+            lTuple.add(lShared);
+            pConsumer.addTuple(lTuple);
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      System.err.println("Runtime error: An XML-error occured.");
       System.err.println(e.getMessage());
     } catch (IOException e) {
       System.err.println("Runtime error: Error while opening a file.");
       System.err.println(e.getMessage());
       System.exit(1);
+    } finally {
+      try {
+        if (lReader != null) {
+          lReader.close();
+        }
+        if (lStream != null) {
+          lStream.close();
+        }
+      } catch (Exception e) {
+        System.err.println("Exception while closing input file: ");
+        System.err.println(e);
+      }
     }
+  }
 
-    return lRelations;
+  /**
+   * Opens the file, with decompression if it starts
+   * with the gzip magic number.
+   */
+  private static InputStream openFile(File pFile) throws IOException {
+    InputStream result =
+                         new BufferedInputStream(new FileInputStream(pFile),
+                             1 << 16);
+    result.mark(2);
+    int lMagic = result.read() | (result.read() << 8);
+    result.reset();
+    if (lMagic == GZIPInputStream.GZIP_MAGIC) {
+      result = new GZIPInputStream(result, 1 << 16);
+    }
+    return result;
   }
 
 };
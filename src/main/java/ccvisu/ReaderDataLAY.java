@@ -28,7 +28,6 @@
 
 package ccvisu;
 
-import java.awt.Color;
 import java.io.BufferedReader;
 import java.util.StringTokenizer;
 
@@ -55,6 +54,7 @@ public class ReaderDataLAY extends ReaderData {
    *****************************************************************/
   @Override
   public void read(GraphData graph) {
+    int lFirstId = graph.vertices.size();
     try {
       String lLine;
       while ((lLine = mIn.readLine()) != null) {
@@ -75,7 +75,7 @@ public class ReaderDataLAY extends ReaderData {
           lNewVertex.degree = Float.parseFloat(st.nextToken());
           lNewVertex.name = readEntry(st);
           if (st.hasMoreTokens()) {
-            lNewVertex.color = new Color(Integer.parseInt(st.nextToken()));
+            lNewVertex.color = Colors.get(Integer.parseInt(st.nextToken()));
           }
           if (st.hasMoreTokens()) {
             lNewVertex.showName =
@@ -90,7 +90,6 @@ public class ReaderDataLAY extends ReaderData {
           lNewVertex.id = graph.vertices.size();
           graph.vertices.add(lNewVertex);
           graph.nameToVertex.put(lNewVertex.name, lNewVertex);
-          CCVisu.marker.mark(lNewVertex);
         }
       }
     } catch (Exception e) {
@@ -98,6 +97,8 @@ public class ReaderDataLAY extends ReaderData {
                          + "the layout (readLayoutText).");
       System.err.println(e);
     }
+    CCVisu.marker.markAll(graph.vertices.subList(lFirstId,
+        graph.vertices.size()));
     return;
   }
 };
@@ -0,0 +1,180 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Reader for layouts in text format LAY that scans the raw bytes
+ * of the input (a memory-mapped file, or a given buffer),
+ * with the number parsing of <code>BufferTokenizer</code>
+ * instead of <code>StringTokenizer</code> and <code>Float.parseFloat</code>.
+ * Vertices of the same color share one Color object.
+ * Malformed lines are reported and skipped.
+ *****************************************************************/
+public class ReaderDataLAYMapped extends ReaderData {
+
+  /** Input file, or null if the input is given as buffer. */
+  private final File       mFile;
+  /** Input buffer, or null if the input is given as file. */
+  private final ByteBuffer mBuffer;
+
+  /**
+   * Constructor for reading a file.
+   * @param pFile  Input file.
+   */
+  public ReaderDataLAYMapped(File pFile, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = pFile;
+    mBuffer = null;
+  }
+
+  /**
+   * Constructor for reading from a buffer (between position and limit).
+   * @param pBuffer  Input data in UTF-8.
+   */
+  public ReaderDataLAYMapped(ByteBuffer pBuffer, Verbosity pVerbosity) {
+    super(null, pVerbosity);
+    mFile = null;
+    mBuffer = pBuffer;
+  }
+
+  /*****************************************************************
+   * Reads the layout data, in text format LAY.
+   * @param pGraph  <code>GraphData</code> object to store the layout data in.
+   *****************************************************************/
+  @Override
+  public void read(GraphData pGraph) {
+    if (mBuffer != null) {
+      read(mBuffer, mBuffer.position(), mBuffer.limit(), pGraph);
+      return;
+    }
+    FileInputStream lIn = null;
+    try {
+      lIn = new FileInputStream(mFile);
+      FileChannel lChannel = lIn.getChannel();
+      if (lChannel.size() > Integer.MAX_VALUE) {
+        System.err.println("Runtime error: Layout file '" + mFile
+                           + "' is too large.");
+        return;
+      }
+      int lSize = (int) lChannel.size();
+      read(lChannel.map(FileChannel.MapMode.READ_ONLY, 0, lSize), 0, lSize,
+          pGraph);
+    } catch (IOException e) {
+      System.err.println("Runtime error: Input Exception while reading '"
+                         + mFile + "':");
+      System.err.println(e);
+    } finally {
+      try {
+        if (lIn != null) {
+          lIn.close();
+        }
+      } catch (IOException e) {
+        System.err.println("Exception while closing input file: ");
+        System.err.println(e);
+      }
+    }
+  }
+
+  private void read(ByteBuffer pBuf, int pStart, int pLimit, GraphData pGraph) {
+    BufferTokenizer lTok = new BufferTokenizer(pBuf, pStart, pLimit);
+    int lFirstId = pGraph.vertices.size();
+    int lLineNo = 0;
+    while (!lTok.atEnd()) {
+      ++lLineNo;
+      if (lTok.nextToken() && lTok.firstChar() != '#') {
+        try {
+          readVertex(lTok, pGraph);
+        } catch (RuntimeException e) {
+          // Number format exception or missing field.
+          System.err.println("Runtime error: Exception while reading "
+                             + "the layout, at line " + lLineNo + ":");
+          System.err.println(e);
+        }
+      }
+      lTok.nextLine();
+    }
+    CCVisu.marker.markAll(pGraph.vertices.subList(lFirstId,
+        pGraph.vertices.size()));
+  }
+
+  /**
+   * Reads the vertex of the current line; the first token is current.
+   */
+  private void readVertex(BufferTokenizer pTok, GraphData pGraph) {
+    if (pTok.equalsAscii("LAY")) {
+      // OK, this is the default.
+      nextField(pTok);
+    } else {
+      // To handle old LAY files without the 'LAY' as relation name.
+      // The current token is actually the x coordinate.
+    }
+    GraphVertex lNewVertex = new GraphVertex();
+    lNewVertex.pos.x = pTok.parseFloat();
+    nextField(pTok);
+    lNewVertex.pos.y = pTok.parseFloat();
+    nextField(pTok);
+    lNewVertex.pos.z = pTok.parseFloat();
+    nextField(pTok);
+    lNewVertex.degree = pTok.parseFloat();
+    nextField(pTok);
+    lNewVertex.name = pTok.string();
+    if (pTok.nextToken()) {
+      lNewVertex.color = Colors.get(pTok.parseInt());
+      if (pTok.nextToken()) {
+        lNewVertex.showName =
+                              (pTok.length() == 4)
+                                  && Boolean.valueOf(pTok.string()).booleanValue();
+      }
+    }
+    // Add vertex-to-number entry for vertex.
+    if (pGraph.nameToVertex.containsKey(lNewVertex.name)) {
+      System.err.println("Input error: Vertex '" + lNewVertex.name
+                         + "' exists twice in layout.");
+    }
+    lNewVertex.id = pGraph.vertices.size();
+    pGraph.vertices.add(lNewVertex);
+    pGraph.nameToVertex.put(lNewVertex.name, lNewVertex);
+  }
+
+  /** Moves to the next field of the line, which must exist. */
+  private static void nextField(BufferTokenizer pTok) {
+    if (!pTok.nextToken()) {
+      throw new NoSuchElementException("Missing field.");
+    }
+  }
+}
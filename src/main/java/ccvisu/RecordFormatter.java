@@ -0,0 +1,62 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+/*****************************************************************
+ * Graphics writer whose records are independent pieces of text,
+ * such that <code>WriterDataGraphics</code> can format consecutive
+ * records in chunks by a pool of threads.
+ * The format methods are called concurrently and must be thread-safe.
+ *****************************************************************/
+public interface RecordFormatter {
+
+  /**
+   * Returns true if the records can be formatted in parallel
+   * with the current options, i.e., the text of a record
+   * depends only on the arguments of the format methods.
+   */
+  public boolean formatsInParallel();
+
+  /**
+   * Appends the text of a vertex (as <code>writeVertex</code> writes it)
+   * to pOut.
+   */
+  public void formatVertex(StringBuilder pOut, GraphVertex curVertex,
+                           int xPos, int yPos, int zPos, int radius);
+
+  /**
+   * Appends the text of an edge (as <code>writeEdge</code> writes it)
+   * to pOut.
+   * @param pEdgeNr  Position of the edge among the edges drawn
+   *                 by <code>writeGraphicsLayout</code>.
+   */
+  public void formatEdge(StringBuilder pOut, int pEdgeNr, GraphEdge edge,
+                         int xPos1, int yPos1, int zPos1,
+                         int xPos2, int yPos2, int zPos2);
+}
@@ -30,10 +30,9 @@ package ccvisu;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-public class Relation extends ArrayList<List<String>> {
+public class Relation extends ArrayList<List<String>> implements
+    TupleConsumer {
   private static final long serialVersionUID = 20100124113500L;
 
   Relation() {
@@ -44,29 +43,8 @@ public class Relation extends ArrayList<List<String>> {
     super(pRelation);
   }
 
-  public void addTuple(String pRelName, String pSourceName, String pTargetName,
-                       Set<String> pStoredTuples) {
-    assert (pSourceName != null && pTargetName != null);
-    List<String> newTuple = new ArrayList<String>();
-    newTuple.add(pRelName);
-    newTuple.add(pSourceName);
-    newTuple.add(pTargetName);
-    // We don't need reflexive edges.
-    if (!pSourceName.equals(pTargetName)) {
-      boolean isNew =
-                      pStoredTuples.add(pRelName + '\t' + pSourceName + '\t'
-                                        + pTargetName);
-      if (isNew) {
-        this.add(newTuple);
-      }
-    }
-  }
-
-  public void addTuple(String pRelName, String pSourceId, String pTargetId,
-                       Map<String, String> pNameMap, Set<String> pStoredTuples) {
-    assert (pSourceId != null && pTargetId != null);
-    String lSourceName = pNameMap.get(pSourceId);
-    String lTargetName = pNameMap.get(pTargetId);
-    addTuple(pRelName, lSourceName, lTargetName, pStoredTuples);
+  @Override
+  public void addTuple(List<String> pTuple) {
+    this.add(pTuple);
   }
 }
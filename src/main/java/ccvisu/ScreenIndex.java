@@ -0,0 +1,351 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*****************************************************************
+ * Spatial index of the vertices and edges drawn on the screen,
+ * for finding the objects at a mouse position.
+ * A vertex occupies the bounding square of its disc, an edge
+ * (or a bundle of edges drawn as one line)
+ * the pixels of its line (as rasterized by Bresenham's algorithm).
+ * The index is a uniform grid of square cells, in compressed row
+ * format: the objects that touch cell c are
+ * <code>cellItems[cellStart[c]]</code> ...
+ * <code>cellItems[cellStart[c+1]-1]</code>. The cell size is chosen
+ * such that there are about as many cells as objects,
+ * so the memory is linear in the number of objects,
+ * not in the size of the canvas.
+ * Objects are added while drawing; <code>build</code>
+ * makes the index ready for queries (no more objects can be added).
+ * The display also uses the index in the plane of the layout
+ * (scaled to integer coordinates), for finding the objects in view.
+ *****************************************************************/
+public class ScreenIndex {
+
+  private static final int MIN_CELL_SIZE = 8;
+
+  private final int        cellSize;
+  private final int        cols;
+  private final int        rows;
+
+  /** Objects (GraphVertex, GraphEdge, or GraphEdge[] for a bundle)
+   *  with their screen coordinates:
+   *  for a vertex the bounding square (x0, y0, x1, y1), for an edge
+   *  the end points, ordered such that the line runs along the
+   *  major axis (x, or y if steep) from the first to the second. */
+  private final List<Object> items     = new ArrayList<Object>();
+  private int[]              coords    = new int[64];
+  private boolean[]          steep     = new boolean[16];
+
+  /** Pairs (cell, object) collected while adding objects. */
+  private int[]              pairCells = new int[64];
+  private int[]              pairItems = new int[64];
+  private int                pairNr    = 0;
+
+  /** The grid, after <code>build</code>. */
+  private int[]              cellStart = null;
+  private int[]              cellItems = null;
+
+  /**
+   * @param pWidth    Width of the canvas.
+   * @param pHeight   Height of the canvas.
+   * @param pItemNr   Expected number of objects.
+   */
+  public ScreenIndex(int pWidth, int pHeight, int pItemNr) {
+    long lArea = (long) Math.max(pWidth, 1) * Math.max(pHeight, 1);
+    cellSize =
+               Math.max(MIN_CELL_SIZE, (int) Math.ceil(Math.sqrt((double) lArea
+                                                                 / Math.max(pItemNr, 1))));
+    cols = Math.max(pWidth, 1) / cellSize + 1;
+    rows = Math.max(pHeight, 1) / cellSize + 1;
+  }
+
+  /**
+   * Adds a vertex drawn as disc at (pX, pY) with radius pRadius.
+   */
+  public void addVertex(GraphVertex pVertex, int pX, int pY, int pRadius) {
+    int lItem = addItem(pVertex, pX - pRadius, pY - pRadius, pX + pRadius,
+        pY + pRadius, false);
+    int lCol1 = Math.min(cell(pX + pRadius), cols - 1);
+    int lRow1 = Math.min(cell(pY + pRadius), rows - 1);
+    for (int lCol = Math.max(cell(pX - pRadius), 0); lCol <= lCol1; ++lCol) {
+      for (int lRow = Math.max(cell(pY - pRadius), 0); lRow <= lRow1; ++lRow) {
+        addPair(lRow * cols + lCol, lItem);
+      }
+    }
+  }
+
+  /**
+   * Adds an edge drawn as line from (pX1, pY1) to (pX2, pY2).
+   */
+  public void addEdge(GraphEdge pEdge, int pX1, int pY1, int pX2, int pY2) {
+    addLine(pEdge, pX1, pY1, pX2, pY2);
+  }
+
+  /**
+   * Adds a bundle of edges drawn as one line from (pX1, pY1) to (pX2, pY2).
+   */
+  public void addEdges(GraphEdge[] pEdges, int pX1, int pY1, int pX2, int pY2) {
+    addLine(pEdges, pX1, pY1, pX2, pY2);
+  }
+
+  private void addLine(Object pObject, int pX1, int pY1, int pX2, int pY2) {
+    // Normalize as Bresenham's algorithm does: major axis x,
+    //   from the lower to the higher coordinate.
+    boolean lSteep = Math.abs(pY2 - pY1) > Math.abs(pX2 - pX1);
+    int x1 = lSteep ? pY1 : pX1;
+    int y1 = lSteep ? pX1 : pY1;
+    int x2 = lSteep ? pY2 : pX2;
+    int y2 = lSteep ? pX2 : pY2;
+    if (x1 > x2) {
+      int lTmp = x1;
+      x1 = x2;
+      x2 = lTmp;
+      lTmp = y1;
+      y1 = y2;
+      y2 = lTmp;
+    }
+    int lItem = addItem(pObject, x1, y1, x2, y2, lSteep);
+    if (x1 == x2) {
+      // Both end points at the same pixel.
+      if (x1 >= 0 && y1 >= 0 && cell(x1) < cols && cell(y1) < rows) {
+        addPair(cell(y1) * cols + cell(x1), lItem);
+      }
+      return;
+    }
+
+    // Cells along the line, one cell column (of the major axis) at a time.
+    int lMajorCells = lSteep ? rows : cols;
+    int lMinorCells = lSteep ? cols : rows;
+    int lFirst = Math.max(cell(x1), 0);
+    int lLast = Math.min(cell(x2), lMajorCells - 1);
+    for (int lMajor = lFirst; lMajor <= lLast; ++lMajor) {
+      int lStart = Math.max(x1, lMajor * cellSize);
+      int lEnd = Math.min(x2, (lMajor + 1) * cellSize - 1);
+      int lMinor0 = cell(minor(x1, y1, x2, y2, lStart));
+      int lMinor1 = cell(minor(x1, y1, x2, y2, lEnd));
+      int lFrom = Math.max(Math.min(lMinor0, lMinor1), 0);
+      int lTo = Math.min(Math.max(lMinor0, lMinor1), lMinorCells - 1);
+      for (int lMinor = lFrom; lMinor <= lTo; ++lMinor) {
+        addPair(lSteep ? lMajor * cols + lMinor : lMinor * cols + lMajor, lItem);
+      }
+    }
+  }
+
+  /**
+   * Sorts the collected objects into the cells (counting sort).
+   */
+  public void build() {
+    cellStart = new int[cols * rows + 1];
+    for (int k = 0; k < pairNr; ++k) {
+      ++cellStart[pairCells[k] + 1];
+    }
+    for (int c = 0; c < cols * rows; ++c) {
+      cellStart[c + 1] += cellStart[c];
+    }
+    cellItems = new int[pairNr];
+    int[] lFill = Arrays.copyOf(cellStart, cols * rows);
+    for (int k = 0; k < pairNr; ++k) {
+      cellItems[lFill[pairCells[k]]++] = pairItems[k];
+    }
+    // Release the pairs.
+    pairCells = null;
+    pairItems = null;
+  }
+
+  /**
+   * Returns the vertices whose bounding square contains the point (pX, pY).
+   */
+  public List<GraphVertex> getVertices(int pX, int pY) {
+    List<GraphVertex> result = new ArrayList<GraphVertex>();
+    if (pX < 0 || pY < 0 || cell(pX) >= cols || cell(pY) >= rows) { return result; }
+    int lCell = cell(pY) * cols + cell(pX);
+    for (int k = cellStart[lCell]; k < cellStart[lCell + 1]; ++k) {
+      int lItem = cellItems[k];
+      Object lObject = items.get(lItem);
+      if (lObject instanceof GraphVertex
+          && contains(lItem, pX, pY, pX, pY)) {
+        result.add((GraphVertex) lObject);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the edges that have a pixel at (pX, pY).
+   */
+  public List<GraphEdge> getEdges(int pX, int pY) {
+    List<GraphEdge> result = new ArrayList<GraphEdge>();
+    if (pX < 0 || pY < 0 || cell(pX) >= cols || cell(pY) >= rows) { return result; }
+    int lCell = cell(pY) * cols + cell(pX);
+    for (int k = cellStart[lCell]; k < cellStart[lCell + 1]; ++k) {
+      int lItem = cellItems[k];
+      Object lObject = items.get(lItem);
+      if (lObject instanceof GraphEdge || lObject instanceof GraphEdge[]) {
+        int lBase = 4 * lItem;
+        int x = steep[lItem] ? pY : pX;
+        int y = steep[lItem] ? pX : pY;
+        boolean lPoint = (coords[lBase] == coords[lBase + 2]);
+        if (x >= coords[lBase] && x <= coords[lBase + 2]
+            && y == (lPoint ? coords[lBase + 1] : minor(coords[lBase],
+                coords[lBase + 1], coords[lBase + 2], coords[lBase + 3], x))) {
+          if (lObject instanceof GraphEdge) {
+            result.add((GraphEdge) lObject);
+          } else {
+            result.addAll(Arrays.asList((GraphEdge[]) lObject));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the vertices whose bounding square intersects the rectangle
+   * from (pX0, pY0) to (pX1, pY1) (inclusive), each vertex once,
+   * in the order in which they were added.
+   */
+  public List<GraphVertex> getVertices(int pX0, int pY0, int pX1, int pY1) {
+    List<GraphVertex> result = new ArrayList<GraphVertex>();
+    for (int lItem : getItems(pX0, pY0, pX1, pY1)) {
+      Object lObject = items.get(lItem);
+      if (lObject instanceof GraphVertex
+          && contains(lItem, pX0, pY0, pX1, pY1)) {
+        result.add((GraphVertex) lObject);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the edges that pass through a cell that intersects
+   * the rectangle from (pX0, pY0) to (pX1, pY1) (inclusive),
+   * each edge once, in the order in which they were added.
+   * The result may contain edges that only pass near the rectangle.
+   */
+  public List<GraphEdge> getEdges(int pX0, int pY0, int pX1, int pY1) {
+    List<GraphEdge> result = new ArrayList<GraphEdge>();
+    for (int lItem : getItems(pX0, pY0, pX1, pY1)) {
+      Object lObject = items.get(lItem);
+      if (lObject instanceof GraphEdge) {
+        result.add((GraphEdge) lObject);
+      } else if (lObject instanceof GraphEdge[]) {
+        result.addAll(Arrays.asList((GraphEdge[]) lObject));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the (sorted) numbers of the objects in the cells
+   * that intersect the rectangle from (pX0, pY0) to (pX1, pY1).
+   */
+  private int[] getItems(int pX0, int pY0, int pX1, int pY1) {
+    int[] lItems = new int[16];
+    int lNr = 0;
+    int lCol1 = Math.min(cell(pX1), cols - 1);
+    int lRow1 = Math.min(cell(pY1), rows - 1);
+    for (int lRow = Math.max(cell(pY0), 0); lRow <= lRow1; ++lRow) {
+      for (int lCol = Math.max(cell(pX0), 0); lCol <= lCol1; ++lCol) {
+        int lCell = lRow * cols + lCol;
+        int lLength = cellStart[lCell + 1] - cellStart[lCell];
+        if (lNr + lLength > lItems.length) {
+          lItems = Arrays.copyOf(lItems, Math.max(2 * lItems.length, lNr + lLength));
+        }
+        System.arraycopy(cellItems, cellStart[lCell], lItems, lNr, lLength);
+        lNr += lLength;
+      }
+    }
+    // Remove the duplicates (objects in several cells).
+    Arrays.sort(lItems, 0, lNr);
+    int lUnique = 0;
+    for (int k = 0; k < lNr; ++k) {
+      if (lUnique == 0 || lItems[k] != lItems[lUnique - 1]) {
+        lItems[lUnique++] = lItems[k];
+      }
+    }
+    return Arrays.copyOf(lItems, lUnique);
+  }
+
+  /** Returns true if the bounding square of the vertex lItem
+   *  intersects the rectangle from (pX0, pY0) to (pX1, pY1). */
+  private boolean contains(int pItem, int pX0, int pY0, int pX1, int pY1) {
+    int lBase = 4 * pItem;
+    return coords[lBase] <= pX1 && pX0 <= coords[lBase + 2]
+           && coords[lBase + 1] <= pY1 && pY0 <= coords[lBase + 3];
+  }
+
+  /**
+   * Returns the minor coordinate of the pixel at major coordinate x
+   * of the line from (x1, y1) to (x2, y2), with x1 < x2 and
+   * |y2 - y1| <= x2 - x1: Bresenham's algorithm steps to the
+   * next minor coordinate when the accumulated error reaches 0.5.
+   */
+  private static int minor(int x1, int y1, int x2, int y2, int x) {
+    long lDeltaX = x2 - x1;
+    long lDeltaY = Math.abs(y2 - y1);
+    int lSteps = (int) ((2 * (x - x1) * lDeltaY + lDeltaX) / (2 * lDeltaX));
+    return (y1 < y2) ? y1 + lSteps : y1 - lSteps;
+  }
+
+  /** Returns the cell index of a screen coordinate (floor division). */
+  private int cell(int pCoord) {
+    return (pCoord >= 0) ? pCoord / cellSize : -((cellSize - 1 - pCoord) / cellSize);
+  }
+
+  private int addItem(Object pObject, int x0, int y0, int x1, int y1,
+                      boolean pSteep) {
+    int lItem = items.size();
+    items.add(pObject);
+    if (4 * lItem + 4 > coords.length) {
+      coords = Arrays.copyOf(coords, 2 * coords.length);
+      steep = Arrays.copyOf(steep, 2 * steep.length);
+    }
+    coords[4 * lItem] = x0;
+    coords[4 * lItem + 1] = y0;
+    coords[4 * lItem + 2] = x1;
+    coords[4 * lItem + 3] = y1;
+    steep[lItem] = pSteep;
+    return lItem;
+  }
+
+  private void addPair(int pCell, int pItem) {
+    if (pairNr == pairCells.length) {
+      pairCells = Arrays.copyOf(pairCells, 2 * pairNr);
+      pairItems = Arrays.copyOf(pairItems, 2 * pairNr);
+    }
+    pairCells[pairNr] = pCell;
+    pairItems[pairNr] = pItem;
+    ++pairNr;
+  }
+}
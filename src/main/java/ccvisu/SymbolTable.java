@@ -0,0 +1,72 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*****************************************************************
+ * Strings numbered in the order of their first occurrence.
+ * Equal strings get the same number (and share one String object),
+ * so that tables can store ints and compare them with <code>==</code>.
+ *****************************************************************/
+public class SymbolTable {
+
+  private final Map<String, Integer> index  = new HashMap<String, Integer>();
+  private final List<String>         values = new ArrayList<String>();
+
+  /**
+   * Returns the number of pString; numbers it if it is new.
+   */
+  public int intern(String pString) {
+    Integer result = index.get(pString);
+    if (result == null) {
+      result = values.size();
+      index.put(pString, result);
+      values.add(pString);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the string with number pSymbol.
+   */
+  public String get(int pSymbol) {
+    return values.get(pSymbol);
+  }
+
+  /**
+   * Returns the number of strings.
+   */
+  public int size() {
+    return values.size();
+  }
+}
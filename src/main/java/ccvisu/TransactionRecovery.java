@@ -0,0 +1,285 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.util.Arrays;
+
+import ccvisu.Options.Verbosity;
+
+/*****************************************************************
+ * Recovers change transactions from single-file revisions
+ * (e.g., of a CVS log): revisions by the same user with the same
+ * log message belong to the same transaction if their times
+ * are within the time window, measured from the first revision
+ * of the transaction (fixed window) or from the previous revision
+ * (sliding window).
+ * The revisions are stored in primitive arrays, with users,
+ * log messages, and files numbered by symbol tables. Recovery sorts
+ * the revisions once by (user, message, time, file) and sweeps
+ * the sorted list; it is deterministic: users and messages are
+ * ordered by first occurrence, and transactions are numbered
+ * in the order of their start time.
+ *****************************************************************/
+public class TransactionRecovery {
+
+  private final int         timeWindow;
+  private final boolean     sliding;
+  private final Verbosity   verbosity;
+
+  private final SymbolTable users    = new SymbolTable();
+  private final SymbolTable messages = new SymbolTable();
+  private final SymbolTable files    = new SymbolTable();
+
+  /** Revisions: user, message, and file symbols, and time. */
+  private int[]             revUsers = new int[1024];
+  private int[]             revMsgs  = new int[1024];
+  private int[]             revFiles = new int[1024];
+  private long[]            revTimes = new long[1024];
+  private int               revNr    = 0;
+
+  /** Result of the recovery: revision indexes in output order,
+   *  and the transaction id of each of these positions. */
+  private int[]             order;
+  private int[]             transactions;
+
+  /**
+   * @param pTimeWindow  Time window, in milli-seconds.
+   * @param pSliding     Sliding (true) or fixed time window.
+   */
+  public TransactionRecovery(int pTimeWindow, boolean pSliding,
+                             Verbosity pVerbosity) {
+    timeWindow = pTimeWindow;
+    sliding = pSliding;
+    verbosity = pVerbosity;
+  }
+
+  /**
+   * Adds the revision of file pFile by user pUser at time pTime.
+   */
+  public void addRevision(String pUser, String pLogMsg, long pTime,
+                          String pFile) {
+    if (revNr == revTimes.length) {
+      int lNewLength = 2 * revNr;
+      revUsers = Arrays.copyOf(revUsers, lNewLength);
+      revMsgs = Arrays.copyOf(revMsgs, lNewLength);
+      revFiles = Arrays.copyOf(revFiles, lNewLength);
+      revTimes = Arrays.copyOf(revTimes, lNewLength);
+    }
+    revUsers[revNr] = users.intern(pUser);
+    revMsgs[revNr] = messages.intern(pLogMsg);
+    revFiles[revNr] = files.intern(pFile);
+    revTimes[revNr] = pTime;
+    ++revNr;
+  }
+
+  /*****************************************************************
+   * Assigns the transactions. Afterwards, the revisions can be
+   * retrieved with <code>getTransaction</code> etc. at positions
+   * 0 ... <code>size()</code>-1, ordered by transaction start time,
+   * transaction, time, and file name. Multiple revisions of the same
+   * file by the same user with the same message at the same time
+   * are reported once.
+   *****************************************************************/
+  public void recover() {
+    // Rank of the file names in lexicographic order.
+    final int[] lFileRanks = new int[files.size()];
+    {
+      String[] lNames = new String[files.size()];
+      for (int i = 0; i < lNames.length; ++i) {
+        lNames[i] = files.get(i);
+      }
+      int[] lByName = new int[lNames.length];
+      for (int i = 0; i < lByName.length; ++i) {
+        lByName[i] = i;
+      }
+      sort(lByName, new IndexOrder() {
+        @Override
+        public int compare(int a, int b) {
+          return files.get(a).compareTo(files.get(b));
+        }
+      });
+      for (int i = 0; i < lByName.length; ++i) {
+        lFileRanks[lByName[i]] = i;
+      }
+    }
+
+    // Step 1: Sort the revisions by (user, message, time, file).
+    int[] lSorted = new int[revNr];
+    for (int i = 0; i < revNr; ++i) {
+      lSorted[i] = i;
+    }
+    sort(lSorted, new IndexOrder() {
+      @Override
+      public int compare(int a, int b) {
+        if (revUsers[a] != revUsers[b]) {
+          return revUsers[a] < revUsers[b] ? -1 : 1;
+        }
+        if (revMsgs[a] != revMsgs[b]) {
+          return revMsgs[a] < revMsgs[b] ? -1 : 1;
+        }
+        if (revTimes[a] != revTimes[b]) {
+          return revTimes[a] < revTimes[b] ? -1 : 1;
+        }
+        return lFileRanks[revFiles[a]] - lFileRanks[revFiles[b]];
+      }
+    });
+
+    // Step 2: Sweep the sorted revisions; a transaction is a run
+    // of revisions, given by its start position.
+    int[] lRevisions = new int[revNr];
+    int lRevisionNr = 0;
+    int[] lStarts = new int[16];
+    int lTransNr = 0;
+    // Last transaction (per file) that contains the file.
+    int[] lFileSeen = new int[files.size()];
+    Arrays.fill(lFileSeen, -1);
+    long lFirstTime = 0;
+    for (int k = 0; k < revNr; ++k) {
+      int lRev = lSorted[k];
+      int lPrev = (k == 0) ? -1 : lSorted[k - 1];
+      boolean lSameGroup =
+                           lPrev >= 0 && revUsers[lPrev] == revUsers[lRev]
+                               && revMsgs[lPrev] == revMsgs[lRev];
+      if (lSameGroup && revTimes[lPrev] == revTimes[lRev]
+          && revFiles[lPrev] == revFiles[lRev]) {
+        // Same revision once more.
+        continue;
+      }
+      long lTime = revTimes[lRev];
+      if (!lSameGroup || lTime - lFirstTime > timeWindow) {
+        // Start new transaction.
+        if (lTransNr == lStarts.length) {
+          lStarts = Arrays.copyOf(lStarts, 2 * lTransNr);
+        }
+        lStarts[lTransNr++] = lRevisionNr;
+        lFirstTime = lTime;
+      } else if (sliding) {
+        // The time window 'slides' with the files.
+        lFirstTime = lTime;
+      }
+      // Detect a time window that is too long.
+      int lFile = revFiles[lRev];
+      if (lFileSeen[lFile] == lTransNr
+          && verbosity.isAtLeast(Verbosity.WARNING)) {
+        System.err
+            .println("Transaction-recovery warning: Time window might be to wide "
+                     + ReaderDataGraph.endl + "(currently '" + timeWindow
+                     + "' milli-seconds). " + ReaderDataGraph.endl + "File '"
+                     + files.get(lFile)
+                     + "' already contained in current transaction.");
+      }
+      lFileSeen[lFile] = lTransNr;
+      lRevisions[lRevisionNr++] = lRev;
+    }
+
+    // Step 3: Number the transactions by start time
+    // (the sort is stable, ties stay in the order of the sweep).
+    final long[] lStartTimes = new long[lTransNr];
+    int[] lTransOrder = new int[lTransNr];
+    for (int t = 0; t < lTransNr; ++t) {
+      lStartTimes[t] = revTimes[lRevisions[lStarts[t]]];
+      lTransOrder[t] = t;
+    }
+    sort(lTransOrder, new IndexOrder() {
+      @Override
+      public int compare(int a, int b) {
+        return lStartTimes[a] < lStartTimes[b] ? -1
+            : (lStartTimes[a] > lStartTimes[b] ? 1 : 0);
+      }
+    });
+    order = new int[lRevisionNr];
+    transactions = new int[lRevisionNr];
+    int lPos = 0;
+    for (int i = 0; i < lTransNr; ++i) {
+      int t = lTransOrder[i];
+      int lEnd = (t + 1 < lTransNr) ? lStarts[t + 1] : lRevisionNr;
+      for (int k = lStarts[t]; k < lEnd; ++k) {
+        order[lPos] = lRevisions[k];
+        transactions[lPos] = i + 1;
+        ++lPos;
+      }
+    }
+  }
+
+  /** Returns the number of revisions after recovery. */
+  public int size() {
+    return order.length;
+  }
+
+  /** Returns the transaction id (from 1) of the revision at pPos. */
+  public int getTransaction(int pPos) {
+    return transactions[pPos];
+  }
+
+  public String getFile(int pPos) {
+    return files.get(revFiles[order[pPos]]);
+  }
+
+  public String getUser(int pPos) {
+    return users.get(revUsers[order[pPos]]);
+  }
+
+  public long getTime(int pPos) {
+    return revTimes[order[pPos]];
+  }
+
+  /** Order on indexes, for sorting without boxing. */
+  private interface IndexOrder {
+    int compare(int a, int b);
+  }
+
+  /**
+   * Sorts pIndexes by pOrder (stable merge sort).
+   */
+  private static void sort(int[] pIndexes, IndexOrder pOrder) {
+    int[] lSrc = pIndexes;
+    int[] lDst = new int[pIndexes.length];
+    for (int lWidth = 1; lWidth < pIndexes.length; lWidth *= 2) {
+      for (int lLow = 0; lLow < pIndexes.length; lLow += 2 * lWidth) {
+        int lMid = Math.min(lLow + lWidth, pIndexes.length);
+        int lHigh = Math.min(lLow + 2 * lWidth, pIndexes.length);
+        int i = lLow;
+        int j = lMid;
+        for (int k = lLow; k < lHigh; ++k) {
+          if (i < lMid && (j >= lHigh || pOrder.compare(lSrc[i], lSrc[j]) <= 0)) {
+            lDst[k] = lSrc[i++];
+          } else {
+            lDst[k] = lSrc[j++];
+          }
+        }
+      }
+      int[] lTmp = lSrc;
+      lSrc = lDst;
+      lDst = lTmp;
+    }
+    if (lSrc != pIndexes) {
+      System.arraycopy(lSrc, 0, pIndexes, 0, pIndexes.length);
+    }
+  }
+}
@@ -61,7 +61,17 @@ public abstract class WriterData {
 
   protected String mkQuoted(String pElem) {
     // If the element contains a whitespace character, then quote.
-    if (pElem.matches(".*\\s.*")) { return '"' + pElem + '"'; }
+    if (hasWhitespace(pElem)) { return '"' + pElem + '"'; }
     return pElem;
   }
+
+  /** Returns true if pElem contains a character of the
+   *  regular expression class \s (without using a regular expression). */
+  protected static boolean hasWhitespace(String pElem) {
+    for (int i = 0; i < pElem.length(); ++i) {
+      char lChar = pElem.charAt(i);
+      if (lChar == ' ' || (lChar >= '\t' && lChar <= '\r')) { return true; }
+    }
+    return false;
+  }
 };
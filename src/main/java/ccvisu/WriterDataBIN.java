@@ -0,0 +1,242 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*****************************************************************
+ * Writer for graph snapshots in binary format BIN
+ * (see <code>ReaderDataBIN</code> for the format):
+ * vertex names, positions, colors and flags, the adjacency
+ * in compressed sparse row format, and the edges (if stored).
+ * The snapshot is assembled in one buffer and written
+ * to the channel of the output stream.
+ *****************************************************************/
+public class WriterDataBIN extends WriterData {
+
+  /** Binary output stream. */
+  private final OutputStream mOut;
+  /** True if the positions of the vertices are a computed layout. */
+  private final boolean      mWithLayout;
+  /** Hash of the source data of the graph (0 if unknown). */
+  private final long         mSourceHash;
+
+  /**
+   * Constructor.
+   * @param pOut         Binary output stream.
+   * @param pGraph       Graph representation.
+   * @param pWithLayout  True if the graph has a computed layout.
+   * @param pSourceHash  Hash of the source data, for cache validation.
+   */
+  public WriterDataBIN(OutputStream pOut, GraphData pGraph,
+                       boolean pWithLayout, long pSourceHash) {
+    super(null, pGraph);
+    mOut = pOut;
+    mWithLayout = pWithLayout;
+    mSourceHash = pSourceHash;
+  }
+
+  /*****************************************************************
+   * Writes the graph snapshot in binary format BIN.
+   *****************************************************************/
+  @Override
+  public void write() {
+    int lNodeNr = graph.vertices.size();
+    GraphAdjacency lAdjacency = graph.getAdjacency();
+    int[] lReflexive = lAdjacency.getReflexive();
+
+    byte[][] lNames = new byte[lNodeNr][];
+    for (int i = 0; i < lNodeNr; ++i) {
+      lNames[i] = graph.vertices.get(i).name.getBytes(ReaderDataBIN.UTF8);
+    }
+    // Relation names of the edges, numbered in order of appearance.
+    List<byte[]> lRelNames = new ArrayList<byte[]>();
+    Map<String, Integer> lRelIds = new HashMap<String, Integer>();
+    int[] lRels = new int[graph.edges.size()];
+    for (int k = 0; k < lRels.length; ++k) {
+      String lRelName = graph.edges.get(k).relName;
+      Integer lId = lRelIds.get(lRelName);
+      if (lId == null) {
+        lId = lRelNames.size();
+        lRelIds.put(lRelName, lId);
+        lRelNames.add(lRelName.getBytes(ReaderDataBIN.UTF8));
+      }
+      lRels[k] = lId;
+    }
+    byte[][] lRelNameArray = lRelNames.toArray(new byte[lRelNames.size()][]);
+
+    long lSize =
+                 4L * 8 + 8 + stringsSize(lNames) + 4L * 5 * lNodeNr
+                     + lNodeNr + padding(lNodeNr) + 4L * (lNodeNr + 1) + 8L
+                     * lAdjacency.targets.length + 4L * lReflexive.length
+                     + stringsSize(lRelNameArray) + 16L * lRels.length;
+    if (lSize > Integer.MAX_VALUE) {
+      System.err.println("Runtime error: Graph is too large "
+                         + "for a graph snapshot.");
+      return;
+    }
+    ByteBuffer lBuf = ByteBuffer.allocate((int) lSize);
+
+    // Header.
+    lBuf.putInt(ReaderDataBIN.MAGIC);
+    lBuf.putInt(ReaderDataBIN.VERSION);
+    lBuf.putInt(mWithLayout ? ReaderDataBIN.FLAG_LAYOUT : 0);
+    lBuf.putLong(mSourceHash);
+    lBuf.putInt(lNodeNr);
+    lBuf.putInt(lAdjacency.targets.length);
+    lBuf.putInt(lReflexive.length);
+    lBuf.putInt(lRelNameArray.length);
+    lBuf.putInt(lRels.length);
+
+    // Vertices.
+    putStrings(lBuf, lNames);
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.putFloat(lVertex.pos.x);
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.putFloat(lVertex.pos.y);
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.putFloat(lVertex.pos.z);
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.putFloat(lVertex.degree);
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.putInt(lVertex.color.getRGB());
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      lBuf.put((byte) vertexFlags(lVertex));
+    }
+    putPadding(lBuf, lNodeNr);
+
+    // Adjacency.
+    lBuf.asIntBuffer().put(lAdjacency.offsets);
+    lBuf.position(lBuf.position() + 4 * lAdjacency.offsets.length);
+    lBuf.asIntBuffer().put(lAdjacency.targets);
+    lBuf.position(lBuf.position() + 4 * lAdjacency.targets.length);
+    lBuf.asFloatBuffer().put(lAdjacency.weights);
+    lBuf.position(lBuf.position() + 4 * lAdjacency.weights.length);
+    lBuf.asIntBuffer().put(lReflexive);
+    lBuf.position(lBuf.position() + 4 * lReflexive.length);
+
+    // Edges.
+    putStrings(lBuf, lRelNameArray);
+    lBuf.asIntBuffer().put(lRels);
+    lBuf.position(lBuf.position() + 4 * lRels.length);
+    for (GraphEdge lEdge : graph.edges) {
+      lBuf.putInt(lEdge.x);
+    }
+    for (GraphEdge lEdge : graph.edges) {
+      lBuf.putInt(lEdge.y);
+    }
+    for (GraphEdge lEdge : graph.edges) {
+      lBuf.putFloat(lEdge.w);
+    }
+    assert (!lBuf.hasRemaining());
+
+    lBuf.flip();
+    try {
+      WritableByteChannel lChannel = Channels.newChannel(mOut);
+      while (lBuf.hasRemaining()) {
+        lChannel.write(lBuf);
+      }
+      mOut.flush();
+    } catch (IOException e) {
+      System.err.println("Runtime error: Exception while writing "
+                         + "the graph snapshot:");
+      System.err.println(e);
+    }
+  }
+
+  /** Returns the number of padding bytes after pLength bytes. */
+  static int padding(int pLength) {
+    return (4 - pLength % 4) % 4;
+  }
+
+  private static int vertexFlags(GraphVertex pVertex) {
+    int result = 0;
+    if (pVertex.isSource) {
+      result |= ReaderDataBIN.VERTEX_SOURCE;
+    }
+    if (pVertex.showName) {
+      result |= ReaderDataBIN.VERTEX_SHOWNAME;
+    }
+    if (pVertex.showVertex) {
+      result |= ReaderDataBIN.VERTEX_SHOW;
+    }
+    if (pVertex.auxiliary) {
+      result |= ReaderDataBIN.VERTEX_AUXILIARY;
+    }
+    if (pVertex.fixedPos) {
+      result |= ReaderDataBIN.VERTEX_FIXEDPOS;
+    }
+    if (pVertex.hasSelfLoop) {
+      result |= ReaderDataBIN.VERTEX_SELFLOOP;
+    }
+    return result;
+  }
+
+  /** Size of a string table (offsets, byte number, bytes, padding). */
+  private static long stringsSize(byte[][] pStrings) {
+    long lBytes = 0;
+    for (byte[] lString : pStrings) {
+      lBytes += lString.length;
+    }
+    return 4L * (pStrings.length + 2) + lBytes + padding((int) (lBytes % 4));
+  }
+
+  private static void putStrings(ByteBuffer pBuf, byte[][] pStrings) {
+    int lOffset = 0;
+    pBuf.putInt(lOffset);
+    for (byte[] lString : pStrings) {
+      lOffset += lString.length;
+      pBuf.putInt(lOffset);
+    }
+    pBuf.putInt(lOffset);
+    for (byte[] lString : pStrings) {
+      pBuf.put(lString);
+    }
+    putPadding(pBuf, lOffset);
+  }
+
+  private static void putPadding(ByteBuffer pBuf, int pLength) {
+    for (int i = padding(pLength); i > 0; --i) {
+      pBuf.put((byte) 0);
+    }
+  }
+}
@@ -0,0 +1,457 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import ccvisu.Options.Option;
+
+/*****************************************************************
+ * Writer for layouts in binary glTF 2.0 format (GLB), for 3D viewers
+ * and web clients. The vertices are instances of one sphere mesh
+ * (extension EXT_mesh_gpu_instancing, with translation, scale,
+ * and color per instance), the edges are one mesh of lines
+ * with a color per line end. The layout is centered at the origin
+ * and scaled as for VRML; the radius of a vertex is as for SVG.
+ * All binary data is assembled in one little-endian buffer,
+ * directly from the positions of the vertices,
+ * and written to the channel of the output stream.
+ *****************************************************************/
+public class WriterDataGLB extends WriterData {
+
+  private static final Charset UTF8               = Charset.forName("UTF-8");
+
+  /** Chunk types and magic number of the GLB container. */
+  private static final int     GLB_MAGIC          = 0x46546C67;  // "glTF"
+  private static final int     GLB_VERSION        = 2;
+  private static final int     CHUNK_JSON         = 0x4E4F534A;  // "JSON"
+  private static final int     CHUNK_BIN          = 0x004E4942;  // "BIN\0"
+
+  /** Constants of glTF. */
+  private static final int     FLOAT              = 5126;
+  private static final int     UNSIGNED_SHORT     = 5123;
+  private static final int     ARRAY_BUFFER       = 34962;
+  private static final int     ELEMENT_BUFFER     = 34963;
+  private static final int     MODE_LINES         = 1;
+
+  /** Resolution of the sphere mesh. */
+  private static final int     SPHERE_STACKS      = 8;
+  private static final int     SPHERE_SLICES      = 12;
+
+  /** Binary output stream. */
+  private final OutputStream   mOut;
+  private final Options        options;
+
+  /**
+   * Constructor.
+   * @param pOut    Binary output stream.
+   * @param pGraph  Graph representation, contains the positions of the vertices.
+   */
+  public WriterDataGLB(OutputStream pOut, GraphData pGraph, Options pOptions) {
+    super(null, pGraph);
+    mOut = pOut;
+    options = pOptions;
+  }
+
+  /*****************************************************************
+   * Writes the layout in binary glTF format.
+   *****************************************************************/
+  @Override
+  public void write() {
+    // Select the vertices and edges to draw (as the graphics writers do).
+    int lNodeNr = graph.vertices.size();
+    boolean[] lDrawn = new boolean[lNodeNr];
+    int lVertexNr = 0;
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      if (lCurrVertex.showVertex
+          && !(Option.hideSource.getBool() && lCurrVertex.isSource)
+          && !lCurrVertex.auxiliary) {
+        lDrawn[lCurrVertex.id] = true;
+        ++lVertexNr;
+      }
+    }
+    int lEdgeNr = 0;
+    if (Option.showEdges.getBool()) {
+      for (GraphEdge e : graph.edges) {
+        if (isEdgeDrawn(e)) {
+          ++lEdgeNr;
+        }
+      }
+    }
+
+    // Transformation: center the bounding box of the drawn vertices
+    //   at the origin and scale its largest extent to 90% of the size.
+    float[] lMin = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+    float[] lMax = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      if (lDrawn[lCurrVertex.id]) {
+        Position lPos = lCurrVertex.pos;
+        lMin[0] = Math.min(lMin[0], lPos.x);
+        lMin[1] = Math.min(lMin[1], lPos.y);
+        lMin[2] = Math.min(lMin[2], lPos.z);
+        lMax[0] = Math.max(lMax[0], lPos.x);
+        lMax[1] = Math.max(lMax[1], lPos.y);
+        lMax[2] = Math.max(lMax[2], lPos.z);
+      }
+    }
+    float lLayoutDist =
+                        Math.max(Math.max(lMax[0] - lMin[0], lMax[1] - lMin[1]),
+                            lMax[2] - lMin[2]);
+    float lScale = 1;
+    if (lVertexNr > 0 && lLayoutDist > 0) {
+      lScale = 0.9f * 1000 * Option.scalePos.getFloat() / lLayoutDist;
+    }
+    float[] lCenter = new float[3];
+    for (int d = 0; d < 3; ++d) {
+      lCenter[d] = (lVertexNr > 0) ? (lMin[d] + lMax[d]) / 2 : 0;
+    }
+
+    // Output coordinates of all vertices.
+    float[] lCoords = new float[3 * lNodeNr];
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      int lIndex = 3 * lCurrVertex.id;
+      lCoords[lIndex] = (lCurrVertex.pos.x - lCenter[0]) * lScale;
+      lCoords[lIndex + 1] = (lCurrVertex.pos.y - lCenter[1]) * lScale;
+      lCoords[lIndex + 2] = (lCurrVertex.pos.z - lCenter[2]) * lScale;
+    }
+
+    // Sizes of the buffer views.
+    int lSphereVertexNr = 0;
+    int lSphereIndexNr = 0;
+    if (lVertexNr > 0) {
+      lSphereVertexNr = (SPHERE_STACKS + 1) * (SPHERE_SLICES + 1);
+      lSphereIndexNr = 6 * SPHERE_STACKS * SPHERE_SLICES;
+    }
+    long[] lViewSizes =
+                        { 12L * lSphereVertexNr, 2L * lSphereIndexNr,
+                         12L * lVertexNr, 12L * lVertexNr, 12L * lVertexNr,
+                         24L * lEdgeNr, 24L * lEdgeNr };
+    long[] lViewOffsets = new long[lViewSizes.length];
+    long lBinSize = 0;
+    for (int i = 0; i < lViewSizes.length; ++i) {
+      lViewOffsets[i] = lBinSize;
+      lBinSize += lViewSizes[i] + padding(lViewSizes[i]);
+    }
+    if (lBinSize > Integer.MAX_VALUE / 2) {
+      System.err.println("Runtime error: Graph is too large "
+                         + "for a glTF scene.");
+      return;
+    }
+    ByteBuffer lBin = ByteBuffer.allocate((int) lBinSize);
+    lBin.order(ByteOrder.LITTLE_ENDIAN);
+
+    // Sphere of radius 1 (the positions are also the normals).
+    for (int i = 0; i <= SPHERE_STACKS && lVertexNr > 0; ++i) {
+      double lTheta = Math.PI * i / SPHERE_STACKS;
+      for (int j = 0; j <= SPHERE_SLICES; ++j) {
+        double lPhi = 2 * Math.PI * j / SPHERE_SLICES;
+        lBin.putFloat((float) (Math.sin(lTheta) * Math.cos(lPhi)));
+        lBin.putFloat((float) Math.cos(lTheta));
+        lBin.putFloat((float) (Math.sin(lTheta) * Math.sin(lPhi)));
+      }
+    }
+    for (int i = 0; i < SPHERE_STACKS && lVertexNr > 0; ++i) {
+      for (int j = 0; j < SPHERE_SLICES; ++j) {
+        int lFirst = i * (SPHERE_SLICES + 1) + j;
+        int lSecond = lFirst + SPHERE_SLICES + 1;
+        // Two triangles, counter-clockwise seen from outside.
+        lBin.putShort((short) lFirst);
+        lBin.putShort((short) (lFirst + 1));
+        lBin.putShort((short) lSecond);
+        lBin.putShort((short) lSecond);
+        lBin.putShort((short) (lFirst + 1));
+        lBin.putShort((short) (lSecond + 1));
+      }
+    }
+    putPadding(lBin);
+
+    // Instances: translations, scales, colors.
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      if (lDrawn[lCurrVertex.id]) {
+        int lIndex = 3 * lCurrVertex.id;
+        lBin.putFloat(lCoords[lIndex]);
+        lBin.putFloat(lCoords[lIndex + 1]);
+        lBin.putFloat(lCoords[lIndex + 2]);
+      }
+    }
+    float lMinVert = Option.minVert.getFloat();
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      if (lDrawn[lCurrVertex.id]) {
+        float lRadius =
+                        (float) Math.max(Math.pow(lCurrVertex.degree, 0.5)
+                                         * lMinVert, lMinVert);
+        lBin.putFloat(lRadius);
+        lBin.putFloat(lRadius);
+        lBin.putFloat(lRadius);
+      }
+    }
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      if (lDrawn[lCurrVertex.id]) {
+        putColor(lBin, lCurrVertex.color);
+      }
+    }
+
+    // Edges: positions and colors of the line ends.
+    float[] lEdgeMin = { 0, 0, 0 };
+    float[] lEdgeMax = { 0, 0, 0 };
+    if (lEdgeNr > 0) {
+      lEdgeMin = new float[] { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+      lEdgeMax = new float[] { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+      for (GraphEdge e : graph.edges) {
+        if (isEdgeDrawn(e)) {
+          putPoint(lBin, lCoords, 3 * e.x, lEdgeMin, lEdgeMax);
+          putPoint(lBin, lCoords, 3 * e.y, lEdgeMin, lEdgeMax);
+        }
+      }
+      for (GraphEdge e : graph.edges) {
+        if (isEdgeDrawn(e)) {
+          putColor(lBin, e.color);
+          putColor(lBin, e.color);
+        }
+      }
+    }
+    assert (!lBin.hasRemaining());
+
+    byte[] lJson =
+                   json(lBinSize, lViewOffsets, lViewSizes, lSphereVertexNr,
+                       lSphereIndexNr, lVertexNr, lEdgeNr, lEdgeMin, lEdgeMax)
+                       .getBytes(UTF8);
+    int lJsonSize = lJson.length + (int) padding(lJson.length);
+
+    // GLB container: header, JSON chunk (padded with spaces),
+    //   binary chunk (padded with zeros; omitted if empty).
+    int lBinChunkSize = (lBinSize > 0) ? 8 + (int) lBinSize : 0;
+    ByteBuffer lHeader =
+                         ByteBuffer.allocate(12 + 8 + lJsonSize
+                                             + Math.min(lBinChunkSize, 8));
+    lHeader.order(ByteOrder.LITTLE_ENDIAN);
+    lHeader.putInt(GLB_MAGIC);
+    lHeader.putInt(GLB_VERSION);
+    lHeader.putInt(12 + 8 + lJsonSize + lBinChunkSize);
+    lHeader.putInt(lJsonSize);
+    lHeader.putInt(CHUNK_JSON);
+    lHeader.put(lJson);
+    for (int i = lJson.length; i < lJsonSize; ++i) {
+      lHeader.put((byte) ' ');
+    }
+    if (lBinSize > 0) {
+      lHeader.putInt((int) lBinSize);
+      lHeader.putInt(CHUNK_BIN);
+    }
+
+    lHeader.flip();
+    lBin.flip();
+    try {
+      WritableByteChannel lChannel = Channels.newChannel(mOut);
+      while (lHeader.hasRemaining()) {
+        lChannel.write(lHeader);
+      }
+      while (lBin.hasRemaining()) {
+        lChannel.write(lBin);
+      }
+      mOut.flush();
+    } catch (IOException e) {
+      System.err.println("Runtime error: Exception while writing "
+                         + "the glTF scene:");
+      System.err.println(e);
+    }
+  }
+
+  /*****************************************************************
+   * Returns the JSON part of the scene: the node of the vertex instances
+   * (if any vertex is drawn) and the node of the edges (if any).
+   * Only the non-empty buffer views are listed.
+   *****************************************************************/
+  private String json(long pBinSize, long[] pViewOffsets, long[] pViewSizes,
+                      int pSphereVertexNr, int pSphereIndexNr, int pVertexNr,
+                      int pEdgeNr, float[] pEdgeMin, float[] pEdgeMax) {
+    // Buffer views: positions and indexes of the sphere,
+    //   translations, scales, and colors of the instances,
+    //   positions and colors of the line ends.
+    int[] lTargets = { ARRAY_BUFFER, ELEMENT_BUFFER, 0, 0, 0, ARRAY_BUFFER,
+        ARRAY_BUFFER };
+    int[] lView = new int[pViewSizes.length];
+    StringBuilder lViews = new StringBuilder();
+    int lViewNr = 0;
+    for (int i = 0; i < pViewSizes.length; ++i) {
+      if (pViewSizes[i] == 0) {
+        continue;
+      }
+      lView[i] = lViewNr;
+      lViews.append(lViewNr > 0 ? "," : "")
+          .append("{\"buffer\":0,\"byteOffset\":").append(pViewOffsets[i])
+          .append(",\"byteLength\":").append(pViewSizes[i]);
+      if (lTargets[i] != 0) {
+        lViews.append(",\"target\":").append(lTargets[i]);
+      }
+      lViews.append("}");
+      ++lViewNr;
+    }
+
+    StringBuilder lNodes = new StringBuilder();
+    StringBuilder lMeshes = new StringBuilder();
+    StringBuilder lAccessors = new StringBuilder();
+    int lNodeNr = 0;
+    if (pVertexNr > 0) {
+      lNodes.append("{\"name\":\"vertices\",\"mesh\":0,\"extensions\":"
+                    + "{\"EXT_mesh_gpu_instancing\":{\"attributes\":"
+                    + "{\"TRANSLATION\":2,\"SCALE\":3,\"_COLOR_0\":4}}}}");
+      lMeshes.append("{\"name\":\"sphere\",\"primitives\":[{\"attributes\":"
+                     + "{\"POSITION\":0,\"NORMAL\":0},\"indices\":1,"
+                     + "\"material\":0}]}");
+      lAccessors.append("{\"bufferView\":" + lView[0] + ",\"componentType\":"
+                        + FLOAT + ",\"count\":" + pSphereVertexNr
+                        + ",\"type\":\"VEC3\","
+                        + "\"min\":[-1,-1,-1],\"max\":[1,1,1]},");
+      lAccessors.append("{\"bufferView\":" + lView[1] + ",\"componentType\":"
+                        + UNSIGNED_SHORT + ",\"count\":" + pSphereIndexNr
+                        + ",\"type\":\"SCALAR\"}");
+      for (int i = 2; i <= 4; ++i) {
+        lAccessors.append(",{\"bufferView\":" + lView[i]
+                          + ",\"componentType\":" + FLOAT + ",\"count\":"
+                          + pVertexNr + ",\"type\":\"VEC3\"}");
+      }
+      ++lNodeNr;
+    }
+    if (pEdgeNr > 0) {
+      // Accessors 0 to 4 belong to the vertices, if any.
+      int lAccessor = (pVertexNr > 0) ? 5 : 0;
+      String lSeparator = (pVertexNr > 0) ? "," : "";
+      lNodes.append(lSeparator).append("{\"name\":\"edges\",\"mesh\":")
+          .append(lNodeNr).append("}");
+      lMeshes.append(lSeparator).append("{\"name\":\"edges\",\"primitives\":"
+                     + "[{\"attributes\":{\"POSITION\":" + lAccessor
+                     + ",\"COLOR_0\":" + (lAccessor + 1) + "},\"mode\":"
+                     + MODE_LINES + ",\"material\":1}]}");
+      lAccessors.append(lSeparator).append("{\"bufferView\":" + lView[5]
+                        + ",\"componentType\":" + FLOAT + ",\"count\":"
+                        + 2 * pEdgeNr + ",\"type\":\"VEC3\",\"min\":"
+                        + jsonArray(pEdgeMin) + ",\"max\":"
+                        + jsonArray(pEdgeMax) + "},");
+      lAccessors.append("{\"bufferView\":" + lView[6] + ",\"componentType\":"
+                        + FLOAT + ",\"count\":" + 2 * pEdgeNr
+                        + ",\"type\":\"VEC3\"}");
+      ++lNodeNr;
+    }
+
+    StringBuilder result = new StringBuilder();
+    result.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"")
+        .append(jsonEscape(Options.toolDescription())).append("\"}");
+    if (pVertexNr > 0) {
+      result.append(",\"extensionsUsed\":[\"EXT_mesh_gpu_instancing\"]");
+      result.append(",\"extensionsRequired\":[\"EXT_mesh_gpu_instancing\"]");
+    }
+    result.append(",\"scene\":0,\"scenes\":[{");
+    if (lNodeNr > 0) {
+      result.append("\"nodes\":[0").append(lNodeNr > 1 ? ",1" : "")
+          .append("]}],\"nodes\":[").append(lNodes).append("]");
+      result.append(",\"meshes\":[").append(lMeshes).append("]");
+      result.append(",\"accessors\":[").append(lAccessors).append("]");
+      result.append(",\"materials\":[{\"name\":\"vertex\","
+                    + "\"pbrMetallicRoughness\":{\"metallicFactor\":0,"
+                    + "\"roughnessFactor\":1}},{\"name\":\"edge\","
+                    + "\"pbrMetallicRoughness\":{\"metallicFactor\":0,"
+                    + "\"roughnessFactor\":1}}]");
+      result.append(",\"buffers\":[{\"byteLength\":").append(pBinSize)
+          .append("}],\"bufferViews\":[").append(lViews).append("]");
+    } else {
+      result.append("}]");
+    }
+    result.append("}");
+    return result.toString();
+  }
+
+  /** Returns true if the edge and both of its incident vertices are visible. */
+  private boolean isEdgeDrawn(GraphEdge pEdge) {
+    return graph.vertices.get(pEdge.x).showVertex
+           && graph.vertices.get(pEdge.y).showVertex && !pEdge.auxiliary;
+  }
+
+  /** Puts the point at pIndex of pCoords and extends the bounding box. */
+  private static void putPoint(ByteBuffer pBuf, float[] pCoords, int pIndex,
+                               float[] pMin, float[] pMax) {
+    for (int d = 0; d < 3; ++d) {
+      float lValue = pCoords[pIndex + d];
+      pBuf.putFloat(lValue);
+      pMin[d] = Math.min(pMin[d], lValue);
+      pMax[d] = Math.max(pMax[d], lValue);
+    }
+  }
+
+  /** Puts the color as linear RGB (glTF colors are linear, AWT colors sRGB). */
+  private static void putColor(ByteBuffer pBuf, Color pColor) {
+    pBuf.putFloat(linear(pColor.getRed()));
+    pBuf.putFloat(linear(pColor.getGreen()));
+    pBuf.putFloat(linear(pColor.getBlue()));
+  }
+
+  /** Converts an sRGB component (0..255) to linear intensity (0..1). */
+  private static float linear(int pComponent) {
+    double lValue = pComponent / 255.0;
+    if (lValue <= 0.04045) { return (float) (lValue / 12.92); }
+    return (float) Math.pow((lValue + 0.055) / 1.055, 2.4);
+  }
+
+  /** Returns the number of padding bytes after pLength bytes. */
+  private static long padding(long pLength) {
+    return (4 - pLength % 4) % 4;
+  }
+
+  private static void putPadding(ByteBuffer pBuf) {
+    while (pBuf.position() % 4 != 0) {
+      pBuf.put((byte) 0);
+    }
+  }
+
+  private static String jsonArray(float[] pValues) {
+    return "[" + pValues[0] + "," + pValues[1] + "," + pValues[2] + "]";
+  }
+
+  private static String jsonEscape(String pText) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < pText.length(); ++i) {
+      char lChar = pText.charAt(i);
+      if (lChar == '"' || lChar == '\\') {
+        result.append('\\').append(lChar);
+      } else if (lChar < 0x20) {
+        result.append(' ');
+      } else {
+        result.append(lChar);
+      }
+    }
+    return result.toString();
+  }
+}
@@ -28,19 +28,54 @@
 
 package ccvisu;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ccvisu.Options.Option;
 
 /*****************************************************************
  * Writer for graphical output of layout data.
+ * The screen coordinates of all vertices are computed in one pass
+ * into primitive arrays. Writers whose records are independent
+ * pieces of text (see <code>RecordFormatter</code>) are written
+ * by a pipeline: consecutive records are formatted in chunks
+ * by a pool of threads, each chunk into its own buffer,
+ * and the chunks are written to the output in order.
  * @version  $Revision: 1.26 $; $Date: 2007/12/15 01:20:50 $
  * @author   Dirk Beyer
  *****************************************************************/
 public abstract class WriterDataGraphics extends WriterData {
 
-  protected Options options;
+  private static final Charset UTF8         = Charset.forName("UTF-8");
+  /** Minimal number of records for formatting in parallel. */
+  private static final int     PARALLEL_MIN = 4096;
+  /** Number of records per chunk of the pipeline. */
+  private static final int     CHUNK_SIZE   = 1024;
+
+  protected Options            options;
+
+  /** Byte stream under <code>out</code> for the formatted chunks,
+   *  or null if the chunks are written to <code>out</code>. */
+  private final OutputStream   outStream;
+
+  /** Screen coordinates and radius of each vertex of graph.vertices
+   *  (by vertex id), computed by <code>computeCoordinates</code>. */
+  protected int[]              vertexX      = new int[0];
+  protected int[]              vertexY      = new int[0];
+  protected int[]              vertexZ      = new int[0];
+  protected int[]              vertexRadius = new int[0];
 
   /**
    * Constructor.
@@ -49,6 +84,19 @@ public abstract class WriterDataGraphics extends WriterData {
   public WriterDataGraphics(PrintWriter out, GraphData graph, Options options) {
     super(out, graph);
     this.options = options;
+    this.outStream = null;
+  }
+
+  /**
+   * Constructor for output to a byte stream (text in UTF-8).
+   * @param pOut        Output stream; not closed by this writer.
+   * @param graph       Graph representation, contains the positions of the vertices.
+   */
+  public WriterDataGraphics(OutputStream pOut, GraphData graph, Options options) {
+    super(new PrintWriter(new BufferedWriter(new OutputStreamWriter(pOut,
+        UTF8))), graph);
+    this.options = options;
+    this.outStream = pOut;
   }
 
   /*****************************************************************
@@ -63,6 +111,63 @@ public abstract class WriterDataGraphics extends WriterData {
    *****************************************************************/
   public void writeGraphicsLayout(List<GraphVertex> pVertices,
                                   List<GraphEdge> pEdges, int pSize) {
+    computeCoordinates(pSize);
+
+    // Select the records in drawing order: the edges,
+    //   then the vertices that are not annotated (put them to background),
+    //   then the annotated vertices (put them to foreground).
+    int[] lEdges = new int[pEdges.size()];
+    int lEdgeNr = 0;
+    if (Option.showEdges.getBool()) {
+      for (int i = 0; i < lEdges.length; ++i) {
+        if (isEdgeDrawn(pEdges.get(i))) {
+          lEdges[lEdgeNr++] = i;
+        }
+      }
+    }
+    int[] lVertices = new int[pVertices.size()];
+    int lVertexNr = 0;
+    for (int i = 0; i < lVertices.length; ++i) {
+      GraphVertex lCurrVertex = pVertices.get(i);
+      if (isVertexDrawn(lCurrVertex) && !lCurrVertex.showName) {
+        lVertices[lVertexNr++] = i;
+      }
+    }
+    for (int i = 0; i < lVertices.length; ++i) {
+      GraphVertex lCurrVertex = pVertices.get(i);
+      if (isVertexDrawn(lCurrVertex) && lCurrVertex.showName) {
+        lVertices[lVertexNr++] = i;
+      }
+    }
+
+    int lThreadNr = Runtime.getRuntime().availableProcessors();
+    if (this instanceof RecordFormatter
+        && ((RecordFormatter) this).formatsInParallel() && lThreadNr > 1
+        && lEdgeNr + lVertexNr >= PARALLEL_MIN) {
+      writeParallel((RecordFormatter) this, pVertices, pEdges, lVertices,
+          lVertexNr, lEdges, lEdgeNr, lThreadNr);
+      return;
+    }
+    for (int k = 0; k < lEdgeNr; ++k) {
+      GraphEdge e = pEdges.get(lEdges[k]);
+      writeEdge(e, vertexX[e.x], vertexY[e.x], vertexZ[e.x], vertexX[e.y],
+          vertexY[e.y], vertexZ[e.y]);
+    }
+    for (int k = 0; k < lVertexNr; ++k) {
+      GraphVertex lCurrVertex = pVertices.get(lVertices[k]);
+      int lId = lCurrVertex.id;
+      writeVertex(lCurrVertex, vertexX[lId], vertexY[lId], vertexZ[lId],
+          vertexRadius[lId]);
+    }
+  }
+
+  /*****************************************************************
+   * Computes the screen coordinates and the radius of all vertices
+   * (arrays <code>vertexX</code> ... <code>vertexRadius</code>):
+   * the layout is scaled to 90% of the output area and the y-axis is flipped.
+   * @param pSize  Size of output area (e.g., number of pixel).
+   *****************************************************************/
+  protected void computeCoordinates(int pSize) {
     Position minPos = Position.min(graph.vertices);
     Position maxPos = Position.max(graph.vertices);
     float lWidth = Position.width(maxPos, minPos);
@@ -72,63 +177,155 @@ public abstract class WriterDataGraphics extends WriterData {
     Position scale = new Position(1, -1, 1);
     scale.mult(0.9f * pSize / lWidth);
 
-    // Draw the edges.
-    if (Option.showEdges.getBool()) {
-      for (GraphEdge e : pEdges) {
-        GraphVertex sourceVertex = graph.vertices.get(e.x);
-        GraphVertex targetVertex = graph.vertices.get(e.y);
-        // Only draw the edge if it and both of its incident vertices are visible
-        if (sourceVertex.showVertex && targetVertex.showVertex && !e.auxiliary) {
-          Position u = Position.add(graph.vertices.get(e.x).pos, offset);
-          u.mult(scale);
-          // Flip y-coordinate.
-          u.y += pSize;
-          Position v = Position.add(graph.vertices.get(e.y).pos, offset);
-          v.mult(scale);
-          // Flip y-coordinate.
-          v.y += pSize;
-          writeEdge(e, (int) u.x, (int) u.y, (int) u.z, (int) v.x, (int) v.y,
-              (int) v.z);
+    allocateCoordinates();
+    float lMinVert = Option.minVert.getFloat();
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      int lId = lCurrVertex.id;
+      Position lPos = lCurrVertex.pos;
+      vertexX[lId] = (int) ((lPos.x + offset.x) * scale.x);
+      // Flip y-coordinate.
+      vertexY[lId] = (int) ((lPos.y + offset.y) * scale.y + pSize);
+      vertexZ[lId] = (int) ((lPos.z + offset.z) * scale.z);
+      vertexRadius[lId] =
+          (int) Math.max(Math.pow(lCurrVertex.degree, 0.5) * lMinVert, lMinVert);
+    }
+  }
+
+  /** Makes the coordinate arrays as long as graph.vertices. */
+  protected void allocateCoordinates() {
+    int lNodeNr = graph.vertices.size();
+    if (vertexX.length != lNodeNr) {
+      vertexX = new int[lNodeNr];
+      vertexY = new int[lNodeNr];
+      vertexZ = new int[lNodeNr];
+      vertexRadius = new int[lNodeNr];
+    }
+  }
+
+  /** Returns true if the edge is drawn:
+   *  it and both of its incident vertices are visible. */
+  protected boolean isEdgeDrawn(GraphEdge pEdge) {
+    return graph.vertices.get(pEdge.x).showVertex
+           && graph.vertices.get(pEdge.y).showVertex && !pEdge.auxiliary;
+  }
+
+  /** Returns true if the vertex is drawn. */
+  protected boolean isVertexDrawn(GraphVertex pVertex) {
+    return pVertex.showVertex
+           && !(Option.hideSource.getBool() && pVertex.isSource)
+           && !pVertex.auxiliary;
+  }
+
+  /*****************************************************************
+   * Formats the selected records in chunks by a pool of threads,
+   * and writes the chunks in order as soon as they are finished.
+   * At most two chunks per thread are ahead of the output.
+   * @param pFormatter  This writer, which formats the records.
+   * @param pVertexIdx  Indexes (in pVertices) of the vertices to draw.
+   * @param pEdgeIdx    Indexes (in pEdges) of the edges to draw.
+   *****************************************************************/
+  private void writeParallel(RecordFormatter pFormatter,
+                             List<GraphVertex> pVertices,
+                             List<GraphEdge> pEdges, int[] pVertexIdx,
+                             int pVertexNr, int[] pEdgeIdx, int pEdgeNr,
+                             int pThreadNr) {
+    out.flush();
+    ExecutorService lExecutor = Executors.newFixedThreadPool(pThreadNr);
+    Queue<Future<ChunkFormatter>> lPending =
+        new ArrayDeque<Future<ChunkFormatter>>();
+    int lRecordNr = pEdgeNr + pVertexNr;
+    int lNext = 0;
+    try {
+      while (lNext < lRecordNr || !lPending.isEmpty()) {
+        while (lNext < lRecordNr && lPending.size() < 2 * pThreadNr) {
+          int lEnd = Math.min(lNext + CHUNK_SIZE, lRecordNr);
+          lPending.add(lExecutor.submit(new ChunkFormatter(pFormatter,
+              pVertices, pEdges, pVertexIdx, pEdgeIdx, pEdgeNr, lNext, lEnd)));
+          lNext = lEnd;
         }
+        ChunkFormatter lChunk = lPending.remove().get();
+        if (outStream != null) {
+          outStream.write(lChunk.bytes);
+        } else {
+          out.write(lChunk.text);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // Fail like the sequential path, instead of leaving
+      //   a truncated file that looks complete.
+      Throwable lCause = e.getCause();
+      if (lCause instanceof RuntimeException) {
+        throw (RuntimeException) lCause;
       }
+      if (lCause instanceof Error) {
+        throw (Error) lCause;
+      }
+      throw new RuntimeException(lCause);
+    } catch (IOException e) {
+      System.err.println("Exception while writing (WriterDataGraphics.writeParallel): ");
+      System.err.println(e);
+    } finally {
+      lExecutor.shutdownNow();
     }
+  }
 
-    // Draw the vertices.
-    // First draw the vertices that are not annotated (put them to background).
-    for (GraphVertex lCurrVertex : pVertices) {
-      if (lCurrVertex.showVertex
-          && !(Option.hideSource.getBool() && lCurrVertex.isSource)
-          && !lCurrVertex.auxiliary && !lCurrVertex.showName) {
-        int radius =
-                     (int) Math.max(Math.pow(lCurrVertex.degree, 0.5)
-                                    * Option.minVert.getFloat(), Option.minVert
-                         .getFloat());
-        Position u = Position.add(lCurrVertex.pos, offset);
-        u.mult(scale);
-        // Flip y-coordinate.
-        u.y += pSize;
-        writeVertex(lCurrVertex, (int) u.x, (int) u.y, (int) u.z, radius);
-      }
+  /*****************************************************************
+   * Formats the records [start, end) of the drawing order (edges first,
+   * then vertices) into a buffer of its own: text for output
+   * to <code>out</code>, UTF-8 bytes for output to the byte stream.
+   *****************************************************************/
+  private class ChunkFormatter implements Callable<ChunkFormatter> {
+
+    private final RecordFormatter   formatter;
+    private final List<GraphVertex> vertices;
+    private final List<GraphEdge>   edges;
+    private final int[]             vertexIdx;
+    private final int[]             edgeIdx;
+    private final int               edgeNr;
+    private final int               start;
+    private final int               end;
+
+    private String                  text;
+    private byte[]                  bytes;
+
+    private ChunkFormatter(RecordFormatter pFormatter,
+                           List<GraphVertex> pVertices, List<GraphEdge> pEdges,
+                           int[] pVertexIdx, int[] pEdgeIdx, int pEdgeNr,
+                           int pStart, int pEnd) {
+      formatter = pFormatter;
+      vertices = pVertices;
+      edges = pEdges;
+      vertexIdx = pVertexIdx;
+      edgeIdx = pEdgeIdx;
+      edgeNr = pEdgeNr;
+      start = pStart;
+      end = pEnd;
     }
 
-    // Draw the annotated vertices.
-    // Second draw the annotated vertices (put them to foreground).
-    for (GraphVertex lCurrVertex : pVertices) {
-      if (lCurrVertex.showVertex
-          && !(Option.hideSource.getBool() && lCurrVertex.isSource)
-          && !lCurrVertex.auxiliary && lCurrVertex.showName) {
-        int radius =
-                     (int) Math.max(Math.pow(lCurrVertex.degree, 0.5)
-                                    * Option.minVert.getFloat(), Option.minVert
-                         .getFloat());
-        Position u = Position.add(lCurrVertex.pos, offset);
-        u.mult(scale);
-        // Flip y-coordinate.
-        u.y += pSize;
-        writeVertex(lCurrVertex, (int) u.x, (int) u.y, (int) u.z, radius);
+    @Override
+    public ChunkFormatter call() {
+      StringBuilder lOut = new StringBuilder(128 * (end - start));
+      for (int k = start; k < end; ++k) {
+        if (k < edgeNr) {
+          GraphEdge e = edges.get(edgeIdx[k]);
+          formatter.formatEdge(lOut, k, e, vertexX[e.x], vertexY[e.x], vertexZ[e.x],
+              vertexX[e.y], vertexY[e.y], vertexZ[e.y]);
+        } else {
+          GraphVertex lCurrVertex = vertices.get(vertexIdx[k - edgeNr]);
+          int lId = lCurrVertex.id;
+          formatter.formatVertex(lOut, lCurrVertex, vertexX[lId],
+              vertexY[lId], vertexZ[lId], vertexRadius[lId]);
+        }
+      }
+      if (outStream != null) {
+        bytes = lOut.toString().getBytes(UTF8);
+      } else {
+        text = lOut.toString();
       }
+      return this;
     }
-
   }
 
   /**
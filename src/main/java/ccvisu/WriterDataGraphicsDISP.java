@@ -31,15 +31,17 @@ package ccvisu;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
-import java.util.Vector;
 
 import javax.swing.DefaultListModel;
 
@@ -52,10 +54,39 @@ import ccvisu.Options.Option;
  *****************************************************************/
 public class WriterDataGraphicsDISP extends WriterDataGraphics {
 
+  /** Minimal length (in pixels) of an edge bundle with arrow head. */
+  private static final int               MIN_ARROW_LENGTH = 20;
+  /** Minimal opacity of an edge bundle. */
+  private static final int               MIN_ALPHA        = 48;
+  /** Range (in pixels) of screen coordinates to which edges are clipped. */
+  private static final int               CLIP_RANGE       = 1 << 20;
+  /** Size of the layout index (integer coordinates). */
+  private static final int               GRID_SIZE        = 1 << 20;
+
   private final FrameDisplay             display;
-  private Vector<Set<String>>            xMap;
-  private Vector<Set<String>>            yMap;
-  private Vector<Vector<Set<GraphEdge>>> edgeMap;
+  /** Vertices and edges at the screen positions, of the last
+   *  completely drawn layout (for the mouse callbacks). */
+  private volatile ScreenIndex           screenIndex;
+  /** Index of the layout being drawn. */
+  private ScreenIndex                    nextIndex;
+
+  /** Camera (set by zooming and panning),
+   *  or null for fitting the layout into the canvas. */
+  private volatile View                  camera        = null;
+  /** View and size of the drawing square of the last drawn frame. */
+  private volatile View                  frameView     = null;
+  private volatile int                   frameSize     = 1;
+
+  /** Vertices and edges in the plane of the layout, for visiting
+   *  only those in view (built on demand if the camera is set). */
+  private ScreenIndex                    layoutIndex   = null;
+  private volatile boolean               layoutChanged = true;
+  /** Origin and scale of the grid coordinates of the layout index. */
+  private float                          gridX;
+  private float                          gridY;
+  private float                          gridScale;
+  /** Largest vertex radius (in pixels), when the index was built. */
+  private int                            maxRadius;
 
   // List of groups.
   private final DefaultListModel         clusters   = new DefaultListModel();
@@ -67,8 +98,6 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
   private Graphics                       mGraphics;
   private int                            insetleft;
   private int                            insetbottom;
-  private int                            xSize      = 0;
-  private int                            ySize      = 0;
 
   // Ashgan added the following data field, which is used to 
   // filter the display of vertices and edges
@@ -118,70 +147,129 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
    */
   public void writeDISP(int size, Graphics pGraphics, int xCanvasSize,
                         int yCanvasSize, int insetleft, int insetbottom) {
+    writeDISP(size, pGraphics, xCanvasSize, yCanvasSize, insetleft,
+        insetbottom, true);
+  }
+
+  /**
+   * Writes the layout on the screen device (DISP output format),
+   * optionally without the edges (for drawing a frame progressively).
+   * @param size         Size of the output drawing square.
+   * @param pGraphics         The drawing area of the canvas.
+   * @param xCanvasSize  Width of the canvas.
+   * @param yCanvasSize  Height of the canvas. 
+   * @param insetleft    Left inset of the drawing frame.
+   * @param insetbottom  Bottom inset of the drawing frame.
+   * @param pWithEdges   False for drawing the vertices only.
+   */
+  public void writeDISP(int size, Graphics pGraphics, int xCanvasSize,
+                        int yCanvasSize, int insetleft, int insetbottom,
+                        boolean pWithEdges) {
     this.mGraphics = pGraphics;
     this.insetbottom = insetbottom;
     this.insetleft = insetleft;
 
-    // Maps for getting the vertices at mouse positions.
-    xMap = new Vector<Set<String>>(xCanvasSize);
-    yMap = new Vector<Set<String>>(yCanvasSize);
-    for (int i = 0; i < xCanvasSize; ++i) {
-      xMap.add(new TreeSet<String>());
+    // The view of this frame.
+    View lCamera = camera;
+    View lView = (lCamera != null) ? lCamera : fitView();
+    frameView = lView;
+    frameSize = size;
+    float lScale = lView.scale(size);
+    boolean lWithEdges = pWithEdges && Option.showEdges.getBool();
+
+    // The vertices and edges in view: all if the layout fits into the canvas,
+    //   otherwise those that the layout index finds in the visible region.
+    List<GraphVertex> lVertices = graph.vertices;
+    List<GraphEdge> lEdges = graph.edges;
+    Map<Group, List<GraphVertex>> lClusterNodes = null;
+    if (lCamera != null) {
+      if (layoutChanged || layoutIndex == null) {
+        buildLayoutIndex();
+      }
+      // Visible region in layout coordinates, plus the largest radius.
+      float lMargin = (maxRadius + 1) / lScale;
+      int lX0 = toGrid(lView.x - insetleft / lScale - lMargin - gridX);
+      int lX1 =
+                toGrid(lView.x + (xCanvasSize - insetleft) / lScale + lMargin
+                       - gridX);
+      int lY0 =
+                toGrid(lView.y + (size - insetbottom - yCanvasSize) / lScale
+                       - lMargin - gridY);
+      int lY1 = toGrid(lView.y + (size - insetbottom) / lScale + lMargin - gridY);
+      lVertices = layoutIndex.getVertices(lX0, lY0, lX1, lY1);
+      if (lWithEdges) {
+        lEdges = layoutIndex.getEdges(lX0, lY0, lX1, lY1);
+      }
+      // Group the vertices in view by cluster.
+      lClusterNodes = new HashMap<Group, List<GraphVertex>>();
+      for (GraphVertex lCurrVertex : lVertices) {
+        Group lCluster = Group.getCluster(lCurrVertex);
+        List<GraphVertex> lNodes = lClusterNodes.get(lCluster);
+        if (lNodes == null) {
+          lNodes = new ArrayList<GraphVertex>();
+          lClusterNodes.put(lCluster, lNodes);
+        }
+        lNodes.add(lCurrVertex);
+      }
     }
-    for (int i = 0; i < yCanvasSize; ++i) {
-      yMap.add(new TreeSet<String>());
+
+    // Screen coordinates of the vertices in view.
+    allocateCoordinates();
+    float lMinVert = Option.minVert.getFloat();
+    for (GraphVertex lCurrVertex : lVertices) {
+      int lId = lCurrVertex.id;
+      vertexX[lId] = (int) ((lCurrVertex.pos.x - lView.x) * lScale);
+      // Flip y-coordinate.
+      vertexY[lId] = (int) (size - (lCurrVertex.pos.y - lView.y) * lScale);
+      vertexRadius[lId] =
+          (int) Math.max(Math.pow(lCurrVertex.degree, 0.5) * lMinVert, lMinVert);
     }
-    //Maps for getting the edges at mouse positions.
-    if (Option.showEdges.getBool()) {
-      if (xSize == xCanvasSize && ySize == yCanvasSize) {
-        for (int x = 0; x < xCanvasSize; ++x) {
-          Vector<Set<GraphEdge>> lVec = edgeMap.get(x);
-          for (int y = 0; y < yCanvasSize; ++y) {
-            lVec.get(y).clear();
-          }
-        }
+
+    // Index for getting the vertices and edges at mouse positions.
+    int lItemNr = lVertices.size();
+    if (lWithEdges) {
+      lItemNr += lEdges.size();
+    }
+    nextIndex = new ScreenIndex(xCanvasSize, yCanvasSize, lItemNr);
+
+    List<GraphEdge> lEmptyEdges = new ArrayList<GraphEdge>();
+    // Write edges only
+    if (lWithEdges) {
+      if (Option.edgeLOD.getInt() > 0) {
+        writeEdgeBundles(lEdges, lView, size, Option.edgeLOD.getInt());
       } else {
-        edgeMap = new Vector<Vector<Set<GraphEdge>>>(xCanvasSize);
-        for (int x = 0; x < xCanvasSize; ++x) {
-          Vector<Set<GraphEdge>> lVec = new Vector<Set<GraphEdge>>(yCanvasSize);
-          edgeMap.add(lVec);
-          for (int y = 0; y < yCanvasSize; ++y) {
-            lVec.add(new TreeSet<GraphEdge>());
+        int[] lLine = new int[4];
+        for (GraphEdge lEdge : lEdges) {
+          if (isEdgeDrawn(lEdge) && projectEdge(lEdge, lView, size, lLine)) {
+            writeEdge(lEdge, lLine[0], lLine[1], 0, lLine[2], lLine[3], 0);
           }
         }
-        xSize = xCanvasSize;
-        ySize = yCanvasSize;
       }
     }
 
-    List<GraphVertex> lEmptyVertices = new ArrayList<GraphVertex>();
-    List<GraphEdge> lEmptyEdges = new ArrayList<GraphEdge>();
-    // Write edges only
-    writeGraphicsLayout(lEmptyVertices, graph.edges, size);
-
     // Draw the vertices, cluster by cluster, clusters on top of normal vertices.
     for (int i = clusters.size() - 1; i >= 0; --i) {
       Group lGroup = (Group) clusters.get(i);
       if (lGroup.visible) {
-        writeGraphicsLayout(lGroup.getNodes(), lEmptyEdges, size);
+        List<GraphVertex> lNodes = lGroup.getNodes();
+        if (lClusterNodes != null) {
+          lNodes = lClusterNodes.get(lGroup);
+        }
+        if (lNodes != null) {
+          writeGraphicsLayout(lNodes, lEmptyEdges, size);
+        }
       }
     }
-
-    Position minPos = Position.min(graph.vertices);
-    Position maxPos = Position.max(graph.vertices);
-    float lWidth = Position.width(maxPos, minPos);
-
-    Position offset = Position.add(Position.mult(minPos, -1), 0.05f * lWidth);
-    // Flip y-coordinate.
-    Position scale = new Position(1, -1, 1);
-    scale.mult(0.9f * size / lWidth);
+    nextIndex.build();
+    screenIndex = nextIndex;
+    nextIndex = null;
 
     //draw the cluster specific information (except default cluster)
     for (int i = 1; i < clusters.size(); ++i) {//set begin to 1, 0 only for test
       Group clt = (Group) clusters.get(i);
       if (clt.visible && clt.info) {
-        int x = (int) ((clt.getX() + offset.x) * scale.x + insetleft);
-        int y = (int) ((clt.getY() + offset.y) * scale.y + size - insetbottom);
+        int x = (int) ((clt.getX() - lView.x) * lScale + insetleft);
+        int y = (int) (size - (clt.getY() - lView.y) * lScale - insetbottom);
         int l = x - 5;
         int r = x + 5;
         int u = y - 5;
@@ -192,7 +280,7 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
         pGraphics.setColor(clt.getColor().get());
         pGraphics.drawLine(l, y, r, y);
         pGraphics.drawLine(x, u, x, b);
-        int radius = (int) (clt.getAverageRadius() * scale.x);
+        int radius = (int) (clt.getAverageRadius() * lScale);
         int diam = (radius + radius);
         pGraphics.drawOval(x - radius, y - radius, diam, diam);
         pGraphics.setColor(Color.BLACK);
@@ -200,6 +288,226 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
     }
   }
 
+  /**
+   * The screen coordinates are computed by <code>writeDISP</code>,
+   * for the vertices in view only.
+   */
+  @Override
+  protected void computeCoordinates(int pSize) {
+  }
+
+  /**
+   * Returns the view that fits the layout into 90% of the drawing square,
+   * with a margin of 5% (the view without camera).
+   */
+  private View fitView() {
+    Position minPos = Position.min(graph.vertices);
+    Position maxPos = Position.max(graph.vertices);
+    float lWidth = Position.width(maxPos, minPos);
+    return new View(minPos.x - 0.05f * lWidth, minPos.y - 0.05f * lWidth,
+        lWidth, 0.9f);
+  }
+
+  /**
+   * Computes the screen coordinates (without insets) of the end points
+   * of an edge in the given view, clipped to CLIP_RANGE pixels
+   * (a zoomed view maps far vertices to huge coordinates).
+   * @param pLine  Receives the coordinates x1, y1, x2, y2.
+   * @return False if the edge is completely outside the clip range.
+   */
+  private boolean projectEdge(GraphEdge pEdge, View pView, int pSize,
+                              int[] pLine) {
+    float lScale = pView.scale(pSize);
+    Position lSource = graph.vertices.get(pEdge.x).pos;
+    Position lTarget = graph.vertices.get(pEdge.y).pos;
+    // The same computation as for the vertices.
+    float x1 = (lSource.x - pView.x) * lScale;
+    float y1 = pSize - (lSource.y - pView.y) * lScale;
+    float x2 = (lTarget.x - pView.x) * lScale;
+    float y2 = pSize - (lTarget.y - pView.y) * lScale;
+
+    // Clipping (Liang-Barsky): the line is x1 + t * dx, for t in [t0, t1].
+    double lDeltaX = (double) x2 - x1;
+    double lDeltaY = (double) y2 - y1;
+    double[] lDirections = { -lDeltaX, lDeltaX, -lDeltaY, lDeltaY };
+    double[] lDistances =
+        { x1 + CLIP_RANGE, CLIP_RANGE - x1, y1 + CLIP_RANGE, CLIP_RANGE - y1 };
+    double t0 = 0;
+    double t1 = 1;
+    for (int k = 0; k < 4; ++k) {
+      if (lDirections[k] == 0) {
+        if (lDistances[k] < 0) { return false; }
+      } else {
+        double t = lDistances[k] / lDirections[k];
+        if (lDirections[k] < 0) {
+          t0 = Math.max(t0, t);
+        } else {
+          t1 = Math.min(t1, t);
+        }
+      }
+    }
+    if (t0 > t1) { return false; }
+    pLine[0] = (t0 > 0) ? (int) (x1 + t0 * lDeltaX) : (int) x1;
+    pLine[1] = (t0 > 0) ? (int) (y1 + t0 * lDeltaY) : (int) y1;
+    pLine[2] = (t1 < 1) ? (int) (x1 + t1 * lDeltaX) : (int) x2;
+    pLine[3] = (t1 < 1) ? (int) (y1 + t1 * lDeltaY) : (int) y2;
+    return true;
+  }
+
+  /**
+   * Builds the layout index: all vertices (as points) and edges
+   * of the layout, in the grid coordinates of the layout plane.
+   */
+  private void buildLayoutIndex() {
+    layoutChanged = false;
+    float lMinX = Float.MAX_VALUE;
+    float lMinY = Float.MAX_VALUE;
+    float lMaxX = -Float.MAX_VALUE;
+    float lMaxY = -Float.MAX_VALUE;
+    float lMaxDegree = 0;
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      lMinX = Math.min(lMinX, lCurrVertex.pos.x);
+      lMinY = Math.min(lMinY, lCurrVertex.pos.y);
+      lMaxX = Math.max(lMaxX, lCurrVertex.pos.x);
+      lMaxY = Math.max(lMaxY, lCurrVertex.pos.y);
+      lMaxDegree = Math.max(lMaxDegree, lCurrVertex.degree);
+    }
+    float lMinVert = Option.minVert.getFloat();
+    maxRadius =
+        (int) Math.max(Math.pow(lMaxDegree, 0.5) * lMinVert, lMinVert);
+    float lWidth = Math.max(lMaxX - lMinX, lMaxY - lMinY);
+    if (graph.vertices.isEmpty() || !(lWidth > 0)) {
+      lMinX = (graph.vertices.isEmpty()) ? 0 : lMinX;
+      lMinY = (graph.vertices.isEmpty()) ? 0 : lMinY;
+      lWidth = 1;
+    }
+    gridX = lMinX;
+    gridY = lMinY;
+    gridScale = GRID_SIZE / lWidth;
+
+    layoutIndex =
+        new ScreenIndex(GRID_SIZE + 1, GRID_SIZE + 1, graph.vertices.size()
+                                                      + graph.edges.size());
+    for (GraphVertex lCurrVertex : graph.vertices) {
+      layoutIndex.addVertex(lCurrVertex, toGrid(lCurrVertex.pos.x - gridX),
+          toGrid(lCurrVertex.pos.y - gridY), 0);
+    }
+    for (GraphEdge lEdge : graph.edges) {
+      if (!lEdge.auxiliary) {
+        Position lSource = graph.vertices.get(lEdge.x).pos;
+        Position lTarget = graph.vertices.get(lEdge.y).pos;
+        layoutIndex.addEdge(lEdge, toGrid(lSource.x - gridX),
+            toGrid(lSource.y - gridY), toGrid(lTarget.x - gridX),
+            toGrid(lTarget.y - gridY));
+      }
+    }
+    layoutIndex.build();
+  }
+
+  /** Returns the grid coordinate of a distance from the grid origin
+   *  (limited to the grid, plus one cell). */
+  private int toGrid(float pDistance) {
+    float lCoord = pDistance * gridScale;
+    return (int) Math.max(-1, Math.min(lCoord, GRID_SIZE + 1));
+  }
+
+  /**
+   * Marks the layout index as outdated:
+   * the positions or the visibility of the vertices have changed.
+   * Call-back method, invoked from within ScreenDisplay.
+   */
+  public void layoutChanged() {
+    layoutChanged = true;
+  }
+
+  /**
+   * Returns the layout position at the given point of the canvas,
+   * in the view of the last drawn frame.
+   * Call-back method, invoked from within ScreenDisplay.
+   */
+  public Position toLayout(Point pPoint) {
+    View lView = frameView;
+    if (lView == null) { return null; }
+    float lScale = lView.scale(frameSize);
+    float x = lView.x + (pPoint.x - insetleft) / lScale;
+    // Flip y-coordinate.
+    float y = lView.y + (frameSize - insetbottom - pPoint.y) / lScale;
+    return new Position(x, y, 0);
+  }
+
+  /*****************************************************************
+   * Sets the camera to the given rectangle of the canvas (i.e., zoom).
+   * Call-back method, invoked from within ScreenDisplay.
+   * @param pTopLeft      coordinates of the top left corner of the rectangular.
+   * @param pBottomRight  coordinates of the bottom right corner of the rectangular.
+   *****************************************************************/
+  public void zoomToRectangle(Point pTopLeft, Point pBottomRight) {
+    Position lTopLeft = toLayout(pTopLeft);
+    Position lBottomRight = toLayout(pBottomRight);
+    if (lTopLeft == null) { return; }
+    float lWidth =
+        Math.max(lBottomRight.x - lTopLeft.x, lTopLeft.y - lBottomRight.y);
+    if (lWidth > 0) {
+      camera = new View(lTopLeft.x, lBottomRight.y, lWidth, 1);
+    }
+  }
+
+  /*****************************************************************
+   * Zooms the camera by the given factor (greater than 1 for zooming out),
+   * keeping the layout position at the given point of the canvas.
+   * Call-back method, invoked from within ScreenDisplay.
+   *****************************************************************/
+  public void zoomAt(Point pCenter, float pFactor) {
+    View lView = (camera != null) ? camera : frameView;
+    if (lView == null) { return; }
+    float lScale = lView.scale(frameSize);
+    float lNewScale = lScale / pFactor;
+    float lX = pCenter.x - insetleft;
+    float lY = frameSize - insetbottom - pCenter.y;
+    camera =
+        new View(lView.x + lX / lScale - lX / lNewScale,
+            lView.y + lY / lScale - lY / lNewScale, lView.width * pFactor,
+            lView.fill);
+  }
+
+  /*****************************************************************
+   * Moves the camera such that the layout moves
+   * by the given number of pixels (i.e., pan).
+   * Call-back method, invoked from within ScreenDisplay.
+   *****************************************************************/
+  public void pan(int pDeltaX, int pDeltaY) {
+    View lView = (camera != null) ? camera : frameView;
+    if (lView == null) { return; }
+    float lScale = lView.scale(frameSize);
+    camera =
+        new View(lView.x - pDeltaX / lScale, lView.y + pDeltaY / lScale,
+            lView.width, lView.fill);
+  }
+
+  /**
+   * Visible region of the layout: the layout square with the lower left
+   * corner (x, y) is mapped to the drawing square, such that
+   * the given width fills the given fraction of the drawing square.
+   */
+  private static class View {
+    private final float x;
+    private final float y;
+    private final float width;
+    private final float fill;
+
+    private View(float pX, float pY, float pWidth, float pFill) {
+      x = pX;
+      y = pY;
+      width = pWidth;
+      fill = pFill;
+    }
+
+    /** Returns the number of pixels per layout unit. */
+    private float scale(int pSize) {
+      return fill * pSize / width;
+    }
+  }
+
   /**
    * Writes a vertex on screen.
    * @param curVertex  The vertex object, to access vertex attributes.
@@ -247,20 +555,10 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
       mGraphics.drawString(lVertexName, xPos + radius + 3, yPos + 3);
     }
 
-    try {
-      // For interactive annotation: Store vertex names at their positions in the maps.
-      int endX = Math.min(xPos + radius, xMap.size() - 1);
-      for (int pos = Math.max(startX, 0); pos <= endX; ++pos) {
-        xMap.get(pos).add(curVertex.name);
-      }
-      int endY = Math.min(yPos + radius, yMap.size() - 1);
-      for (int pos = Math.max(startY, 0); pos <= endY; ++pos) {
-        yMap.get(pos).add(curVertex.name);
-      }
-    } catch (Exception e) {
-      // Tolerate exception (it's because of the concurrent thread).
+    // For interactive annotation: Store the vertex in the index.
+    if (nextIndex != null) {
+      nextIndex.addVertex(curVertex, xPos, yPos, radius);
     }
-
   }
 
   /**
@@ -300,57 +598,155 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
       int yPos = (yPos1 + yPos2 + Option.fontSize.getInt()) / 2;
       mGraphics.drawString(edge.relName, xPos, yPos);
     }
-    ///////////////////////////////////////////////////
-    // For interactive annotation: Store edges at their positions in the maps.
-    // Using Bresenham's line algorithm.
-    boolean steep = Math.abs(yPos2 - yPos1) > Math.abs(xPos2 - xPos1);
-    if (steep) {
-      int tmp = xPos1;
-      xPos1 = yPos1;
-      yPos1 = tmp;
-      tmp = xPos2;
-      xPos2 = yPos2;
-      yPos2 = tmp;
-    }
-    if (xPos1 > xPos2) {
-      int tmp = xPos1;
-      xPos1 = xPos2;
-      xPos2 = tmp;
-      tmp = yPos1;
-      yPos1 = yPos2;
-      yPos2 = tmp;
-    }
-    int deltax = xPos2 - xPos1;
-    int deltay = Math.abs(yPos2 - yPos1);
-    float error = 0;
-    float deltaerr = ((float) deltay) / deltax;
-    int y = yPos1;
-    int ystep;
-    if (yPos1 < yPos2) {
-      ystep = 1;
-    } else {
-      ystep = -1;
+    // For interactive annotation: Store the edge in the index.
+    if (nextIndex != null) {
+      nextIndex.addEdge(edge, xPos1, yPos1, xPos2, yPos2);
     }
-    for (int x = xPos1; x <= xPos2; ++x) {
-      try {
-        if (steep) {
-          if (y >= 0 && y < xSize && x >= 0 && x < ySize) {
-            edgeMap.get(y).get(x).add(edge);
-          }
-        } else {
-          if (x >= 0 && x < xSize && y >= 0 && y < ySize) {
-            edgeMap.get(x).get(y).add(edge);
-          }
+  }
+
+  /**
+   * Writes the edges in bundles (level of detail for large graphs):
+   * the edges of the same color whose start points are in the same
+   * square of pBinSize pixels, and whose end points are in the same
+   * square, are drawn as one line between their mean end points.
+   * The opacity of a bundle is proportional to its number of edges,
+   * and short bundles are drawn without arrow head. So the drawing
+   * time depends on the number of bundles, which is bounded by the
+   * size of the screen, not by the number of edges.
+   * @param pEdges    Edges to draw (e.g., the edges in view).
+   * @param pView     View of the frame.
+   * @param pSize     Size of the output drawing square.
+   * @param pBinSize  Size of the squares (in pixels).
+   */
+  private void writeEdgeBundles(List<GraphEdge> pEdges, View pView,
+                                int pSize, int pBinSize) {
+    List<EdgeBundle> lBundles = new ArrayList<EdgeBundle>();
+    // Pair of square numbers to the first bundle.
+    LongIntMap lBundleOfSquares = new LongIntMap();
+    // Square (column and row) to its number.
+    LongIntMap lSquareNumbers = new LongIntMap();
+    int lMaxCount = 1;
+    int[] lLine = new int[4];
+    for (GraphEdge lEdge : pEdges) {
+      if (!isEdgeDrawn(lEdge) || !projectEdge(lEdge, pView, pSize, lLine)) {
+        continue;
+      }
+      int x1 = lLine[0] + insetleft;
+      int y1 = lLine[1] - insetbottom;
+      int x2 = lLine[2] + insetleft;
+      int y2 = lLine[3] - insetbottom;
+      //reflexive edges are not allowed by specification
+      if (x1 == x2 && y1 == y2) {
+        continue;
+      }
+      long lSquares =
+                      LongIntMap.pack(
+                          square(lSquareNumbers, x1, y1, pBinSize),
+                          square(lSquareNumbers, x2, y2, pBinSize));
+      int lFirst = lBundleOfSquares.get(lSquares);
+      EdgeBundle lBundle = null;
+      if (lFirst != LongIntMap.NOT_FOUND) {
+        lBundle = lBundles.get(lFirst);
+        while (lBundle != null && !lBundle.color.equals(lEdge.color)) {
+          lBundle = lBundle.sameSquares;
         }
-        error += deltaerr;
-        if (error >= 0.5) {
-          y += ystep;
-          error -= 1.0;
+      }
+      if (lBundle == null) {
+        lBundle = new EdgeBundle(lEdge.color);
+        if (lFirst != LongIntMap.NOT_FOUND) {
+          lBundle.sameSquares = lBundles.get(lFirst).sameSquares;
+          lBundles.get(lFirst).sameSquares = lBundle;
+        } else {
+          lBundleOfSquares.put(lSquares, lBundles.size());
         }
-      } catch (Exception e) {
-        // Tolerate exception (it's because of the concurrent thread).
+        lBundles.add(lBundle);
+      }
+      lBundle.add(lEdge, x1, y1, x2, y2);
+      lMaxCount = Math.max(lMaxCount, lBundle.edges.size());
+    }
+
+    for (EdgeBundle lBundle : lBundles) {
+      int lCount = lBundle.edges.size();
+      int x1 = (int) (lBundle.sumX1 / lCount);
+      int y1 = (int) (lBundle.sumY1 / lCount);
+      int x2 = (int) (lBundle.sumX2 / lCount);
+      int y2 = (int) (lBundle.sumY2 / lCount);
+      if (x1 == x2 && y1 == y2) {
+        continue;
+      }
+      int lAlpha = Math.max(MIN_ALPHA, (int) (255L * lCount / lMaxCount));
+      Color lColor = lBundle.color;
+      mGraphics.setColor(new Color(lColor.getRed(), lColor.getGreen(), lColor
+          .getBlue(), lAlpha));
+      long lDeltaX = x2 - x1;
+      long lDeltaY = y2 - y1;
+      if (lDeltaX * lDeltaX + lDeltaY * lDeltaY >= MIN_ARROW_LENGTH
+                                                   * MIN_ARROW_LENGTH) {
+        paintArrow(mGraphics, x1, y1, x2, y2);
+      } else {
+        mGraphics.drawLine(x1, y1, x2, y2);
+      }
+      //Draw the annotation
+      if (lBundle.named != null) {
+        int xPos = (x1 + x2 + Option.fontSize.getInt()) / 2;
+        int yPos = (y1 + y2 + Option.fontSize.getInt()) / 2;
+        mGraphics.drawString(lBundle.named.relName, xPos, yPos);
+      }
+      // For interactive annotation: Store the edges in the index.
+      if (nextIndex != null) {
+        nextIndex.addEdges(lBundle.edges.toArray(new GraphEdge[lCount]), x1,
+            y1, x2, y2);
       }
+    }
+  }
 
+  /**
+   * Returns the number of the square of size pBinSize
+   * that contains the point (x, y). The squares are numbered
+   * consecutively in the order of their first request.
+   * @param pNumbers  Square (column and row, packed) to its number.
+   */
+  private static int square(LongIntMap pNumbers, int x, int y, int pBinSize) {
+    int lCol = (x >= 0) ? x / pBinSize : (x - pBinSize + 1) / pBinSize;
+    int lRow = (y >= 0) ? y / pBinSize : (y - pBinSize + 1) / pBinSize;
+    long lSquare = LongIntMap.pack(lCol, lRow);
+    int result = pNumbers.putIfAbsent(lSquare, pNumbers.size());
+    if (result == LongIntMap.NOT_FOUND) {
+      result = pNumbers.size() - 1;
+    }
+    return result;
+  }
+
+  /**
+   * Edges drawn as one line: their end points are in the same squares,
+   * and they have the same color.
+   */
+  private static class EdgeBundle {
+    private final Color           color;
+    private final List<GraphEdge> edges       = new ArrayList<GraphEdge>();
+    /** Sums of the end point coordinates. */
+    private long                  sumX1       = 0;
+    private long                  sumY1       = 0;
+    private long                  sumX2       = 0;
+    private long                  sumY2       = 0;
+    /** An edge to annotate, or null. */
+    private GraphEdge             named       = null;
+    /** Next bundle of the same squares (with another color). */
+    private EdgeBundle            sameSquares = null;
+
+    private EdgeBundle(Color pColor) {
+      color = pColor;
+    }
+
+    private void add(GraphEdge pEdge, int x1, int y1, int x2, int y2) {
+      edges.add(pEdge);
+      sumX1 += x1;
+      sumY1 += y1;
+      sumX2 += x2;
+      sumY2 += y2;
+      if (pEdge.showName && named == null) {
+        named = pEdge;
+      }
     }
   }
 
@@ -360,23 +756,33 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
    * @param fileName     Name of the output file to write the layout to.
    *****************************************************************/
   public void writeFileLayout(String fileName) {
+    OutputStream lOutStream = null;
     try {
-      PrintWriter out =
-                        new PrintWriter(new BufferedWriter(new FileWriter(
-                            fileName)));
-      WriterData dataWriter = new WriterDataLAY(out, graph); // Default, also .lay.
+      lOutStream = new FileOutputStream(fileName);
+      WriterData dataWriter = new WriterDataLAY(lOutStream, graph); // Default, also .lay.
       if (fileName.endsWith(".svg")) {
-        dataWriter = new WriterDataGraphicsSVG(out, graph, options);
+        dataWriter = new WriterDataGraphicsSVG(lOutStream, graph, options);
       } else if (fileName.endsWith(".wrl")) {
-        dataWriter = new WriterDataGraphicsVRML(out, graph, options);
+        dataWriter = new WriterDataGraphicsVRML(lOutStream, graph, options);
+      } else if (fileName.endsWith(".glb")) {
+        dataWriter = new WriterDataGLB(lOutStream, graph, options);
       }
       dataWriter.write();
-      out.flush();
-      out.close();
+      lOutStream.close();
+      lOutStream = null;
       System.err.println("Wrote layout to output file '" + fileName + "'.");
     } catch (Exception e) {
       System.err.println("Exception while writing file '" + fileName + "': ");
       System.err.println(e);
+    } finally {
+      if (lOutStream != null) {
+        try {
+          lOutStream.close();
+        } catch (IOException e) {
+          System.err.println("Exception while closing output file: ");
+          System.err.println(e);
+        }
+      }
     }
   }
 
@@ -402,21 +808,19 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
    * @return number of names toggled
    ***************************************************************************/
   public int toggleNames(Point p) {
+    ScreenIndex lIndex = screenIndex;
+    if (lIndex == null) { return 0; }
     int xPos = (int) p.getX();
     int yPos = (int) p.getY();
-    Set<String> tmp = new TreeSet<String>(xMap.get(xPos));
-    tmp.retainAll(yMap.get(yPos));
     int nb = 0;
-    for (String name : tmp) {
+    for (GraphVertex curVertex : lIndex.getVertices(xPos, yPos)) {
       ++nb;
-      GraphVertex curVertex = graph.nameToVertex.get(name);
       curVertex.showName = !curVertex.showName;
     }
 
     //edges
     if (Option.showEdges.getBool()) {
-      Set<GraphEdge> edgesIndex = edgeMap.get(xPos).get(yPos);
-      for (GraphEdge it : edgesIndex) {
+      for (GraphEdge it : lIndex.getEdges(xPos, yPos)) {
         ++nb;
         it.showName = !it.showName;
       }
@@ -431,20 +835,17 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
    * @param p       coordinates.
    ***********************************************************************/
   public Set<String> getNames(Point p) {
+    Set<String> tmp = new TreeSet<String>();
+    ScreenIndex lIndex = screenIndex;
+    if (lIndex == null) { return tmp; }
     int xPos = (int) p.getX();
     int yPos = (int) p.getY();
-    Set<String> tmp = new TreeSet<String>();
-    try {
-      if (xPos >= xMap.size() || yPos >= yMap.size()) { return tmp; }
-      tmp.addAll(xMap.get(xPos));
-      tmp.retainAll(yMap.get(yPos));
-    } catch (Exception e) {
-      // Tolerate exception (it's because of the concurrent thread).
+    for (GraphVertex curVertex : lIndex.getVertices(xPos, yPos)) {
+      tmp.add(curVertex.name);
     }
     //edges
     if (Option.showEdges.getBool()) {
-      Set<GraphEdge> edgesIndex = edgeMap.get(xPos).get(yPos);
-      for (GraphEdge it : edgesIndex) {
+      for (GraphEdge it : lIndex.getEdges(xPos, yPos)) {
         tmp.add(it.relName);
       }
     }
@@ -452,44 +853,11 @@ public class WriterDataGraphicsDISP extends WriterDataGraphics {
   }
 
   /*****************************************************************
-   * Restrict the set of vertices displayed on the screen to
-   * the vertices within the given rectangular (i.e., zoom).
-   * Call-back method, invoked from within ScreenDisplay.
-   * @param pTopLeft      coordinates of the top left corner of the rectangular.
-   * @param pBottomRight  coordinates of the bottom right corner of the rectangular.
-   *****************************************************************/
-  public void restrictShowedVertices(Point pTopLeft, Point pBottomRight) {
-    int end = (int) Math.min(pBottomRight.getX(), xMap.size());
-    Set<String> xNodes = new TreeSet<String>();
-    for (int i = (int) pTopLeft.getX(); i < end; ++i) {
-      xNodes.addAll(xMap.get(i));
-    }
-    end = (int) Math.min(pBottomRight.getY(), yMap.size());
-    Set<String> yNodes = new TreeSet<String>();
-    for (int i = (int) pTopLeft.getY(); i < end; ++i) {
-      yNodes.addAll(yMap.get(i));
-    }
-    Set<String> lNodesToKeep = xNodes;
-    lNodesToKeep.retainAll(yNodes);
-    for (int i = 0; i < graph.vertices.size(); ++i) {
-      GraphVertex curVertex = graph.vertices.get(i);
-      if (!lNodesToKeep.contains(curVertex.name)) {
-        curVertex.showVertex = false;
-      }
-    }
-    // Ashgan starts
-    // Every time the canvas view changes, the 
-    // undo list in the associated display filter instance
-    // should also be updated
-    this.dispFilter.resetUndoList(graph.vertices);
-    // Ashgan ends
-  }
-
-  /*****************************************************************
-   * Reset vertex restriction that was set by restrictShowedVertices.
+   * Reset the camera (zoom and pan) and the vertex restriction.
    * Call-back method, invoked from within ScreenDisplay.
    *****************************************************************/
   public void resetRestriction() {
+    camera = null;
     // Handle vertex options.
     for (GraphVertex curVertex : graph.vertices) {
       // hideSource (do not show vertex if it is source of an edge).
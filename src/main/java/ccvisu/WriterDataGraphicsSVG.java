@@ -29,19 +29,45 @@
 package ccvisu;
 
 import java.awt.Color;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import ccvisu.Options.Option;
 
 /*****************************************************************
  * Writer for layouts in SVG format (Scalable Vector Graphs, XML, W3C).
+ * With option compactSVG, colors are CSS classes, one event handler
+ * on the document creates the annotations on demand,
+ * each edge is one path (line and arrow head),
+ * and vertices and edges that would be drawn exactly over
+ * an equal one (same position, size, and color) are omitted.
  * @version  $Revision: 1.31 $; $Date: 2007/12/15 01:20:51 $
  * @author   Dirk Beyer
  *****************************************************************/
-public class WriterDataGraphicsSVG extends WriterDataGraphics {
+public class WriterDataGraphicsSVG extends WriterDataGraphics
+    implements RecordFormatter {
 
   /** used to build unique id for the edges */
-  private int edgeNumber = 0;
+  private int                         edgeNumber     = 0;
+
+  // For compact SVG.
+  /** Colors (RGB) to CSS class names, for vertices and edges. */
+  private final Map<Integer, String>  vertexClasses  =
+                                                       new HashMap<Integer, String>();
+  private final Map<Integer, String>  edgeClasses    =
+                                                       new HashMap<Integer, String>();
+  /** Drawn positions (packed x,y) to the index of the last circle
+   *  drawn there, with its radius and color. */
+  private final LongIntMap            drawnVertices  = new LongIntMap();
+  private int[]                       drawnRadius    = new int[16];
+  private int[]                       drawnColor     = new int[16];
+  private int                         drawnNr        = 0;
+  /** Drawn edges (packed ids of the end positions) to their color. */
+  private final LongIntMap            endpointIds    = new LongIntMap();
+  private final LongIntMap            drawnEdges     = new LongIntMap();
 
   /**
    * Constructor.
@@ -50,12 +76,23 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
     super(out, graph, opt);
   }
 
+  /**
+   * Constructor for output to a byte stream.
+   */
+  public WriterDataGraphicsSVG(OutputStream out, GraphData graph, Options opt) {
+    super(out, graph, opt);
+  }
+
   /*****************************************************************
    * Writes the layout in graphics format SVG.
    *****************************************************************/
   @Override
   public void write() {
     int size = (int) (1000 * Option.scalePos.getFloat());
+    if (Option.compactSVG.getBool()) {
+      writeCompact(size);
+      return;
+    }
 
     // Header.
     out
@@ -218,6 +255,15 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
 
     // Footer.
     out.print("</svg> " + WriterData.endl);
+    out.flush();
+  }
+
+  /**
+   * The compact format depends on the records drawn before.
+   */
+  @Override
+  public boolean formatsInParallel() {
+    return !Option.compactSVG.getBool();
   }
 
   /**
@@ -231,7 +277,21 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
   @Override
   public void writeVertex(GraphVertex curVertex, int xPos, int yPos, int zPos,
                           int radius) {
+    if (Option.compactSVG.getBool()) {
+      writeVertexCompact(curVertex, xPos, yPos, radius);
+      return;
+    }
+    StringBuilder lOut = new StringBuilder();
+    formatVertex(lOut, curVertex, xPos, yPos, zPos, radius);
+    out.append(lOut);
+  }
 
+  /**
+   * Appends a vertex in SVG format to pOut.
+   */
+  @Override
+  public void formatVertex(StringBuilder pOut, GraphVertex curVertex,
+                           int xPos, int yPos, int zPos, int radius) {
     String name = curVertex.name;
     //remove double quote
     if (name.startsWith("\"") && name.endsWith("\"")) {
@@ -258,15 +318,15 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
                      .length());
 
     // Write the definition for the annotation.
-    out.print(" <defs>" + "  <text" + " id=\"" + name + "__text\"" + " x=\""
-              + (xPos + radius + 3) + "\"" + " y=\"" + (yPos + 3) + "\""
-              + " style=\"font-family: helvetica, sans-serif;font-size:"
-              + Option.fontSize.getInt() + "pt;fill:#" + textColStr + "\"> "
-              + name + (curVertex.hasSelfLoop ? "-LOOP" : "") + " </text>"
-              + " </defs> " + WriterData.endl);
+    pOut.append(" <defs>" + "  <text" + " id=\"" + name + "__text\"" + " x=\""
+                + (xPos + radius + 3) + "\"" + " y=\"" + (yPos + 3) + "\""
+                + " style=\"font-family: helvetica, sans-serif;font-size:"
+                + Option.fontSize.getInt() + "pt;fill:#" + textColStr + "\"> "
+                + name + (curVertex.hasSelfLoop ? "-LOOP" : "") + " </text>"
+                + " </defs> " + WriterData.endl);
 
     // Write graphical objects.
-    out.print(" <g id=\"contents\"> " + WriterData.endl);
+    pOut.append(" <g id=\"contents\"> " + WriterData.endl);
 
     // Write vertex.
     String strokeString = "";
@@ -275,31 +335,31 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
     }
     //link information
     if (Option.openURL.getBool()) {
-      out.println("    <a xlink:href=\"" + name + "\">");
+      pOut.append("    <a xlink:href=\"" + name + "\">").append(WriterData.endl);
     }
 
-    out.print("  <circle" + " id=\"" + name + "\"" + " cx=\"" + xPos + "\""
-              + " cy=\"" + yPos + "\"" + " r=\"" + radius + "\"" + " fill=\"#"
-              + colorStr + "\"" + strokeString
-              + " onmouseover=\"annot_toggle(evt, '_move')\""
-              + " onmouseout=\"annot_toggle(evt, '_move')\""
-              + " onclick=\"annot_toggle(evt, '_click')\"" + " /> "
-              + WriterData.endl);
+    pOut.append("  <circle" + " id=\"" + name + "\"" + " cx=\"" + xPos + "\""
+                + " cy=\"" + yPos + "\"" + " r=\"" + radius + "\"" + " fill=\"#"
+                + colorStr + "\"" + strokeString
+                + " onmouseover=\"annot_toggle(evt, '_move')\""
+                + " onmouseout=\"annot_toggle(evt, '_move')\""
+                + " onclick=\"annot_toggle(evt, '_click')\"" + " /> "
+                + WriterData.endl);
 
     if (Option.openURL.getBool()) {
-      out.println("    </a>");
+      pOut.append("    </a>").append(WriterData.endl);
     }
 
     // Write annotation, only if required.
     if (curVertex.showName) {
-      out.print("  <text" + " id=\"" + name + "__text_click\"" + " x=\""
-                + (xPos + radius + 3) + "\"" + " y=\"" + (yPos + 3) + "\""
-                + " style=\"font-family: helvetica, sans-serif;font-size:"
-                + Option.fontSize.getInt() + "pt;fill:#" + textColStr + "\"> "
-                + name + " </text> " + WriterData.endl);
+      pOut.append("  <text" + " id=\"" + name + "__text_click\"" + " x=\""
+                  + (xPos + radius + 3) + "\"" + " y=\"" + (yPos + 3) + "\""
+                  + " style=\"font-family: helvetica, sans-serif;font-size:"
+                  + Option.fontSize.getInt() + "pt;fill:#" + textColStr + "\"> "
+                  + name + " </text> " + WriterData.endl);
     }
 
-    out.print(" </g> " + WriterData.endl);
+    pOut.append(" </g> " + WriterData.endl);
   }
 
   /**
@@ -315,7 +375,25 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
   @Override
   public void writeEdge(GraphEdge edge, int xPos1, int yPos1, int zPos1,
                         int xPos2, int yPos2, int zPos2) {
+    if (Option.compactSVG.getBool()) {
+      writeEdgeCompact(edge, xPos1, yPos1, xPos2, yPos2);
+      return;
+    }
+    StringBuilder lOut = new StringBuilder();
+    formatEdge(lOut, edgeNumber, edge, xPos1, yPos1, zPos1, xPos2, yPos2,
+        zPos2);
+    out.append(lOut);
+    ++edgeNumber;
+  }
 
+  /**
+   * Appends an edge in SVG format to pOut.
+   * @param pEdgeNr  Number of the edge, for unique ids.
+   */
+  @Override
+  public void formatEdge(StringBuilder pOut, int pEdgeNr, GraphEdge edge,
+                         int xPos1, int yPos1, int zPos1,
+                         int xPos2, int yPos2, int zPos2) {
     String edgeName = edge.relName;
 
     //Prepare color string for edge and annotation text.
@@ -328,64 +406,313 @@ public class WriterDataGraphicsSVG extends WriterDataGraphics {
     colStr = colStr.substring(colStr.length() - 6, colStr.length());
 
     //    Write the definition for the annotation.
-    out.print(" <defs>" + "  <text" + " id=\"" + edgeName + edgeNumber
-              + "__text\"" + " x=\""
-              + ((xPos1 + xPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
-              + " y=\"" + ((yPos1 + yPos2) / 2 + Option.fontSize.getInt() + 3)
-              + "\"" + " style=\"font-family: helvetica, sans-serif;font-size:"
-              + Option.fontSize.getInt() + "pt;fill:#" + colStr + "\"> "
-              + edgeName + " </text>" + " </defs> " + WriterData.endl);
+    pOut.append(" <defs>" + "  <text" + " id=\"" + edgeName + pEdgeNr
+                + "__text\"" + " x=\""
+                + ((xPos1 + xPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
+                + " y=\"" + ((yPos1 + yPos2) / 2 + Option.fontSize.getInt() + 3)
+                + "\"" + " style=\"font-family: helvetica, sans-serif;font-size:"
+                + Option.fontSize.getInt() + "pt;fill:#" + colStr + "\"> "
+                + edgeName + " </text>" + " </defs> " + WriterData.endl);
 
     // Write graphical objects.
-    out.print(" <g id=\"contents\" stroke=\"#" + colStr + "\"> "
-              + WriterData.endl);
+    pOut.append(" <g id=\"contents\" stroke=\"#" + colStr + "\"> "
+                + WriterData.endl);
 
     // Draw the line.
-    out
-        .print("<line id=\"" + edgeName + edgeNumber
-               + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + yPos1
-               + "\" y2=\"" + yPos2 + "\" x1=\"" + xPos1 + "\" x2=\"" + xPos2
-               + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
-               + " onmouseout=\"annot_toggle(evt, '_move')\""
-               + " onclick=\"annot_toggle(evt, '_click')\" />"
-               + WriterData.endl);
+    pOut
+        .append("<line id=\"" + edgeName + pEdgeNr
+                + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + yPos1
+                + "\" y2=\"" + yPos2 + "\" x1=\"" + xPos1 + "\" x2=\"" + xPos2
+                + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
+                + " onmouseout=\"annot_toggle(evt, '_move')\""
+                + " onclick=\"annot_toggle(evt, '_click')\" />"
+                + WriterData.endl);
 
     // Draw the arrow head.
     int[] arr = paintArrow(xPos1, yPos1, xPos2, yPos2);
 
-    out
-        .print("<line id=\"" + edgeName + edgeNumber + "_tip1"
-               + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + arr[1]
-               + "\" y2=\"" + arr[3] + "\" x1=\"" + arr[0] + "\" x2=\""
-               + arr[2] + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
-               + " onmouseout=\"annot_toggle(evt, '_move')\""
-               + " onclick=\"annot_toggle(evt, '_click')\" />"
-               + WriterData.endl);
+    pOut
+        .append("<line id=\"" + edgeName + pEdgeNr + "_tip1"
+                + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + arr[1]
+                + "\" y2=\"" + arr[3] + "\" x1=\"" + arr[0] + "\" x2=\""
+                + arr[2] + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
+                + " onmouseout=\"annot_toggle(evt, '_move')\""
+                + " onclick=\"annot_toggle(evt, '_click')\" />"
+                + WriterData.endl);
 
-    out
-        .print("<line id=\"" + edgeName + edgeNumber + "_tip2"
-               + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + arr[5]
-               + "\" y2=\"" + arr[7] + "\" x1=\"" + arr[4] + "\" x2=\""
-               + arr[6] + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
-               + " onmouseout=\"annot_toggle(evt, '_move')\""
-               + " onclick=\"annot_toggle(evt, '_click')\" />"
-               + WriterData.endl);
+    pOut
+        .append("<line id=\"" + edgeName + pEdgeNr + "_tip2"
+                + "\" style=\"stroke-width:1;fill:none;\" " + "y1=\"" + arr[5]
+                + "\" y2=\"" + arr[7] + "\" x1=\"" + arr[4] + "\" x2=\""
+                + arr[6] + "\" " + " onmouseover=\"annot_toggle(evt, '_move')\""
+                + " onmouseout=\"annot_toggle(evt, '_move')\""
+                + " onclick=\"annot_toggle(evt, '_click')\" />"
+                + WriterData.endl);
 
     // Write annotation, only if required.
     if (Option.annotAll.getBool()) {
-      out.print("  <text" + " id=\"" + edgeName + edgeNumber + "__text\""
-                + " x=\""
-                + ((xPos1 + xPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
-                + " y=\""
-                + ((yPos1 + yPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
-                + " style=\"font-family: helvetica, sans-serif;font-size:"
-                + Option.fontSize.getInt() + "pt\"> " + edgeName + " </text> "
-                + WriterData.endl);
+      pOut.append("  <text" + " id=\"" + edgeName + pEdgeNr + "__text\""
+                  + " x=\""
+                  + ((xPos1 + xPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
+                  + " y=\""
+                  + ((yPos1 + yPos2) / 2 + Option.fontSize.getInt() + 3) + "\""
+                  + " style=\"font-family: helvetica, sans-serif;font-size:"
+                  + Option.fontSize.getInt() + "pt\"> " + edgeName + " </text> "
+                  + WriterData.endl);
+    }
+
+    pOut.append(" </g> " + WriterData.endl);
+  }
+
+  /*****************************************************************
+   * Writes the layout in compact SVG format.
+   *****************************************************************/
+  private void writeCompact(int size) {
+    int lFontSize = Option.fontSize.getInt();
+    Color textColor = new Color(0xffffffff - options.backColor.get().getRGB());
+
+    // Header, with the event handlers on the document element.
+    out.print("<?xml version=\"1.0\" standalone=\"no\"?>" + WriterData.endl
+              + "<!-- Generated by " + Options.toolDescription()
+              + WriterData.endl + "     " + Options.currentDateTime()
+              + " -->" + WriterData.endl
+              + "<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\""
+              + " xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+              + " width=\"100%\" height=\"100%\" viewBox=\"0 0 " + size + " "
+              + size + "\"" + WriterData.endl
+              + " onmouseover=\"annot(evt,'_move')\""
+              + " onmouseout=\"annot(evt,'_move')\""
+              + " onclick=\"annot(evt,'_click')\">" + WriterData.endl
+              + "<title>Visualization " + escape(options.inputName)
+              + "</title>" + WriterData.endl);
+
+    // Styles: one class per vertex color and per edge color.
+    out.print("<style type=\"text/css\"><![CDATA[" + WriterData.endl
+              + "text{font-family:helvetica,sans-serif;font-size:" + lFontSize
+              + "pt;fill:#" + hex(textColor.getRGB()) + "}" + WriterData.endl
+              + "path{stroke-width:1;fill:none}" + WriterData.endl);
+    if (Option.blackCircle.getBool()) {
+      out.print("circle{stroke:black}" + WriterData.endl);
+    }
+    for (GraphVertex lVertex : graph.vertices) {
+      int lRGB = lVertex.color.getRGB() & 0x00FFFFFF;
+      if (!vertexClasses.containsKey(lRGB)) {
+        String lClass = "c" + vertexClasses.size();
+        vertexClasses.put(lRGB, lClass);
+        out.print("." + lClass + "{fill:#" + hex(lRGB) + "}" + WriterData.endl);
+      }
+    }
+    if (Option.showEdges.getBool()) {
+      for (GraphEdge lEdge : graph.edges) {
+        int lRGB = lEdge.color.getRGB() & 0x00FFFFFF;
+        if (!edgeClasses.containsKey(lRGB)) {
+          String lClass = "e" + edgeClasses.size();
+          edgeClasses.put(lRGB, lClass);
+          out.print("." + lClass + "{stroke:#" + hex(lRGB) + "}" + WriterData.endl
+                    + "text." + lClass + "{fill:#" + hex(lRGB)
+                    + ";stroke:none}" + WriterData.endl);
+        }
+      }
+    }
+    out.print("]]></style>" + WriterData.endl);
+
+    // One handler for all circles (vertices) and paths (edges):
+    // adds or removes a text with the name of the element that was
+    // clicked on / pointed to. A vertex's name is its id,
+    // an edge's relation name is its id up to the last dot.
+    out.print("<script><![CDATA[" + WriterData.endl
+              + "function annot(evt, postfix) {" + WriterData.endl
+              + "  var t = evt.target;" + WriterData.endl
+              + "  var tag = t.localName;" + WriterData.endl
+              + "  if (!t.id || (tag != 'circle' && tag != 'path')) return;"
+              + WriterData.endl
+              + "  var doc = t.ownerDocument;" + WriterData.endl
+              + "  var n = doc.getElementById(t.id + '__text' + postfix);"
+              + WriterData.endl
+              + "  if (n) { n.parentNode.removeChild(n); return; }"
+              + WriterData.endl
+              + "  n = doc.createElementNS('http://www.w3.org/2000/svg', 'text');"
+              + WriterData.endl
+              + "  var label, x, y;" + WriterData.endl
+              + "  if (tag == 'circle') {" + WriterData.endl
+              + "    var r = +t.getAttribute('r');" + WriterData.endl
+              + "    x = +t.getAttribute('cx') + r + 3;" + WriterData.endl
+              + "    y = +t.getAttribute('cy') + 3;" + WriterData.endl
+              + "    label = t.id;" + WriterData.endl
+              + "    if (/(^| )l( |$)/.test(t.getAttribute('class'))) label += '-LOOP';"
+              + WriterData.endl
+              + "  } else {" + WriterData.endl
+              + "    var c = t.getAttribute('d').match(/-?[0-9]+/g);"
+              + WriterData.endl
+              + "    x = ((+c[0] + +c[2]) / 2 | 0) + " + (lFontSize + 3) + ";"
+              + WriterData.endl
+              + "    y = ((+c[1] + +c[3]) / 2 | 0) + " + (lFontSize + 3) + ";"
+              + WriterData.endl
+              + "    label = t.id.substring(0, t.id.lastIndexOf('.'));"
+              + WriterData.endl
+              + "    n.setAttribute('class', t.getAttribute('class'));"
+              + WriterData.endl
+              + "  }" + WriterData.endl
+              + "  n.setAttribute('id', t.id + '__text' + postfix);"
+              + WriterData.endl
+              + "  n.setAttribute('x', x);" + WriterData.endl
+              + "  n.setAttribute('y', y);" + WriterData.endl
+              + "  n.appendChild(doc.createTextNode(label));" + WriterData.endl
+              + "  doc.documentElement.appendChild(n);" + WriterData.endl
+              + "  window.status = t.id;" + WriterData.endl + "}"
+              + WriterData.endl + "]]></script>" + WriterData.endl);
+
+    // Body.
+    writeGraphicsLayout(graph.vertices, graph.edges, size);
+
+    // Footer.
+    out.print("</svg>" + WriterData.endl);
+    out.flush();
+  }
+
+  /**
+   * Writes a vertex in compact SVG format, unless an equal circle
+   * was drawn at the same position, or the circle is not visible.
+   */
+  private void writeVertexCompact(GraphVertex curVertex, int xPos, int yPos,
+                                  int radius) {
+    String name = curVertex.name;
+    //remove double quote
+    if (name.startsWith("\"") && name.endsWith("\"")) {
+      name = name.substring(1, name.length() - 1);
+    }
+    name = escape(name);
+
+    int lRGB = curVertex.color.getRGB() & 0x00FFFFFF;
+    long lPos = LongIntMap.pack(xPos, yPos);
+    int lDrawn = drawnVertices.get(lPos);
+    if (!curVertex.showName) {
+      if (radius <= 0) { return; }
+      if (lDrawn != LongIntMap.NOT_FOUND && drawnRadius[lDrawn] == radius
+          && drawnColor[lDrawn] == lRGB) {
+        // Covered by the equal circle drawn before.
+        return;
+      }
+    }
+    if (drawnNr == drawnRadius.length) {
+      drawnRadius = Arrays.copyOf(drawnRadius, 2 * drawnNr);
+      drawnColor = Arrays.copyOf(drawnColor, 2 * drawnNr);
+    }
+    drawnRadius[drawnNr] = radius;
+    drawnColor[drawnNr] = lRGB;
+    drawnVertices.put(lPos, drawnNr);
+    ++drawnNr;
+
+    StringBuilder lLine = new StringBuilder(96);
+    if (Option.openURL.getBool()) {
+      lLine.append("<a xlink:href=\"").append(name).append("\">");
+    }
+    lLine.append("<circle id=\"").append(name).append("\" class=\"")
+        .append(vertexClasses.get(lRGB));
+    if (curVertex.hasSelfLoop) {
+      lLine.append(" l");
+    }
+    lLine.append("\" cx=\"").append(xPos).append("\" cy=\"").append(yPos)
+        .append("\" r=\"").append(radius).append("\"/>");
+    if (Option.openURL.getBool()) {
+      lLine.append("</a>");
+    }
+    // Write annotation, only if required.
+    if (curVertex.showName) {
+      lLine.append("<text id=\"").append(name).append("__text_click\" x=\"")
+          .append(xPos + radius + 3).append("\" y=\"").append(yPos + 3)
+           .append("\">").append(name).append("</text>");
     }
+    out.print(lLine.append(WriterData.endl));
+  }
 
-    out.print(" </g> " + WriterData.endl);
+  /**
+   * Writes an edge in compact SVG format, as one path of the line
+   * and the arrow head, unless an edge of the same color
+   * was drawn between the same positions, or the edge has length 0.
+   */
+  private void writeEdgeCompact(GraphEdge edge, int xPos1, int yPos1,
+                                int xPos2, int yPos2) {
+    if (xPos1 == xPos2 && yPos1 == yPos2) { return; }
+    int lRGB = edge.color.getRGB() & 0x00FFFFFF;
+    long lKey =
+                LongIntMap.pack(endpointId(xPos1, yPos1), endpointId(xPos2,
+                    yPos2));
+    if (drawnEdges.put(lKey, lRGB) == lRGB) {
+      // Covered by the equal edge drawn before.
+      ++edgeNumber;
+      return;
+    }
 
+    String lClass = edgeClasses.get(lRGB);
+    String edgeName = escape(edge.relName);
+    int[] arr = paintArrow(xPos1, yPos1, xPos2, yPos2);
+    StringBuilder lLine = new StringBuilder(128);
+    lLine.append("<path id=\"").append(edgeName).append('.')
+        .append(edgeNumber).append("\" class=\"").append(lClass)
+         .append("\" d=\"M").append(xPos1).append(' ').append(yPos1)
+         .append('L').append(xPos2).append(' ').append(yPos2);
+    lLine.append('M').append(arr[2]).append(' ').append(arr[3]).append('L')
+        .append(arr[0]).append(' ').append(arr[1]).append('L')
+         .append(arr[6]).append(' ').append(arr[7]);
+    lLine.append("\"/>");
+    // Write annotation, only if required.
+    if (Option.annotAll.getBool()) {
+      lLine.append("<text class=\"").append(lClass).append("\" x=\"")
+          .append((xPos1 + xPos2) / 2 + Option.fontSize.getInt() + 3)
+           .append("\" y=\"")
+           .append((yPos1 + yPos2) / 2 + Option.fontSize.getInt() + 3)
+           .append("\">").append(edgeName).append("</text>");
+    }
+    out.print(lLine.append(WriterData.endl));
     ++edgeNumber;
   }
 
+  /** Returns the number of the drawn position (pX, pY). */
+  private int endpointId(int pX, int pY) {
+    long lPos = LongIntMap.pack(pX, pY);
+    int result = endpointIds.get(lPos);
+    if (result == LongIntMap.NOT_FOUND) {
+      result = endpointIds.size();
+      endpointIds.put(lPos, result);
+    }
+    return result;
+  }
+
+  /** Returns the RGB value as six hex digits. */
+  private static String hex(int pRGB) {
+    String result = Integer.toHexString(pRGB & 0x00FFFFFF);
+    return "000000".substring(result.length()) + result;
+  }
+
+  /** Escapes the XML special characters of pText. */
+  private static String escape(String pText) {
+    StringBuilder result = null;
+    for (int i = 0; i < pText.length(); ++i) {
+      char c = pText.charAt(i);
+      String lEntity = null;
+      if (c == '&') {
+        lEntity = "&amp;";
+      } else if (c == '<') {
+        lEntity = "&lt;";
+      } else if (c == '>') {
+        lEntity = "&gt;";
+      } else if (c == '"') {
+        lEntity = "&quot;";
+      }
+      if (lEntity != null && result == null) {
+        result = new StringBuilder(pText.length() + 16);
+        result.append(pText, 0, i);
+      }
+      if (result != null) {
+        if (lEntity != null) {
+          result.append(lEntity);
+        } else {
+          result.append(c);
+        }
+      }
+    }
+    return (result == null) ? pText : result.toString();
+  }
+
 };
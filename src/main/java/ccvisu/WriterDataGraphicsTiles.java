@@ -0,0 +1,502 @@
+/*
+ * CCVisu is a tool for visual graph clustering
+ * and general force-directed graph layout.
+ * This file is part of CCVisu. 
+ * 
+ * Copyright (C) 2005-2010  Dirk Beyer
+ * 
+ * CCVisu is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * CCVisu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CCVisu; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ * 
+ * Please find the GNU Lesser General Public License in file
+ * license_lgpl.txt or http://www.gnu.org/licenses/lgpl.txt
+ * 
+ * Dirk Beyer    (firstname.lastname@uni-passau.de)
+ * University of Passau, Bavaria, Germany
+ */
+
+package ccvisu;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import ccvisu.Options.Option;
+
+/*****************************************************************
+ * Writer for layouts as a pyramid of PNG tiles, for zoomable
+ * web maps of large graphs. Level z has 2^z x 2^z tiles of
+ * TILE_SIZE pixels, stored as <code>z/x/y.png</code> in the output
+ * directory (tiles without content are not written).
+ * For each tile of the deepest level, <code>z/x/y.json</code> lists
+ * the vertices drawn on it (name, center, and radius in pixels
+ * of that level), for hit-testing in the client;
+ * <code>index.json</code> describes the pyramid.
+ * The tiles are rendered off-screen (Java2D, no display needed),
+ * in parallel.
+ *****************************************************************/
+public class WriterDataGraphicsTiles extends WriterDataGraphics {
+
+  /** Width and height of a tile, in pixels. */
+  public static final int  TILE_SIZE    = 256;
+  /** Extent of an arrow head beyond the line, in pixels. */
+  private static final int ARROW_MARGIN = 6;
+
+  /** Output directory. */
+  private final File      directory;
+  private final Color     backColor;
+  private final Color     frontColor;
+  private final Font      font;
+  /** For the width of annotations. */
+  private FontMetrics     fontMetrics;
+
+  /** Display list of the current level, in drawing order:
+   *  edges (x1, y1, x2, y2) and vertices (x, y, radius). */
+  private int[]           edgeCoords   = new int[64];
+  private GraphEdge[]     edgeObjs     = new GraphEdge[16];
+  private int             edgeNr       = 0;
+  private int[]           vertexCoords = new int[48];
+  private GraphVertex[]   vertexObjs   = new GraphVertex[16];
+  private int             vertexNr     = 0;
+
+  /**
+   * Constructor.
+   * @param pDirectory  Output directory (created if necessary).
+   */
+  public WriterDataGraphicsTiles(File pDirectory, GraphData graph,
+                                 Options options) {
+    super((PrintWriter) null, graph, options);
+    directory = pDirectory;
+    backColor = options.backColor.get();
+    Color lFront = new Color(0xffffffff - backColor.getRGB());
+    // As in the display: black if the inverted color is too close.
+    if (Math.abs(lFront.getRed() - backColor.getRed()) < 10
+        && Math.abs(lFront.getBlue() - backColor.getBlue()) < 10
+        && Math.abs(lFront.getGreen() - backColor.getGreen()) < 10) {
+      lFront = Color.BLACK;
+    }
+    frontColor = lFront;
+    font = new Font("SansSerif", Font.PLAIN, Option.fontSize.getInt());
+  }
+
+  /*****************************************************************
+   * Writes the tile pyramid.
+   *****************************************************************/
+  @Override
+  public void write() {
+    int lLevels = Math.max(1, Option.tileLevels.getInt());
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      System.err.println("Exception while creating directory '" + directory
+                         + "' for writing.");
+      return;
+    }
+    Graphics2D lScratch =
+                          new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+                              .createGraphics();
+    fontMetrics = lScratch.getFontMetrics(font);
+    lScratch.dispose();
+
+    int lTileNr = 0;
+    ExecutorService lExecutor =
+                                Executors.newFixedThreadPool(Runtime
+                                    .getRuntime().availableProcessors());
+    try {
+      // After an interrupt, no further level is written.
+      for (int z = 0; z < lLevels && !Thread.currentThread().isInterrupted(); ++z) {
+        lTileNr += writeLevel(z, z == lLevels - 1, lExecutor);
+      }
+    } finally {
+      lExecutor.shutdown();
+    }
+
+    PrintWriter lIndex = null;
+    try {
+      lIndex =
+               new PrintWriter(new OutputStreamWriter(new FileOutputStream(
+                   new File(directory, "index.json")), "UTF-8"));
+      lIndex.print("{\"tileSize\":" + TILE_SIZE + ",\"levels\":" + lLevels
+                   + ",\"tiles\":" + lTileNr + ",\"vertices\":"
+                   + graph.vertices.size() + ",\"background\":\"#"
+                   + Integer.toHexString(0x1000000 | backColor.getRGB()
+                                         & 0xFFFFFF).substring(1)
+                   + "\",\"title\":" + quote(options.inputName) + "}"
+                   + WriterData.endl);
+    } catch (IOException e) {
+      System.err.println("Exception while writing the tile index: " + e);
+    } finally {
+      if (lIndex != null) {
+        lIndex.close();
+      }
+    }
+  }
+
+  /**
+   * Lays out level pLevel, bins the drawing primitives by tiles,
+   * and renders the tiles in parallel.
+   * @return Number of tiles written.
+   */
+  private int writeLevel(int pLevel, boolean pDeepest, ExecutorService pExecutor) {
+    // Collect the display list of the level.
+    edgeNr = 0;
+    vertexNr = 0;
+    int lSide = 1 << pLevel;
+    writeGraphicsLayout(graph.vertices, graph.edges, TILE_SIZE * lSide);
+
+    // Bin the primitives by tiles: count, then fill (rows in CSR format).
+    int[] lEdgeStart = new int[lSide * lSide + 1];
+    int[] lVertexStart = new int[lSide * lSide + 1];
+    binAll(lSide, lEdgeStart, null, lVertexStart, null);
+    for (int t = 0; t < lSide * lSide; ++t) {
+      lEdgeStart[t + 1] += lEdgeStart[t];
+      lVertexStart[t + 1] += lVertexStart[t];
+    }
+    final int[] lEdges = new int[lEdgeStart[lSide * lSide]];
+    final int[] lVertices = new int[lVertexStart[lSide * lSide]];
+    binAll(lSide, Arrays.copyOf(lEdgeStart, lSide * lSide), lEdges, Arrays
+        .copyOf(lVertexStart, lSide * lSide), lVertices);
+
+    // Render the non-empty tiles.
+    List<Future<Boolean>> lResults = new ArrayList<Future<Boolean>>();
+    for (int t = 0; t < lSide * lSide; ++t) {
+      if (lEdgeStart[t] == lEdgeStart[t + 1]
+          && lVertexStart[t] == lVertexStart[t + 1]) {
+        continue;
+      }
+      lResults.add(pExecutor.submit(new TileRenderer(pLevel, t % lSide,
+          t / lSide, Arrays.copyOfRange(lEdges, lEdgeStart[t], lEdgeStart[t + 1]),
+          Arrays.copyOfRange(lVertices, lVertexStart[t], lVertexStart[t + 1]),
+          pDeepest)));
+    }
+    int result = 0;
+    for (Future<Boolean> lResult : lResults) {
+      try {
+        if (lResult.get()) {
+          ++result;
+        }
+      } catch (InterruptedException e) {
+        // The tiles read the display list, which the next level overwrites.
+        for (Future<Boolean> lPending : lResults) {
+          lPending.cancel(false);
+        }
+        awaitAll(lResults);
+        Thread.currentThread().interrupt();
+        return result;
+      } catch (ExecutionException e) {
+        System.err.println("Runtime error: Exception while rendering a tile:");
+        System.err.println(e.getCause());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Waits until all given tasks are finished or cancelled,
+   * ignoring interrupts (the caller restores the interrupt status).
+   */
+  private static void awaitAll(List<Future<Boolean>> pFutures) {
+    for (Future<Boolean> lFuture : pFutures) {
+      while (!lFuture.isDone()) {
+        try {
+          lFuture.get();
+        } catch (InterruptedException e) {
+          // Keep waiting.
+        } catch (ExecutionException e) {
+          // Reported by the caller, if at all.
+        } catch (CancellationException e) {
+          // Not started.
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts (if pEdges is null) or stores the primitives per tile.
+   * @param pEdgePos    Per tile: count, or next position in pEdges.
+   */
+  private void binAll(int pSide, int[] pEdgePos, int[] pEdges,
+                      int[] pVertexPos, int[] pVertices) {
+    // Counts are stored at index t+1 for the prefix sums.
+    int lShift = (pEdges == null) ? 1 : 0;
+    for (int k = 0; k < edgeNr; ++k) {
+      int x1 = edgeCoords[4 * k];
+      int y1 = edgeCoords[4 * k + 1];
+      int x2 = edgeCoords[4 * k + 2];
+      int y2 = edgeCoords[4 * k + 3];
+      // Tiles along the line: per column, the rows of the segment part.
+      int lColMin = tile(Math.min(x1, x2) - ARROW_MARGIN, pSide);
+      int lColMax = tile(Math.max(x1, x2) + ARROW_MARGIN, pSide);
+      for (int tx = lColMin; tx <= lColMax; ++tx) {
+        int[] lRows = lineRows(x1, y1, x2, y2, tx, pSide);
+        for (int ty = lRows[0]; ty <= lRows[1]; ++ty) {
+          int t = ty * pSide + tx;
+          if (pEdges == null) {
+            ++pEdgePos[t + lShift];
+          } else {
+            pEdges[pEdgePos[t]++] = k;
+          }
+        }
+      }
+      if (edgeObjs[k].showName) {
+        // Tiles of the annotation that the line does not touch.
+        int lX = (x1 + x2 + Option.fontSize.getInt()) / 2;
+        int lY = (y1 + y2 + Option.fontSize.getInt()) / 2;
+        int lRight = lX + fontMetrics.stringWidth(edgeObjs[k].relName);
+        for (int tx = tile(lX, pSide); tx <= tile(lRight, pSide); ++tx) {
+          int[] lRows = null;
+          if (tx >= lColMin && tx <= lColMax) {
+            lRows = lineRows(x1, y1, x2, y2, tx, pSide);
+          }
+          for (int ty = tile(lY - fontMetrics.getAscent(), pSide);
+               ty <= tile(lY + fontMetrics.getDescent(), pSide); ++ty) {
+            if (lRows != null && ty >= lRows[0] && ty <= lRows[1]) {
+              continue;
+            }
+            int t = ty * pSide + tx;
+            if (pEdges == null) {
+              ++pEdgePos[t + lShift];
+            } else {
+              pEdges[pEdgePos[t]++] = k;
+            }
+          }
+        }
+      }
+    }
+    for (int k = 0; k < vertexNr; ++k) {
+      int x = vertexCoords[3 * k];
+      int y = vertexCoords[3 * k + 1];
+      int r = vertexCoords[3 * k + 2];
+      int lRight = x + r + 1;
+      int lTop = y - r - 1;
+      int lBottom = y + r + 1;
+      if (vertexObjs[k].showName) {
+        lRight = Math.max(lRight, x + r + 3
+                                  + fontMetrics.stringWidth(label(vertexObjs[k])));
+        lTop = Math.min(lTop, y + 3 - fontMetrics.getAscent());
+        lBottom = Math.max(lBottom, y + 3 + fontMetrics.getDescent());
+      }
+      for (int tx = tile(x - r - 1, pSide); tx <= tile(lRight, pSide); ++tx) {
+        for (int ty = tile(lTop, pSide); ty <= tile(lBottom, pSide); ++ty) {
+          int t = ty * pSide + tx;
+          if (pVertices == null) {
+            ++pVertexPos[t + lShift];
+          } else {
+            pVertices[pVertexPos[t]++] = k;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first and the last tile row that the line 
+   * (x1,y1)-(x2,y2), including its arrow head, touches in tile column pCol.
+   */
+  private static int[] lineRows(int x1, int y1, int x2, int y2, int pCol,
+                                int pSide) {
+    float lLeft = Math.max(pCol * TILE_SIZE - ARROW_MARGIN, Math.min(x1, x2));
+    float lRight =
+                   Math.min((pCol + 1) * TILE_SIZE + ARROW_MARGIN, Math.max(
+                       x1, x2));
+    float lYa = y1;
+    float lYb = y2;
+    if (x1 != x2) {
+      lYa = y1 + (y2 - y1) * (lLeft - x1) / (x2 - x1);
+      lYb = y1 + (y2 - y1) * (lRight - x1) / (x2 - x1);
+    }
+    return new int[] { tile((int) Math.min(lYa, lYb) - ARROW_MARGIN, pSide),
+                      tile((int) Math.max(lYa, lYb) + ARROW_MARGIN, pSide) };
+  }
+
+  /** Returns the tile row or column of pixel coordinate pPos (clamped). */
+  private static int tile(int pPos, int pSide) {
+    int lTile = (pPos >= 0) ? pPos / TILE_SIZE : -1;
+    return Math.max(0, Math.min(pSide - 1, lTile));
+  }
+
+  /**
+   * Adds a vertex to the display list.
+   */
+  @Override
+  public void writeVertex(GraphVertex curVertex, int xPos, int yPos, int zPos,
+                          int radius) {
+    if (vertexNr == vertexObjs.length) {
+      vertexObjs = Arrays.copyOf(vertexObjs, 2 * vertexNr);
+      vertexCoords = Arrays.copyOf(vertexCoords, 6 * vertexNr);
+    }
+    vertexCoords[3 * vertexNr] = xPos;
+    vertexCoords[3 * vertexNr + 1] = yPos;
+    vertexCoords[3 * vertexNr + 2] = radius;
+    vertexObjs[vertexNr++] = curVertex;
+  }
+
+  /**
+   * Adds an edge to the display list.
+   */
+  @Override
+  public void writeEdge(GraphEdge edge, int xPos1, int yPos1, int zPos1,
+                        int xPos2, int yPos2, int zPos2) {
+    //reflexive edges are not allowed by specification
+    if (xPos1 == xPos2 && yPos1 == yPos2) { return; }
+    if (edgeNr == edgeObjs.length) {
+      edgeObjs = Arrays.copyOf(edgeObjs, 2 * edgeNr);
+      edgeCoords = Arrays.copyOf(edgeCoords, 8 * edgeNr);
+    }
+    edgeCoords[4 * edgeNr] = xPos1;
+    edgeCoords[4 * edgeNr + 1] = yPos1;
+    edgeCoords[4 * edgeNr + 2] = xPos2;
+    edgeCoords[4 * edgeNr + 3] = yPos2;
+    edgeObjs[edgeNr++] = edge;
+  }
+
+  /** Returns the annotation of a vertex. */
+  private static String label(GraphVertex pVertex) {
+    if (Option.shortNames.getBool()) {
+      return NameHandler.shortenName(pVertex.name);
+    }
+    return pVertex.name;
+  }
+
+  /** Returns pText as JSON string literal. */
+  private static String quote(String pText) {
+    StringBuilder result = new StringBuilder(pText.length() + 2);
+    result.append('"');
+    for (int i = 0; i < pText.length(); ++i) {
+      char c = pText.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 0x20) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  /**
+   * Renders one tile from the display list of the current level.
+   */
+  private class TileRenderer implements Callable<Boolean> {
+    private final int     level;
+    private final int     col;
+    private final int     row;
+    private final int[]   edges;
+    private final int[]   vertices;
+    private final boolean withIndex;
+
+    private TileRenderer(int pLevel, int pCol, int pRow, int[] pEdges,
+                         int[] pVertices, boolean pWithIndex) {
+      level = pLevel;
+      col = pCol;
+      row = pRow;
+      edges = pEdges;
+      vertices = pVertices;
+      withIndex = pWithIndex;
+    }
+
+    @Override
+    public Boolean call() throws IOException {
+      BufferedImage lImage =
+                             new BufferedImage(TILE_SIZE, TILE_SIZE,
+                                 BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = lImage.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+          RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setFont(font);
+      g.setColor(backColor);
+      g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+      g.translate(-col * TILE_SIZE, -row * TILE_SIZE);
+
+      for (int k : edges) {
+        int x1 = edgeCoords[4 * k];
+        int y1 = edgeCoords[4 * k + 1];
+        int x2 = edgeCoords[4 * k + 2];
+        int y2 = edgeCoords[4 * k + 3];
+        g.setColor(edgeObjs[k].color);
+        g.drawLine(x1, y1, x2, y2);
+        int[] aps = paintArrow(x1, y1, x2, y2);
+        g.drawLine(aps[0], aps[1], aps[2], aps[3]);
+        g.drawLine(aps[4], aps[5], aps[6], aps[7]);
+        if (edgeObjs[k].showName) {
+          g.drawString(edgeObjs[k].relName,
+              (x1 + x2 + Option.fontSize.getInt()) / 2,
+              (y1 + y2 + Option.fontSize.getInt()) / 2);
+        }
+      }
+
+      StringBuilder lIndex = new StringBuilder();
+      for (int k : vertices) {
+        GraphVertex lVertex = vertexObjs[k];
+        int x = vertexCoords[3 * k];
+        int y = vertexCoords[3 * k + 1];
+        int r = vertexCoords[3 * k + 2];
+        g.setColor(lVertex.color);
+        g.fillOval(x - r, y - r, 2 * r, 2 * r);
+        if (Option.blackCircle.getBool()) {
+          g.setColor(frontColor);
+          g.drawOval(x - r, y - r, 2 * r, 2 * r);
+        }
+        if (lVertex.showName) {
+          g.setColor(frontColor);
+          g.drawString(label(lVertex), x + r + 3, y + 3);
+        }
+        if (withIndex) {
+          lIndex.append(lIndex.length() == 0 ? "[" : ",").append(
+              WriterData.endl).append("{\"name\":")
+              .append(quote(lVertex.name)).append(",\"x\":").append(x)
+              .append(",\"y\":").append(y).append(",\"r\":").append(r)
+              .append('}');
+        }
+      }
+      g.dispose();
+
+      File lDir = new File(directory, level + File.separator + col);
+      if (!lDir.isDirectory() && !lDir.mkdirs() && !lDir.isDirectory()) {
+        throw new IOException("Cannot create directory '" + lDir + "'.");
+      }
+      ImageIO.write(lImage, "png", new File(lDir, row + ".png"));
+      if (withIndex) {
+        PrintWriter lOut =
+                           new PrintWriter(new OutputStreamWriter(
+                               new FileOutputStream(new File(lDir, row + ".json")),
+                               "UTF-8"));
+        lOut.print((lIndex.length() == 0 ? "[" : lIndex) + "]"
+                   + WriterData.endl);
+        lOut.close();
+      }
+      return true;
+    }
+  }
+}
@@ -28,6 +28,7 @@
 
 package ccvisu;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
@@ -38,7 +39,21 @@ import ccvisu.Options.Option;
  * @version  $Revision: 1.38 $; $Date: 2007/12/15 01:20:51 $
  * @author   Dirk Beyer
  *****************************************************************/
-public class WriterDataGraphicsVRML extends WriterDataGraphics {
+public class WriterDataGraphicsVRML extends WriterDataGraphics
+    implements RecordFormatter {
+
+  /** Bounding box of the visible vertices. */
+  private float xPosMin;
+  private float xPosMax;
+  private float yPosMin;
+  private float yPosMax;
+  private float zPosMin;
+  private float zPosMax;
+  /** Transformation from layout to output coordinates. */
+  private float xOffset;
+  private float yOffset;
+  private float zOffset;
+  private float scale;
 
   /**
    * Constructor.
@@ -47,6 +62,13 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
     super(out, graph, opt);
   }
 
+  /**
+   * Constructor for output to a byte stream.
+   */
+  public WriterDataGraphicsVRML(OutputStream out, GraphData graph, Options opt) {
+    super(out, graph, opt);
+  }
+
   /*****************************************************************
    * Writes the layout in graphics format VRML.
    *****************************************************************/
@@ -382,6 +404,7 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
 
     // Body.
     writeGraphicsLayout(graph.vertices, graph.edges, size);
+    out.flush();
   }
 
   /*****************************************************************
@@ -391,30 +414,7 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
   @Override
   public void writeGraphicsLayout(List<GraphVertex> pVertices,
                                   List<GraphEdge> pEdges, int size) {
-    float xPosMin = 1000000;
-    float xPosMax = -1000000;
-    float yPosMin = 1000000;
-    float yPosMax = -1000000;
-    float zPosMin = 1000000;
-    float zPosMax = -1000000;
-    for (GraphVertex lCurrVertex : graph.vertices) {
-      if (lCurrVertex.showVertex) {
-        xPosMin = Math.min(xPosMin, lCurrVertex.pos.x);
-        xPosMax = Math.max(xPosMax, lCurrVertex.pos.x);
-        yPosMin = Math.min(yPosMin, lCurrVertex.pos.y);
-        yPosMax = Math.max(yPosMax, lCurrVertex.pos.y);
-        zPosMin = Math.min(zPosMin, lCurrVertex.pos.z);
-        zPosMax = Math.max(zPosMax, lCurrVertex.pos.z);
-      }
-    }
-
-    float layoutDist;
-    layoutDist = Math.max(xPosMax - xPosMin, yPosMax - yPosMin);
-    layoutDist = Math.max(layoutDist, zPosMax - zPosMin);
-    float xOffset = -xPosMin + 0.05f * layoutDist;
-    float yOffset = -yPosMin + 0.05f * layoutDist;
-    float zOffset = -zPosMin + 0.05f * layoutDist;
-    float scale = 0.9f * size / layoutDist;
+    computeBounds(size);
 
     int x = (int) (((xPosMin + xPosMax) / 2 + xOffset) * scale);
     int y = (int) (((yPosMin + yPosMax) / 2 + yOffset) * -scale + size);
@@ -427,54 +427,74 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
               + WriterData.endl + "    description \"origin\" "
               + WriterData.endl + "} " + WriterData.endl + WriterData.endl);
 
-    // Draw the edges.
-    if (Option.showEdges.getBool() && !graph.edges.isEmpty()) {
-      int end = graph.edges.size();
-      for (int i = 0; i < end; ++i) {
-        GraphEdge e = graph.edges.get(i);
-        writeEdge(e, (int) ((graph.vertices.get(e.x).pos.x + xOffset) * scale),
-            (int) ((graph.vertices.get(e.x).pos.y + yOffset) * -scale + size),
-            (int) ((graph.vertices.get(e.x).pos.z + zOffset) * scale),
-            (int) ((graph.vertices.get(e.y).pos.x + xOffset) * scale),
-            (int) ((graph.vertices.get(e.y).pos.y + yOffset) * -scale + size),
-            (int) ((graph.vertices.get(e.y).pos.z + zOffset) * scale));
-      }
-    }
+    // Draw the edges, then the vertices.
+    super.writeGraphicsLayout(pVertices, pEdges, size);
+  }
 
-    // Draw the vertices.
+  /**
+   * Computes the bounding box of the visible vertices,
+   * and the offsets and the scale to fit it into the output area.
+   */
+  private void computeBounds(int size) {
+    xPosMin = 1000000;
+    xPosMax = -1000000;
+    yPosMin = 1000000;
+    yPosMax = -1000000;
+    zPosMin = 1000000;
+    zPosMax = -1000000;
     for (GraphVertex lCurrVertex : graph.vertices) {
-      if (!lCurrVertex.showName) {
-        if (lCurrVertex.showVertex) {
-          int radius =
-                       (int) Math.max(Math.pow(lCurrVertex.degree, 0.5)
-                                      * Option.minVert.getInt(), Option.minVert
-                           .getInt());
-          int xPos = (int) ((lCurrVertex.pos.x + xOffset) * scale);
-          int yPos = (int) ((lCurrVertex.pos.y + yOffset) * -scale + size);
-          int zPos = (int) ((lCurrVertex.pos.z + zOffset) * scale);
-
-          writeVertex(lCurrVertex, xPos, yPos, zPos, radius);
-        }
+      if (lCurrVertex.showVertex) {
+        xPosMin = Math.min(xPosMin, lCurrVertex.pos.x);
+        xPosMax = Math.max(xPosMax, lCurrVertex.pos.x);
+        yPosMin = Math.min(yPosMin, lCurrVertex.pos.y);
+        yPosMax = Math.max(yPosMax, lCurrVertex.pos.y);
+        zPosMin = Math.min(zPosMin, lCurrVertex.pos.z);
+        zPosMax = Math.max(zPosMax, lCurrVertex.pos.z);
       }
     }
 
-    // Draw the annotated vertices.
+    float layoutDist;
+    layoutDist = Math.max(xPosMax - xPosMin, yPosMax - yPosMin);
+    layoutDist = Math.max(layoutDist, zPosMax - zPosMin);
+    xOffset = -xPosMin + 0.05f * layoutDist;
+    yOffset = -yPosMin + 0.05f * layoutDist;
+    zOffset = -zPosMin + 0.05f * layoutDist;
+    scale = 0.9f * size / layoutDist;
+  }
+
+  /**
+   * Computes the coordinates within the bounds
+   * of the last <code>computeBounds</code>.
+   */
+  @Override
+  protected void computeCoordinates(int size) {
+    allocateCoordinates();
+    float lMinVert = Option.minVert.getFloat();
     for (GraphVertex lCurrVertex : graph.vertices) {
-      if (lCurrVertex.showName) {
-        if (lCurrVertex.showVertex) {
-          int dia =
-                    (int) Math.max(Math.pow(lCurrVertex.degree, 0.5)
-                                   * Option.minVert.getInt(), Option.minVert
-                        .getInt());
-          int xPos = (int) ((lCurrVertex.pos.x + xOffset) * scale);
-          int yPos = (int) ((lCurrVertex.pos.y + yOffset) * -scale + size);
-          int zPos = (int) ((lCurrVertex.pos.z + zOffset) * scale);
-
-          writeVertex(lCurrVertex, xPos, yPos, zPos, dia);
-        }
-      }
+      int lId = lCurrVertex.id;
+      vertexX[lId] = (int) ((lCurrVertex.pos.x + xOffset) * scale);
+      vertexY[lId] = (int) ((lCurrVertex.pos.y + yOffset) * -scale + size);
+      vertexZ[lId] = (int) ((lCurrVertex.pos.z + zOffset) * scale);
+      vertexRadius[lId] =
+          (int) Math.max(Math.pow(lCurrVertex.degree, 0.5) * lMinVert, lMinVert);
     }
+  }
 
+  /** All edges are drawn. */
+  @Override
+  protected boolean isEdgeDrawn(GraphEdge pEdge) {
+    return true;
+  }
+
+  /** All visible vertices are drawn. */
+  @Override
+  protected boolean isVertexDrawn(GraphVertex pVertex) {
+    return pVertex.showVertex;
+  }
+
+  @Override
+  public boolean formatsInParallel() {
+    return true;
   }
 
   /**
@@ -488,20 +508,31 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
   @Override
   public void writeVertex(GraphVertex curVertex, int xPos, int yPos, int zPos,
                           int radius) {
+    StringBuilder lOut = new StringBuilder();
+    formatVertex(lOut, curVertex, xPos, yPos, zPos, radius);
+    out.append(lOut);
+  }
+
+  /**
+   * Appends a vertex in VRML format to pOut.
+   */
+  @Override
+  public void formatVertex(StringBuilder pOut, GraphVertex curVertex,
+                           int xPos, int yPos, int zPos, int radius) {
     String name = curVertex.name;
     //remove double quote
     if (name.startsWith("\"") && name.endsWith("\"")) {
       name = name.substring(1, name.length() - 1);
     }
 
-    out.print("TRANSFORM_Sphere { translation " + xPos + " " + yPos + " "
-              + zPos + " " + "scale " + 2 * radius + " " + 2 * radius + " "
-              + 2 * radius + " " + "diffuseColor " + curVertex.color.getRed()
-              + " " + curVertex.color.getGreen() + " "
-              + curVertex.color.getBlue() + " " + "name " + "\"" + name
-              + "\" textTranslate " + 2 * radius + " "
-              + -Option.fontSize.getInt() / 2 + " " + 2 * radius + " } "
-              + WriterData.endl);
+    pOut.append("TRANSFORM_Sphere { translation " + xPos + " " + yPos + " "
+                + zPos + " " + "scale " + 2 * radius + " " + 2 * radius + " "
+                + 2 * radius + " " + "diffuseColor " + curVertex.color.getRed()
+                + " " + curVertex.color.getGreen() + " "
+                + curVertex.color.getBlue() + " " + "name " + "\"" + name
+                + "\" textTranslate " + 2 * radius + " "
+                + -Option.fontSize.getInt() / 2 + " " + 2 * radius + " } "
+                + WriterData.endl);
   }
 
   /**
@@ -517,6 +548,18 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
   @Override
   public void writeEdge(GraphEdge edge, int xPos1, int yPos1, int zPos1,
                         int xPos2, int yPos2, int zPos2) {
+    StringBuilder lOut = new StringBuilder();
+    formatEdge(lOut, 0, edge, xPos1, yPos1, zPos1, xPos2, yPos2, zPos2);
+    out.append(lOut);
+  }
+
+  /**
+   * Appends an edge in VRML format to pOut.
+   */
+  @Override
+  public void formatEdge(StringBuilder pOut, int pEdgeNr, GraphEdge edge,
+                         int xPos1, int yPos1, int zPos1,
+                         int xPos2, int yPos2, int zPos2) {
 
     String edgeName = edge.relName;
 
@@ -543,12 +586,12 @@ public class WriterDataGraphicsVRML extends WriterDataGraphics {
       rotw = -rotw;
     }
 
-    out.print("TRANSFORM_Cylinder { translation " + (xPos1 + xPos2) / 2 + " "
-              + (yPos1 + yPos2) / 2 + " " + (zPos1 + zPos2) / 2 + " "
-              + "rotation " + rotx + " " + roty + " " + rotz + " " + rotw + " "
-              + "height " + dist + " " + "diffuseColor 0 0 0 " + "name " + "\""
-              + edgeName + "\" " + "textTranslate 0 0 "
-              + Option.fontSize.getInt() + " } " + WriterData.endl);
+    pOut.append("TRANSFORM_Cylinder { translation " + (xPos1 + xPos2) / 2 + " "
+                + (yPos1 + yPos2) / 2 + " " + (zPos1 + zPos2) / 2 + " "
+                + "rotation " + rotx + " " + roty + " " + rotz + " " + rotw + " "
+                + "height " + dist + " " + "diffuseColor 0 0 0 " + "name " + "\""
+                + edgeName + "\" " + "textTranslate 0 0 "
+                + Option.fontSize.getInt() + " } " + WriterData.endl);
   }
 
 };
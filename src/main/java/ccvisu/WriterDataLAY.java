@@ -28,17 +28,30 @@
 
 package ccvisu;
 
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /*****************************************************************
  * Writer for layouts in text format.
+ * The lines are assembled by a <code>ByteWriter</code>,
+ * i.e., without string concatenation and float-to-string conversion.
  * @version  $Revision: 1.24 $; $Date: 2007/12/15 01:20:50 $
  * @author   Dirk Beyer
  *****************************************************************/
 public class WriterDataLAY extends WriterData {
 
-  public WriterDataLAY(PrintWriter out, GraphData graph) {
-    super(out, graph);
+  /** Output stream. */
+  private final OutputStream mOut;
+
+  /**
+   * Constructor.
+   * @param pOut    Output stream (e.g., a file or gzip stream); 
+   *                flushed, but not closed, by <code>write()</code>.
+   * @param pGraph  Graph representation.
+   */
+  public WriterDataLAY(OutputStream pOut, GraphData pGraph) {
+    super(null, pGraph);
+    mOut = pOut;
   }
 
   /*****************************************************************
@@ -46,25 +59,40 @@ public class WriterDataLAY extends WriterData {
    *****************************************************************/
   @Override
   public void write() {
-    out
-        .println("# Generated by "
-                 + Options.toolDescription()
-                 + WriterData.endl
-                 + "# "
-                 + Options.currentDateTime()
-                 + WriterData.endl
-                 + "# Layout in RSF Format:"
+    ByteWriter lOut = new ByteWriter(mOut);
+    try {
+      lOut.write("# Generated by " + Options.toolDescription()
+                 + WriterData.endl + "# " + Options.currentDateTime()
+                 + WriterData.endl + "# Layout in RSF Format:"
                  + WriterData.endl
-                 + "# LAY <x-pos_float> <y-pos_float> <z-pos_float> <edge-degree_int> "
+                 + "# LAY <x-pos_float> <y-pos_float> <z-pos_float> "
+                 + "<edge-degree_int> "
                  + "<vertex-name_string> <rgb-color_int> <showName_bool>");
-    for (GraphVertex lCurrVertex : graph.vertices) {
-      if (lCurrVertex.showVertex) {
-        out.println("LAY\t" + lCurrVertex.pos.x + "\t" + lCurrVertex.pos.y
-                    + "\t" + lCurrVertex.pos.z + "\t" + lCurrVertex.degree
-                    + "\t" + mkQuoted(lCurrVertex.name) + "\t"
-                    + (lCurrVertex.color.getRGB() & 0x00FFFFFF) + "\t"
-                    + lCurrVertex.showName);
+      lOut.newLine();
+      for (GraphVertex lCurrVertex : graph.vertices) {
+        if (lCurrVertex.showVertex) {
+          lOut.write("LAY\t");
+          lOut.write(lCurrVertex.pos.x);
+          lOut.write('\t');
+          lOut.write(lCurrVertex.pos.y);
+          lOut.write('\t');
+          lOut.write(lCurrVertex.pos.z);
+          lOut.write('\t');
+          lOut.write(lCurrVertex.degree);
+          lOut.write('\t');
+          lOut.write(mkQuoted(lCurrVertex.name));
+          lOut.write('\t');
+          lOut.write(lCurrVertex.color.getRGB() & 0x00FFFFFF);
+          lOut.write('\t');
+          lOut.write(lCurrVertex.showName);
+          lOut.newLine();
+        }
       }
+      lOut.flush();
+    } catch (IOException e) {
+      System.err.println("Runtime error: Exception while writing "
+                         + "the layout:");
+      System.err.println(e);
     }
   }
 
@@ -28,19 +28,30 @@
 
 package ccvisu;
 
-import java.io.PrintWriter;
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /*****************************************************************
  * Writer for co-change graphs in RSF format.
+ * The lines are assembled by a <code>ByteWriter</code>.
  * @version  $Revision: 1.23 $; $Date: 2007/12/15 01:20:50 $
  * @author   Dirk Beyer
  *****************************************************************/
 public class WriterDataRSF extends WriterData {
 
-  public WriterDataRSF(PrintWriter out, GraphData graph) {
-    super(out, graph);
+  /** Output stream. */
+  private final OutputStream mOut;
+
+  /**
+   * Constructor.
+   * @param pOut    Output stream (e.g., a file or gzip stream); 
+   *                flushed, but not closed, by <code>write()</code>.
+   * @param pGraph  Graph representation.
+   */
+  public WriterDataRSF(OutputStream pOut, GraphData pGraph) {
+    super(null, pGraph);
+    mOut = pOut;
   }
 
   /*****************************************************************
@@ -49,21 +60,29 @@ public class WriterDataRSF extends WriterData {
   @Override
   public void write() {
     assert (graph.mTuples != null);
-    out.println("# Generated by " + Options.toolDescription() + WriterData.endl
-                + "# " + Options.currentDateTime() + WriterData.endl
-                + "# Relations are printed in RSF Format:" + WriterData.endl
-                + "# RELNAME <element_1> <element_2> ...");
-    for (List<String> itTuple : graph.mTuples) {
-      assert (itTuple.size() > 1);
-      Iterator<String> it = itTuple.iterator();
-      // Relation name.                                                    
-      out.print(mkQuoted(it.next()));
-      // Tuple elements.                                                   
-      while (it.hasNext()) {
-        out.print('\t' + mkQuoted(it.next()));
+    ByteWriter lOut = new ByteWriter(mOut);
+    try {
+      lOut.write("# Generated by " + Options.toolDescription()
+                 + WriterData.endl + "# " + Options.currentDateTime()
+                 + WriterData.endl + "# Relations are printed in RSF Format:"
+                 + WriterData.endl + "# RELNAME <element_1> <element_2> ...");
+      lOut.newLine();
+      for (List<String> itTuple : graph.mTuples) {
+        assert (itTuple.size() > 1);
+        // Relation name.
+        lOut.write(mkQuoted(itTuple.get(0)));
+        // Tuple elements.
+        for (int i = 1; i < itTuple.size(); ++i) {
+          lOut.write('\t');
+          lOut.write(mkQuoted(itTuple.get(i)));
+        }
+        lOut.newLine();
       }
-      out.println();
+      lOut.flush();
+    } catch (IOException e) {
+      System.err.println("Runtime error: Exception while writing "
+                         + "the graph:");
+      System.err.println(e);
     }
-    out.flush();
   }
 };
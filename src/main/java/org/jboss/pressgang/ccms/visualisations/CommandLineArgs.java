@@ -17,4 +17,13 @@ public class CommandLineArgs {
 
     @Parameter(names = "--topicGraphFile", description = "The name of the file that will contain the topic graph.")
     public String topicGraphFile;
+
+    @Parameter(names = "--layoutCheckpointFile", description = "The name of the file that the layout state is periodically saved to.")
+    public String layoutCheckpointFile;
+
+    @Parameter(names = "--resumeLayout", description = "Continue the layout from the state saved in the layout checkpoint file.")
+    public boolean resumeLayout = false;
+
+    @Parameter(names = "--graphCacheFile", description = "The name of the file that caches the topic graph and its layout between runs.")
+    public String graphCacheFile;
 }
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.Nullable;
 import javax.inject.Inject;
 import java.awt.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -233,21 +234,36 @@ public class GraphGenerator {
 
         LOGGER.info("Building Topic Layout Graph");
 
-        @Nullable BufferedReader input = null;
-        @Nullable PrintWriter output = null;
+        @Nullable OutputStream output = null;
 
         try {
-            input = new BufferedReader(new StringReader(getRsfGraph().toString()));
-            output = new PrintWriter(new BufferedWriter(new FileWriter(commandLineArgs.topicGraphFile)));
+            output = new FileOutputStream(commandLineArgs.topicGraphFile);
 
             final Options options = new Options();
 
             // Initialize the graph representation.
             options.graph = new GraphData();
+            // The LAY output does not draw edges, so the adjacency is enough
+            options.graph.storeEdges = false;
+            // A topic in several specs of the same product gives parallel edges,
+            // merge them into one edge with a higher weight
+            options.graph.aggregateEdges = true;
+            // The raw RSF tuples are only needed for RSF output
+            options.graph.storeTuples = false;
             // The output should be in three dimensions
             options.nrDim = 3;
             // Use 100 iterations
             options.nrIterations = 100;
+            // Products are the sources of the bipartite product->topic graph,
+            // so start with products on a sphere and topics at their barycenter
+            options.initPlacement = Options.InitPlacement.BIPARTITE;
+            // Products form disconnected clusters, so lay them out separately
+            options.splitComponents = true;
+            // Periodically save the layout state, so a long run can be resumed
+            if (commandLineArgs.layoutCheckpointFile != null) {
+                options.checkpointFile = commandLineArgs.layoutCheckpointFile;
+                options.resume = commandLineArgs.resumeLayout;
+            }
 
             /*
                 The table below shows the various settings that can be applied to the CCVisu options
@@ -276,40 +292,49 @@ public class GraphGenerator {
             options.vertRepu = true;*/
 
 
-            final ReaderData graphReader = new ReaderDataGraphRSF(input, options.verbosity);
-            graphReader.read(options.graph);
+            // Reuse the layout of the last run if the graph has not changed
+            final byte[] rsfBytes = getRsfGraph().getBytes("UTF-8");
+            final long sourceHash = hashBytes(rsfBytes);
+            if (!loadCachedGraph(options, sourceHash)) {
+                // Scan the RSF bytes directly, without building a list of string tuples
+                final ReaderData graphReader = new ReaderDataGraphRSFMapped(ByteBuffer.wrap(rsfBytes), options.verbosity);
+                graphReader.read(options.graph);
 
-            // Handle vertex options.
-            for (GraphVertex curVertex : options.graph.vertices) {
-                // annotAll (annotate each vertex with its name).
-                if (Options.Option.annotAll.getBool()) {
-                    curVertex.showName = true;
-                }
-                // annotNone (annotate no vertex).
-                if (Options.Option.annotNone.getBool()) {
-                    curVertex.showName = false;
+                // Handle vertex options.
+                for (GraphVertex curVertex : options.graph.vertices) {
+                    // annotAll (annotate each vertex with its name).
+                    if (Options.Option.annotAll.getBool()) {
+                        curVertex.showName = true;
+                    }
+                    // annotNone (annotate no vertex).
+                    if (Options.Option.annotNone.getBool()) {
+                        curVertex.showName = false;
+                    }
                 }
-            }
 
-            // lVertex.fixedPos == true means that the minimizer does not change
-            //   lVertex's position.
-            if (options.fixedInitPos && options.initialLayout != null) {
-                for (GraphVertex lCurrVertex : options.graph.vertices) {
-                    // If the current vertex exists in the read initial layout,
-                    // then mark its position as fixed.
-                    if (options.initialLayout.nameToVertex.containsKey(lCurrVertex.name)) {
-                        lCurrVertex.fixedPos = true;
+                // lVertex.fixedPos == true means that the minimizer does not change
+                //   lVertex's position.
+                if (options.fixedInitPos && options.initialLayout != null) {
+                    for (GraphVertex lCurrVertex : options.graph.vertices) {
+                        // If the current vertex exists in the read initial layout,
+                        // then mark its position as fixed.
+                        if (options.initialLayout.nameToVertex.containsKey(lCurrVertex.name)) {
+                            lCurrVertex.fixedPos = true;
+                        }
                     }
                 }
-            }
 
-            // Initialize layout.
-            CCVisu.initializeLayout(options);
-            // Set minimizer algorithm.
-            // So far there is only one implemented in CCVisu.
-            final Minimizer minimizer = new MinimizerBarnesHut(options);
-            // Compute layout for given graph.
-            minimizer.minimizeEnergy();
+                // Initialize layout.
+                CCVisu.initializeLayout(options);
+                // Set minimizer algorithm.
+                final Minimizer minimizer = options.splitComponents
+                        ? new MinimizerComponents(options)
+                        : new MinimizerBarnesHut(options);
+                // Compute layout for given graph.
+                minimizer.minimizeEnergy();
+
+                saveCachedGraph(options, sourceHash);
+            }
 
             // Output writer.
             final WriterData dataWriter = new WriterDataLAY(output, options.graph);
@@ -322,16 +347,6 @@ public class GraphGenerator {
         } catch (@NotNull final IOException ex) {
             ex.printStackTrace();
         } finally {
-            // Close the input file.
-            try {
-                if (input != null) {
-                    input.close();
-                }
-            } catch (@NotNull final Exception ex) {
-                System.err.println("Exception while closing input file: ");
-                System.err.println(ex);
-            }
-
             try {
                 if (output != null) {
                     output.close();
@@ -382,6 +397,73 @@ public class GraphGenerator {
     }
 
 
+    /**
+     * Replaces the graph in the options by the graph snapshot in the graph cache file,
+     * if there is one with a layout that was computed from the same RSF graph.
+     * @param options The CCVisu options
+     * @param sourceHash The hash of the RSF graph
+     * @return true if the cached graph (including its layout) was loaded
+     */
+    private boolean loadCachedGraph(@NotNull final Options options, final long sourceHash) {
+        if (commandLineArgs.graphCacheFile == null || !new File(commandLineArgs.graphCacheFile).isFile()) {
+            return false;
+        }
+
+        final GraphData cachedGraph = new GraphData();
+        cachedGraph.storeEdges = options.graph.storeEdges;
+        cachedGraph.storeTuples = options.graph.storeTuples;
+        final ReaderDataBIN cacheReader = new ReaderDataBIN(new File(commandLineArgs.graphCacheFile), options.verbosity);
+        cacheReader.read(cachedGraph);
+        if (!cacheReader.hasLayout() || cacheReader.getSourceHash() != sourceHash) {
+            LOGGER.info("Graph cache is out of date, computing a new layout");
+            return false;
+        }
+
+        LOGGER.info("Reusing the layout from the graph cache");
+        options.graph = cachedGraph;
+        return true;
+    }
+
+    /**
+     * Saves the graph in the options, with its layout, to the graph cache file (if one is set).
+     * @param options The CCVisu options
+     * @param sourceHash The hash of the RSF graph
+     */
+    private void saveCachedGraph(@NotNull final Options options, final long sourceHash) {
+        if (commandLineArgs.graphCacheFile == null) {
+            return;
+        }
+
+        @Nullable OutputStream cacheOutput = null;
+        try {
+            cacheOutput = new BufferedOutputStream(new FileOutputStream(commandLineArgs.graphCacheFile));
+            new WriterDataBIN(cacheOutput, options.graph, true, sourceHash).write();
+        } catch (@NotNull final IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            try {
+                if (cacheOutput != null) {
+                    cacheOutput.close();
+                }
+            } catch (@NotNull final IOException ex) {
+                System.err.println("Exception while closing graph cache file: ");
+                System.err.println(ex);
+            }
+        }
+    }
+
+    /**
+     * A 64 bit FNV-1a hash, used to recognize an unchanged RSF graph.
+     */
+    private static long hashBytes(@NotNull final byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (final byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     /**
      * A graph in the RSF format (http://ccvisu.sosy-lab.org/manual/main.html#sec:input-rsf) used by CCVisu.
      */